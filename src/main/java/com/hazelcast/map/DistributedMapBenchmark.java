@@ -2,13 +2,19 @@ package com.hazelcast.map;
 
 import com.hazelcast.Util;
 import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryFormat;
 import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.NearCacheConfig;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
 import com.hazelcast.instance.GroupProperties;
+import com.hazelcast.monitor.NearCacheStats;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -16,15 +22,37 @@ import org.openjdk.jmh.annotations.TearDown;
 
 import java.util.Random;
 
+//With a near cache on every member, getPutMixed reads through the near cache of one member while
+//another member writes, so every write invalidates the cached entry over the network if
+//invalidateOnChange is on. The hits and misses of the near cache and the writes are reported by
+//NearCacheCounters.
 @State(value = Scope.Thread)
 @OperationsPerInvocation(DistributedMapBenchmark.OPERATIONS_PER_INVOCATION)
 public class DistributedMapBenchmark {
     public static final int OPERATIONS_PER_INVOCATION = 50000;
 
+    // In-memory format of the near cache, none for no near cache
+    @Param(value = {"none", "BINARY", "OBJECT"})
+    private String nearCache;
+
+    // 2500 for a near cache smaller than the number of keys
+    @Param(value = {"10000"})
+    private String nearCacheMaxSize;
+
+    @Param(value = {"true", "false"})
+    private String invalidateOnChange;
+
+    // Part of the operations of getPutMixed that are writes
+    @Param(value = {"10"})
+    private String writePercent;
+
     private HazelcastInstance hz;
     private IMap<Integer, String> map;
+    // Map of another member, its writes invalidate the near cache of map
+    private IMap<Integer, String> writerMap;
     private Integer[] keys;
     private String[] values;
+    private int writeThreshold;
 
     @Setup
     public void setUp() {
@@ -32,6 +60,15 @@ public class DistributedMapBenchmark {
         mapConfig.setAsyncBackupCount(0);
         mapConfig.setBackupCount(0);
         mapConfig.setStatisticsEnabled(false);
+        if (!"none".equals(nearCache)) {
+            NearCacheConfig nearCacheConfig = new NearCacheConfig();
+            nearCacheConfig.setInMemoryFormat(InMemoryFormat.valueOf(nearCache));
+            nearCacheConfig.setMaxSize(Integer.parseInt(nearCacheMaxSize));
+            nearCacheConfig.setInvalidateOnChange(Boolean.parseBoolean(invalidateOnChange));
+            // For the hits and misses of the near cache
+            mapConfig.setStatisticsEnabled(true);
+            mapConfig.setNearCacheConfig(nearCacheConfig);
+        }
 
         Config config = new Config();
         //config.setProperty(GroupProperties.PROP_GENERIC_OPERATION_THREAD_COUNT,"2");
@@ -44,12 +81,14 @@ public class DistributedMapBenchmark {
         config.addMapConfig(mapConfig);
 
         hz = Hazelcast.newHazelcastInstance(config);
-        Hazelcast.newHazelcastInstance(config);
+        HazelcastInstance writer = Hazelcast.newHazelcastInstance(config);
         Hazelcast.newHazelcastInstance(config);
         Hazelcast.newHazelcastInstance(config);
         Hazelcast.newHazelcastInstance(config);
 
         map = hz.getMap(mapConfig.getName());
+        writerMap = writer.getMap(mapConfig.getName());
+        writeThreshold = Integer.parseInt(writePercent);
 
         int size = 5000;
         keys = new Integer[size];
@@ -68,7 +107,8 @@ public class DistributedMapBenchmark {
     }
 
     @Benchmark
-    public void putPerformance() {
+    public void putPerformance(NearCacheCounters counters) {
+        counters.count(map);
         Random random = new Random();
         for (int k = 0; k < OPERATIONS_PER_INVOCATION; k++) {
             Integer key = keys[random.nextInt(keys.length)];
@@ -78,7 +118,8 @@ public class DistributedMapBenchmark {
     }
 
     @Benchmark
-    public void setPerformance() {
+    public void setPerformance(NearCacheCounters counters) {
+        counters.count(map);
         Random random = new Random();
         for (int k = 0; k < OPERATIONS_PER_INVOCATION; k++) {
             Integer key = keys[random.nextInt(keys.length)];
@@ -88,11 +129,71 @@ public class DistributedMapBenchmark {
     }
 
     @Benchmark
-    public void getPerformance() {
+    public void getPerformance(NearCacheCounters counters) {
+        counters.count(map);
         Random random = new Random();
         for (int k = 0; k < OPERATIONS_PER_INVOCATION; k++) {
             int x = random.nextInt(keys.length);
             map.get(x);
         }
     }
+
+    @Benchmark
+    public void getPutMixed(NearCacheCounters counters) {
+        counters.count(map);
+        Random random = new Random();
+        for (int k = 0; k < OPERATIONS_PER_INVOCATION; k++) {
+            Integer key = keys[random.nextInt(keys.length)];
+            if (random.nextInt(100) < writeThreshold) {
+                writerMap.put(key, values[k % values.length]);
+                counters.writes++;
+            } else {
+                map.get(key);
+            }
+        }
+    }
+
+    /**
+     * Hits and misses of the near cache and writes of getPutMixed, per second. The hit rate is
+     * hits / (hits + misses), both stay 0 without a near cache.
+     */
+    @State(value = Scope.Thread)
+    @AuxCounters
+    public static class NearCacheCounters {
+
+        public long hits;
+        public long misses;
+        public long writes;
+
+        private IMap<Integer, String> map;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            map = null;
+            hits = 0;
+            misses = 0;
+            writes = 0;
+        }
+
+        // Called by every invocation, a thread-scoped benchmark can't be a setup argument
+        // of this state, it would be another instance with a map of its own
+        void count(IMap<Integer, String> map) {
+            if (this.map == null) {
+                this.map = map;
+                NearCacheStats stats = map.getLocalMapStats().getNearCacheStats();
+                hits = stats != null ? -stats.getHits() : 0;
+                misses = stats != null ? -stats.getMisses() : 0;
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            if (map == null) {
+                return;
+            }
+            NearCacheStats stats = map.getLocalMapStats().getNearCacheStats();
+            hits = stats != null ? hits + stats.getHits() : 0;
+            misses = stats != null ? misses + stats.getMisses() : 0;
+        }
+    }
 }
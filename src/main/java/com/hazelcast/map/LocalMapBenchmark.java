@@ -26,12 +26,18 @@
 package com.hazelcast.map;
 
 import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryFormat;
 import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.NearCacheConfig;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
+import com.hazelcast.monitor.NearCacheStats;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -43,12 +49,27 @@ import static com.hazelcast.Util.randomString;
 
 //http://hg.openjdk.java.net/code-tools/jmh/file/tip/jmh-samples/src/main/java/org/openjdk/jmh/samples/
 //http://code.google.com/p/dart/wiki/Profiling
+//
+//With a near cache, the single member caches its local entries, otherwise the near cache would
+//never be used. Gets served by it don't go to the partition threads. Its hits and misses are
+//reported by NearCacheCounters.
 @State(value = Scope.Thread)
 @OperationsPerInvocation(LocalMapBenchmark.OPERATIONS_PER_INVOCATION)
 public class LocalMapBenchmark {
 
     public static final int OPERATIONS_PER_INVOCATION = 500000;
 
+    // In-memory format of the near cache, none for no near cache
+    @Param(value = {"none", "BINARY", "OBJECT"})
+    private String nearCache;
+
+    // 2500 for a near cache smaller than the number of keys
+    @Param(value = {"10000"})
+    private String nearCacheMaxSize;
+
+    @Param(value = {"true", "false"})
+    private String invalidateOnChange;
+
     private HazelcastInstance hz;
     private IMap<Integer, String> map;
     private Integer[] keys;
@@ -60,6 +81,16 @@ public class LocalMapBenchmark {
         mapConfig.setAsyncBackupCount(0);
         mapConfig.setBackupCount(0);
         mapConfig.setStatisticsEnabled(false);
+        if (!"none".equals(nearCache)) {
+            NearCacheConfig nearCacheConfig = new NearCacheConfig();
+            nearCacheConfig.setInMemoryFormat(InMemoryFormat.valueOf(nearCache));
+            nearCacheConfig.setMaxSize(Integer.parseInt(nearCacheMaxSize));
+            nearCacheConfig.setInvalidateOnChange(Boolean.parseBoolean(invalidateOnChange));
+            nearCacheConfig.setCacheLocalEntries(true);
+            // For the hits and misses of the near cache
+            mapConfig.setStatisticsEnabled(true);
+            mapConfig.setNearCacheConfig(nearCacheConfig);
+        }
 
         Config config = new Config();
         //config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
@@ -88,7 +119,8 @@ public class LocalMapBenchmark {
     }
 
     @Benchmark
-    public void putPerformance() {
+    public void putPerformance(NearCacheCounters counters) {
+        counters.count(map);
         Random random = new Random();
         for (int k = 0; k < OPERATIONS_PER_INVOCATION; k++) {
             Integer key = keys[random.nextInt(keys.length)];
@@ -98,7 +130,8 @@ public class LocalMapBenchmark {
     }
 
     @Benchmark
-    public void setPerformance() {
+    public void setPerformance(NearCacheCounters counters) {
+        counters.count(map);
         Random random = new Random();
         for (int k = 0; k < OPERATIONS_PER_INVOCATION; k++) {
             Integer key = keys[random.nextInt(keys.length)];
@@ -108,11 +141,54 @@ public class LocalMapBenchmark {
     }
 
     @Benchmark
-    public void getPerformance() {
+    public void getPerformance(NearCacheCounters counters) {
+        counters.count(map);
         Random random = new Random();
         for (int k = 0; k < OPERATIONS_PER_INVOCATION; k++) {
             int x = random.nextInt(keys.length);
             map.get(x);
         }
     }
+
+    /**
+     * Hits and misses of the near cache, per second. The hit rate is hits / (hits + misses),
+     * both stay 0 without a near cache.
+     */
+    @State(value = Scope.Thread)
+    @AuxCounters
+    public static class NearCacheCounters {
+
+        public long hits;
+        public long misses;
+
+        private IMap<Integer, String> map;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            map = null;
+            hits = 0;
+            misses = 0;
+        }
+
+        // Called by every invocation, a thread-scoped benchmark can't be a setup argument
+        // of this state, it would be another instance with a map of its own
+        void count(IMap<Integer, String> map) {
+            if (this.map == null) {
+                this.map = map;
+                NearCacheStats stats = map.getLocalMapStats().getNearCacheStats();
+                hits = stats != null ? -stats.getHits() : 0;
+                misses = stats != null ? -stats.getMisses() : 0;
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            if (map == null) {
+                return;
+            }
+            NearCacheStats stats = map.getLocalMapStats().getNearCacheStats();
+            hits = stats != null ? hits + stats.getHits() : 0;
+            misses = stats != null ? misses + stats.getMisses() : 0;
+        }
+    }
 }
\ No newline at end of file
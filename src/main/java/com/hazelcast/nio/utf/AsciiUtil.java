@@ -0,0 +1,271 @@
+package com.hazelcast.nio.utf;
+
+import com.hazelcast.nio.UnsafeHelper;
+
+import java.nio.ByteOrder;
+
+/**
+ * Word-at-a-time ASCII copy routines for the UTF encoder/decoder.
+ *
+ * Chars and bytes are checked and copied 8 (then 4) at a time through
+ * {@link UnsafeHelper#UNSAFE} long reads. The scalar loop takes over at the
+ * first word that contains a non-ASCII element, so the return value is
+ * always the exact number of leading ASCII elements copied.
+ *
+ * The Unsafe base/offset variants also accept off-heap memory
+ * (<code>null</code> base and an absolute address).
+ */
+final class AsciiUtil {
+
+    static final boolean AVAILABLE =
+            UnsafeHelper.UNSAFE_AVAILABLE
+                    && UnsafeHelper.CHAR_ARRAY_INDEX_SCALE == 2
+                    && UnsafeHelper.BYTE_ARRAY_INDEX_SCALE == 1;
+
+    private static final boolean BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+    // Set if any of the four chars in a word is above 0x007F
+    private static final long CHAR_NON_ASCII_MASK = 0xFF80FF80FF80FF80L;
+    // Added to a word of ASCII chars, sets bit 7 of every char lane that is not zero
+    private static final long CHAR_ZERO_PROBE = 0x007F007F007F007FL;
+    private static final long CHAR_LANE_BIT_7 = 0x0080008000800080L;
+    // Set if any of the four chars in a word is above 0x00FF
+    private static final long CHAR_NON_LATIN1_MASK = 0xFF00FF00FF00FF00L;
+    // Set if any of the eight bytes in a word is above 0x7F
+    private static final long BYTE_NON_ASCII_MASK = 0x8080808080808080L;
+
+    private AsciiUtil() {
+    }
+
+    /**
+     * Copies the leading chars in range 0x0001 - 0x007F (the ones modified UTF-8 encodes
+     * as a single byte) from <code>src</code> to <code>dst</code>.
+     *
+     * @return the number of chars copied
+     */
+    static int copyAsciiChars(final char[] src, final int srcPos,
+                              final byte[] dst, final int dstPos,
+                              final int length) {
+        if (AVAILABLE) {
+            return copyAsciiChars(src, srcPos, dst, UnsafeHelper.BYTE_ARRAY_BASE_OFFSET + dstPos, length);
+        }
+        int i = 0;
+        for (; i < length; i++) {
+            int c = src[srcPos + i];
+            if (!((c <= 0x007F) && (c >= 0x0001))) {
+                break;
+            }
+            dst[dstPos + i] = (byte) c;
+        }
+        return i;
+    }
+
+    /**
+     * Same as {@link #copyAsciiChars(char[], int, byte[], int, int)} but the destination is
+     * given as an Unsafe base object and offset, so it may also be off-heap memory.
+     * Requires {@link #AVAILABLE}.
+     */
+    static int copyAsciiChars(final char[] src, final int srcPos,
+                              final Object dstBase, final long dstOffset,
+                              final int length) {
+        final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+        final long srcOffset = UnsafeHelper.CHAR_ARRAY_BASE_OFFSET + ((long) srcPos << 1);
+        int i = 0;
+        for (; i <= length - 8; i += 8) {
+            long word1 = unsafe.getLong(src, srcOffset + ((long) i << 1));
+            long word2 = unsafe.getLong(src, srcOffset + ((long) i << 1) + 8);
+            if (!isAsciiChars(word1) || !isAsciiChars(word2)) {
+                break;
+            }
+            long bytes1 = packChars(word1);
+            long bytes2 = packChars(word2);
+            unsafe.putLong(dstBase, dstOffset + i,
+                    BIG_ENDIAN ? (bytes1 << 32) | bytes2 : (bytes2 << 32) | bytes1);
+        }
+        for (; i <= length - 4; i += 4) {
+            long word = unsafe.getLong(src, srcOffset + ((long) i << 1));
+            if (!isAsciiChars(word)) {
+                break;
+            }
+            unsafe.putInt(dstBase, dstOffset + i, (int) packChars(word));
+        }
+        for (; i < length; i++) {
+            int c = src[srcPos + i];
+            if (!((c <= 0x007F) && (c >= 0x0001))) {
+                break;
+            }
+            unsafe.putByte(dstBase, dstOffset + i, (byte) c);
+        }
+        return i;
+    }
+
+    /**
+     * Widens the leading bytes in range 0x00 - 0x7F from <code>src</code> to chars in <code>dst</code>.
+     *
+     * @return the number of bytes copied
+     */
+    static int copyAsciiBytes(final byte[] src, final int srcPos,
+                              final char[] dst, final int dstPos,
+                              final int length) {
+        if (AVAILABLE) {
+            return copyAsciiBytes(src, UnsafeHelper.BYTE_ARRAY_BASE_OFFSET + srcPos, dst, dstPos, length);
+        }
+        int i = 0;
+        for (; i < length; i++) {
+            int c = src[srcPos + i];
+            if (c < 0) {
+                break;
+            }
+            dst[dstPos + i] = (char) c;
+        }
+        return i;
+    }
+
+    /**
+     * Same as {@link #copyAsciiBytes(byte[], int, char[], int, int)} but the source is
+     * given as an Unsafe base object and offset. Requires {@link #AVAILABLE}.
+     */
+    static int copyAsciiBytes(final Object srcBase, final long srcOffset,
+                              final char[] dst, final int dstPos,
+                              final int length) {
+        final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+        final long dstOffset = UnsafeHelper.CHAR_ARRAY_BASE_OFFSET + ((long) dstPos << 1);
+        int i = 0;
+        for (; i <= length - 8; i += 8) {
+            long word = unsafe.getLong(srcBase, srcOffset + i);
+            if ((word & BYTE_NON_ASCII_MASK) != 0) {
+                break;
+            }
+            putWidened(unsafe, dst, dstOffset + ((long) i << 1), word);
+        }
+        for (; i < length; i++) {
+            int c = unsafe.getByte(srcBase, srcOffset + i);
+            if (c < 0) {
+                break;
+            }
+            dst[dstPos + i] = (char) c;
+        }
+        return i;
+    }
+
+    /**
+     * Widens <code>length</code> bytes from <code>src</code> to chars in <code>dst</code>
+     * without checking them, as done for chunks that are flagged as all ASCII.
+     */
+    static void widenBytes(final byte[] src, final int srcPos,
+                           final char[] dst, final int dstPos,
+                           final int length) {
+        if (AVAILABLE) {
+            widenBytes(src, UnsafeHelper.BYTE_ARRAY_BASE_OFFSET + srcPos, dst, dstPos, length);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            dst[dstPos + i] = (char) (src[srcPos + i] & 0xFF);
+        }
+    }
+
+    /**
+     * Same as {@link #widenBytes(byte[], int, char[], int, int)} but the source is
+     * given as an Unsafe base object and offset. Requires {@link #AVAILABLE}.
+     */
+    static void widenBytes(final Object srcBase, final long srcOffset,
+                           final char[] dst, final int dstPos,
+                           final int length) {
+        final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+        final long dstOffset = UnsafeHelper.CHAR_ARRAY_BASE_OFFSET + ((long) dstPos << 1);
+        int i = 0;
+        for (; i <= length - 8; i += 8) {
+            putWidened(unsafe, dst, dstOffset + ((long) i << 1), unsafe.getLong(srcBase, srcOffset + i));
+        }
+        for (; i < length; i++) {
+            dst[dstPos + i] = (char) (unsafe.getByte(srcBase, srcOffset + i) & 0xFF);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if none of the chars in the given range is above 0x00FF
+     */
+    static boolean isLatin1(final char[] src, final int srcPos, final int length) {
+        int i = 0;
+        if (AVAILABLE) {
+            final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+            final long srcOffset = UnsafeHelper.CHAR_ARRAY_BASE_OFFSET + ((long) srcPos << 1);
+            for (; i <= length - 4; i += 4) {
+                if ((unsafe.getLong(src, srcOffset + ((long) i << 1)) & CHAR_NON_LATIN1_MASK) != 0) {
+                    return false;
+                }
+            }
+        }
+        for (; i < length; i++) {
+            if (src[srcPos + i] > 0x00FF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Narrows <code>length</code> chars to bytes without checking them,
+     * the caller has to make sure they are all Latin-1.
+     */
+    static void narrowChars(final char[] src, final int srcPos,
+                            final byte[] dst, final int dstPos,
+                            final int length) {
+        if (AVAILABLE) {
+            narrowChars(src, srcPos, dst, UnsafeHelper.BYTE_ARRAY_BASE_OFFSET + dstPos, length);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            dst[dstPos + i] = (byte) src[srcPos + i];
+        }
+    }
+
+    /**
+     * Same as {@link #narrowChars(char[], int, byte[], int, int)} but the destination is
+     * given as an Unsafe base object and offset. Requires {@link #AVAILABLE}.
+     */
+    static void narrowChars(final char[] src, final int srcPos,
+                            final Object dstBase, final long dstOffset,
+                            final int length) {
+        final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+        final long srcOffset = UnsafeHelper.CHAR_ARRAY_BASE_OFFSET + ((long) srcPos << 1);
+        int i = 0;
+        for (; i <= length - 8; i += 8) {
+            long bytes1 = packChars(unsafe.getLong(src, srcOffset + ((long) i << 1)));
+            long bytes2 = packChars(unsafe.getLong(src, srcOffset + ((long) i << 1) + 8));
+            unsafe.putLong(dstBase, dstOffset + i,
+                    BIG_ENDIAN ? (bytes1 << 32) | bytes2 : (bytes2 << 32) | bytes1);
+        }
+        for (; i < length; i++) {
+            unsafe.putByte(dstBase, dstOffset + i, (byte) src[srcPos + i]);
+        }
+    }
+
+    private static boolean isAsciiChars(final long word) {
+        return (word & CHAR_NON_ASCII_MASK) == 0
+                && ((word + CHAR_ZERO_PROBE) & CHAR_LANE_BIT_7) == CHAR_LANE_BIT_7;
+    }
+
+    // Packs four char lanes whose values fit into a byte into the lower four bytes.
+    // Lane order is kept, so the result has the same native layout as the source word.
+    private static long packChars(long word) {
+        word = (word | (word >>> 8)) & 0x0000FFFF0000FFFFL;
+        return (word | (word >>> 16)) & 0x00000000FFFFFFFFL;
+    }
+
+    // Inverse of packChars, spreads the lower four bytes into four char lanes
+    private static long spreadBytes(long word) {
+        word &= 0x00000000FFFFFFFFL;
+        word = (word | (word << 16)) & 0x0000FFFF0000FFFFL;
+        return (word | (word << 8)) & 0x00FF00FF00FF00FFL;
+    }
+
+    private static void putWidened(final sun.misc.Unsafe unsafe, final char[] dst,
+                                   final long dstOffset, final long word) {
+        long low = spreadBytes(word);
+        long high = spreadBytes(word >>> 32);
+        unsafe.putLong(dst, dstOffset, BIG_ENDIAN ? high : low);
+        unsafe.putLong(dst, dstOffset + 8, BIG_ENDIAN ? low : high);
+    }
+
+}
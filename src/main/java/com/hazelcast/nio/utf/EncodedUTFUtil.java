@@ -0,0 +1,432 @@
+package com.hazelcast.nio.utf;
+
+import com.hazelcast.nio.UnsafeHelper;
+
+import static com.hazelcast.nio.utf.OptimizedUTFEncoderDecoder.ASCII_AWARE;
+import static com.hazelcast.nio.utf.OptimizedUTFEncoderDecoder.LATIN1_CODER_V1;
+import static com.hazelcast.nio.utf.OptimizedUTFEncoderDecoder.NOT_NULL;
+import static com.hazelcast.nio.utf.OptimizedUTFEncoderDecoder.NULL;
+import static com.hazelcast.nio.utf.OptimizedUTFEncoderDecoder.STRING_CHUNK_SIZE;
+
+/**
+ * Equality, prefix and order checks on strings encoded by {@link OptimizedUTFEncoderDecoder},
+ * without decoding them into strings.
+ *
+ * An encoded string is given by the array and the offset it starts at, its end follows from
+ * its headers. Both the chunked modified UTF-8 and the compact Latin-1 format are understood,
+ * in the big-endian order of <code>DataOutput</code>. The order is the one of
+ * {@link String#compareTo(String)}, <code>null</code> comes before any string.
+ *
+ * Modified UTF-8 encodes every char on its own and keeps their order, apart from
+ * <code>U+0000</code>. So two chunked strings are compared byte by byte, chunk by chunk,
+ * and only the first pair of differing chars is decoded. ASCII flags are not compared,
+ * outputs that never set them still compare equal.
+ *
+ * Malformed input causes an {@link IllegalArgumentException}.
+ */
+public final class EncodedUTFUtil {
+
+    private static final int CHUNK_HEADER_LENGTH = ASCII_AWARE ? 3 : 2;
+    // Header byte, length and length check
+    private static final int CHUNKED_HEADER_LENGTH = 9;
+    // Header byte and length
+    private static final int LATIN1_HEADER_LENGTH = 5;
+
+    private EncodedUTFUtil() {
+    }
+
+    // ********************************************************************* //
+
+    public static boolean equals(final byte[] a, final int aOffset,
+                                 final byte[] b, final int bOffset) {
+        final byte aHeader = a[aOffset];
+        final byte bHeader = b[bOffset];
+        if (isNull(aHeader) || isNull(bHeader)) {
+            return isNull(aHeader) && isNull(bHeader);
+        }
+        if (aHeader == NOT_NULL && bHeader == NOT_NULL) {
+            return equalsChunked(a, aOffset, b, bOffset);
+        }
+        if (aHeader == LATIN1_CODER_V1 && bHeader == LATIN1_CODER_V1) {
+            int length = readLatin1Length(a, aOffset);
+            return length == readLatin1Length(b, bOffset)
+                    && mismatch(a, aOffset + LATIN1_HEADER_LENGTH, b, bOffset + LATIN1_HEADER_LENGTH, length) < 0;
+        }
+        Cursor aCursor = new Cursor(a, aOffset);
+        Cursor bCursor = new Cursor(b, bOffset);
+        return aCursor.length == bCursor.length && compare(aCursor, bCursor) == 0;
+    }
+
+    public static boolean equals(final byte[] encoded, final int offset, final String str) {
+        if (isNull(encoded[offset]) || str == null) {
+            return isNull(encoded[offset]) && str == null;
+        }
+        Cursor cursor = new Cursor(encoded, offset);
+        return cursor.length == str.length() && compare(cursor, str) == 0;
+    }
+
+    /**
+     * @return <code>true</code> if the string encoded at <code>a</code> starts with the one
+     * encoded at <code>prefix</code>, <code>false</code> if any of them is <code>null</code>
+     */
+    public static boolean startsWith(final byte[] a, final int aOffset,
+                                     final byte[] prefix, final int prefixOffset) {
+        final byte aHeader = a[aOffset];
+        final byte prefixHeader = prefix[prefixOffset];
+        if (isNull(aHeader) || isNull(prefixHeader)) {
+            return false;
+        }
+        if (aHeader == NOT_NULL && prefixHeader == NOT_NULL) {
+            return startsWithChunked(a, aOffset, prefix, prefixOffset);
+        }
+        if (aHeader == LATIN1_CODER_V1 && prefixHeader == LATIN1_CODER_V1) {
+            int prefixLength = readLatin1Length(prefix, prefixOffset);
+            return prefixLength <= readLatin1Length(a, aOffset)
+                    && mismatch(a, aOffset + LATIN1_HEADER_LENGTH,
+                                prefix, prefixOffset + LATIN1_HEADER_LENGTH, prefixLength) < 0;
+        }
+        Cursor aCursor = new Cursor(a, aOffset);
+        Cursor prefixCursor = new Cursor(prefix, prefixOffset);
+        if (prefixCursor.length > aCursor.length) {
+            return false;
+        }
+        for (int i = 0; i < prefixCursor.length; i++) {
+            if (aCursor.next() != prefixCursor.next()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the encoded string starts with <code>prefix</code>,
+     * <code>false</code> if any of them is <code>null</code>
+     */
+    public static boolean startsWith(final byte[] encoded, final int offset, final String prefix) {
+        if (isNull(encoded[offset]) || prefix == null) {
+            return false;
+        }
+        Cursor cursor = new Cursor(encoded, offset);
+        final int prefixLength = prefix.length();
+        if (prefixLength > cursor.length) {
+            return false;
+        }
+        for (int i = 0; i < prefixLength; i++) {
+            if (cursor.next() != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static int compareTo(final byte[] a, final int aOffset,
+                                final byte[] b, final int bOffset) {
+        final byte aHeader = a[aOffset];
+        final byte bHeader = b[bOffset];
+        if (isNull(aHeader) || isNull(bHeader)) {
+            return (isNull(aHeader) ? 0 : 1) - (isNull(bHeader) ? 0 : 1);
+        }
+        if (aHeader == NOT_NULL && bHeader == NOT_NULL) {
+            return compareChunked(a, aOffset, b, bOffset);
+        }
+        if (aHeader == LATIN1_CODER_V1 && bHeader == LATIN1_CODER_V1) {
+            int aLength = readLatin1Length(a, aOffset);
+            int bLength = readLatin1Length(b, bOffset);
+            int aPos = aOffset + LATIN1_HEADER_LENGTH;
+            int bPos = bOffset + LATIN1_HEADER_LENGTH;
+            int index = mismatch(a, aPos, b, bPos, Math.min(aLength, bLength));
+            return index < 0
+                    ? aLength - bLength
+                    : (a[aPos + index] & 0xFF) - (b[bPos + index] & 0xFF);
+        }
+        return compare(new Cursor(a, aOffset), new Cursor(b, bOffset));
+    }
+
+    public static int compareTo(final byte[] encoded, final int offset, final String str) {
+        if (isNull(encoded[offset]) || str == null) {
+            return (isNull(encoded[offset]) ? 0 : 1) - (str == null ? 0 : 1);
+        }
+        return compare(new Cursor(encoded, offset), str);
+    }
+
+    // ********************************************************************* //
+
+    private static boolean equalsChunked(final byte[] a, final int aOffset,
+                                         final byte[] b, final int bOffset) {
+        final int length = readChunkedLength(a, aOffset);
+        if (length != readChunkedLength(b, bOffset)) {
+            return false;
+        }
+        int aPos = aOffset + CHUNKED_HEADER_LENGTH;
+        int bPos = bOffset + CHUNKED_HEADER_LENGTH;
+        // Same length means same chunk boundaries
+        final int chunkCount = chunkCount(length);
+        for (int i = 0; i < chunkCount; i++) {
+            int utfLength = readUnsignedShort(a, aPos);
+            if (utfLength != readUnsignedShort(b, bPos)) {
+                return false;
+            }
+            aPos += CHUNK_HEADER_LENGTH;
+            bPos += CHUNK_HEADER_LENGTH;
+            if (mismatch(a, aPos, b, bPos, utfLength) >= 0) {
+                return false;
+            }
+            aPos += utfLength;
+            bPos += utfLength;
+        }
+        return true;
+    }
+
+    private static boolean startsWithChunked(final byte[] a, final int aOffset,
+                                             final byte[] prefix, final int prefixOffset) {
+        final int prefixLength = readChunkedLength(prefix, prefixOffset);
+        if (prefixLength > readChunkedLength(a, aOffset)) {
+            return false;
+        }
+        int aPos = aOffset + CHUNKED_HEADER_LENGTH;
+        int prefixPos = prefixOffset + CHUNKED_HEADER_LENGTH;
+        // Chunks start at the same char indexes, so every chunk of the prefix
+        // has to be a byte prefix of the same chunk of the string
+        final int chunkCount = chunkCount(prefixLength);
+        for (int i = 0; i < chunkCount; i++) {
+            int aUtfLength = readUnsignedShort(a, aPos);
+            int prefixUtfLength = readUnsignedShort(prefix, prefixPos);
+            if (prefixUtfLength > aUtfLength) {
+                return false;
+            }
+            aPos += CHUNK_HEADER_LENGTH;
+            prefixPos += CHUNK_HEADER_LENGTH;
+            if (mismatch(a, aPos, prefix, prefixPos, prefixUtfLength) >= 0) {
+                return false;
+            }
+            aPos += aUtfLength;
+            prefixPos += prefixUtfLength;
+        }
+        return true;
+    }
+
+    private static int compareChunked(final byte[] a, final int aOffset,
+                                      final byte[] b, final int bOffset) {
+        final int aLength = readChunkedLength(a, aOffset);
+        final int bLength = readChunkedLength(b, bOffset);
+        int aPos = aOffset + CHUNKED_HEADER_LENGTH;
+        int bPos = bOffset + CHUNKED_HEADER_LENGTH;
+        // Up to the first difference both are the same bytes, so their chunks line up
+        final int chunkCount = chunkCount(Math.min(aLength, bLength));
+        for (int i = 0; i < chunkCount; i++) {
+            int aUtfLength = readUnsignedShort(a, aPos);
+            int bUtfLength = readUnsignedShort(b, bPos);
+            aPos += CHUNK_HEADER_LENGTH;
+            bPos += CHUNK_HEADER_LENGTH;
+            int index = mismatch(a, aPos, b, bPos, Math.min(aUtfLength, bUtfLength));
+            if (index >= 0) {
+                // Go back to the first byte of the char that differs, the bytes before are the same in both
+                int charStart = index;
+                while (charStart > 0 && (a[aPos + charStart] & 0xC0) == 0x80) {
+                    charStart--;
+                }
+                return decodeChar(a, aPos + charStart, aPos + aUtfLength)
+                        - decodeChar(b, bPos + charStart, bPos + bUtfLength);
+            }
+            if (aUtfLength != bUtfLength) {
+                // One chunk is a prefix of the other, so one string is a prefix of the other
+                break;
+            }
+            aPos += aUtfLength;
+            bPos += bUtfLength;
+        }
+        return aLength - bLength;
+    }
+
+    private static int compare(final Cursor a, final Cursor b) {
+        final int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            char aChar = a.next();
+            char bChar = b.next();
+            if (aChar != bChar) {
+                return aChar - bChar;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static int compare(final Cursor a, final String b) {
+        final int bLength = b.length();
+        final int length = Math.min(a.length, bLength);
+        for (int i = 0; i < length; i++) {
+            char aChar = a.next();
+            char bChar = b.charAt(i);
+            if (aChar != bChar) {
+                return aChar - bChar;
+            }
+        }
+        return a.length - bLength;
+    }
+
+    // ********************************************************************* //
+
+    // Same as the decoder, unknown headers are rejected instead of read as null
+    private static boolean isNull(final byte header) {
+        if (header == NULL) {
+            return true;
+        }
+        if (header != NOT_NULL && header != LATIN1_CODER_V1) {
+            throw new IllegalArgumentException(
+                    "Unknown string header " + (header & 0xFF) + ", maybe broken bytestream or wrong stream position");
+        }
+        return false;
+    }
+
+    // Empty strings have no chunks at all
+    private static int chunkCount(final int length) {
+        return length > 0 ? length / STRING_CHUNK_SIZE + 1 : 0;
+    }
+
+    private static int readChunkedLength(final byte[] bytes, final int offset) {
+        int length = readInt(bytes, offset + 1);
+        if (length != readInt(bytes, offset + 5)) {
+            throw new IllegalArgumentException(
+                    "Length check failed, maybe broken bytestream or wrong stream position");
+        }
+        return length;
+    }
+
+    private static int readLatin1Length(final byte[] bytes, final int offset) {
+        return readInt(bytes, offset + 1);
+    }
+
+    private static int readInt(final byte[] bytes, final int pos) {
+        return ((bytes[pos] & 0xFF) << 24)
+                | ((bytes[pos + 1] & 0xFF) << 16)
+                | ((bytes[pos + 2] & 0xFF) << 8)
+                | (bytes[pos + 3] & 0xFF);
+    }
+
+    private static int readUnsignedShort(final byte[] bytes, final int pos) {
+        return ((bytes[pos] & 0xFF) << 8) | (bytes[pos + 1] & 0xFF);
+    }
+
+    /**
+     * @return the index of the first differing byte of the two ranges, or <code>-1</code> if they are equal
+     */
+    private static int mismatch(final byte[] a, final int aPos,
+                                final byte[] b, final int bPos,
+                                final int length) {
+        // Unsafe reads are not bounds checked
+        if (aPos + length > a.length || bPos + length > b.length) {
+            throw new IllegalArgumentException("malformed input: chunk beyond the end of the array");
+        }
+        int i = 0;
+        if (AsciiUtil.AVAILABLE) {
+            final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+            final long aBase = UnsafeHelper.BYTE_ARRAY_BASE_OFFSET + aPos;
+            final long bBase = UnsafeHelper.BYTE_ARRAY_BASE_OFFSET + bPos;
+            for (; i <= length - 8; i += 8) {
+                if (unsafe.getLong(a, aBase + i) != unsafe.getLong(b, bBase + i)) {
+                    break;
+                }
+            }
+        }
+        for (; i < length; i++) {
+            if (a[aPos + i] != b[bPos + i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static char decodeChar(final byte[] bytes, final int pos, final int end) {
+        final int c1 = bytes[pos] & 0xFF;
+        int c2;
+        int c3;
+        switch (c1 >> 4) {
+            case 0:
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+            case 5:
+            case 6:
+            case 7:
+                /* 0xxxxxxx */
+                return (char) c1;
+            case 12:
+            case 13:
+                /* 110x xxxx 10xx xxxx */
+                if (pos + 2 > end) {
+                    throw new IllegalArgumentException("malformed input: partial character at end");
+                }
+                c2 = bytes[pos + 1];
+                if ((c2 & 0xC0) != 0x80) {
+                    throw new IllegalArgumentException("malformed input around byte " + (pos + 1));
+                }
+                return (char) (((c1 & 0x1F) << 6) | (c2 & 0x3F));
+            case 14:
+                /* 1110 xxxx 10xx xxxx 10xx xxxx */
+                if (pos + 3 > end) {
+                    throw new IllegalArgumentException("malformed input: partial character at end");
+                }
+                c2 = bytes[pos + 1];
+                c3 = bytes[pos + 2];
+                if (((c2 & 0xC0) != 0x80) || ((c3 & 0xC0) != 0x80)) {
+                    throw new IllegalArgumentException("malformed input around byte " + (pos + 1));
+                }
+                return (char) (((c1 & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+            default:
+                /* 10xx xxxx, 1111 xxxx */
+                throw new IllegalArgumentException("malformed input around byte " + pos);
+        }
+    }
+
+    private static int encodedLength(final int c1) {
+        return c1 < 0x80 ? 1 : (c1 < 0xE0 ? 2 : 3);
+    }
+
+    /**
+     * Reads the chars of a non-null encoded string one by one.
+     */
+    private static final class Cursor {
+
+        private final byte[] bytes;
+        private final int length;
+        private final boolean latin1;
+        private int pos;
+        private int chunkEnd;
+        private boolean chunkAscii;
+
+        Cursor(final byte[] bytes, final int offset) {
+            this.bytes = bytes;
+            this.latin1 = bytes[offset] == LATIN1_CODER_V1;
+            if (latin1) {
+                this.length = readLatin1Length(bytes, offset);
+                this.pos = offset + LATIN1_HEADER_LENGTH;
+                this.chunkEnd = pos + length;
+            } else {
+                this.length = readChunkedLength(bytes, offset);
+                this.pos = offset + CHUNKED_HEADER_LENGTH;
+                // Makes the first call load the first chunk header
+                this.chunkEnd = pos;
+            }
+        }
+
+        char next() {
+            if (latin1) {
+                return (char) (bytes[pos++] & 0xFF);
+            }
+            while (pos == chunkEnd) {
+                int utfLength = readUnsignedShort(bytes, pos);
+                chunkAscii = ASCII_AWARE && bytes[pos + 2] != 0;
+                pos += CHUNK_HEADER_LENGTH;
+                chunkEnd = pos + utfLength;
+            }
+            if (chunkAscii) {
+                return (char) bytes[pos++];
+            }
+            char c = decodeChar(bytes, pos, chunkEnd);
+            pos += encodedLength(bytes[pos] & 0xFF);
+            return c;
+        }
+
+    }
+
+}
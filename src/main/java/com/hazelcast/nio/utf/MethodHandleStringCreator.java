@@ -0,0 +1,112 @@
+package com.hazelcast.nio.utf;
+
+import com.hazelcast.logging.Logger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+/**
+ * Creates strings through the package private <code>String</code> constructors that take
+ * over the given array instead of copying it. The constructor is resolved once into a
+ * constant {@link MethodHandle}, so there is no reflective call per string.
+ *
+ * Before Java 9 this is <code>String(char[], boolean)</code>. With compact strings it is
+ * <code>String(byte[], byte)</code>, which is used to build Latin-1 strings straight from
+ * their decoded bytes, char arrays are copied as usual there since they would need to be
+ * compressed anyway.
+ *
+ * On Java 16+ the constructors are only accessible when <code>java.lang</code> is opened
+ * (<code>--add-opens java.base/java.lang=ALL-UNNAMED</code>), otherwise {@link #isAvailable()}
+ * returns <code>false</code>.
+ */
+public final class MethodHandleStringCreator
+        implements OptimizedUTFEncoderDecoder.Latin1StringCreator, UTFUtil.StringCreator {
+
+    // Value of "String.LATIN1"
+    private static final byte LATIN1 = 0;
+
+    // String(char[] value, boolean share), Java 7u6 - 8
+    private static final MethodHandle CHARS_CONSTRUCTOR;
+    // String(byte[] value, byte coder), Java 9+ with compact strings enabled
+    private static final MethodHandle LATIN1_CONSTRUCTOR;
+
+    static {
+        MethodHandle charsConstructor = null;
+        MethodHandle latin1Constructor = null;
+        try {
+            if (String.class.getDeclaredField("value").getType() == char[].class) {
+                charsConstructor = findConstructor(char[].class, boolean.class);
+            } else if (isCompactStringsEnabled()) {
+                latin1Constructor = findConstructor(byte[].class, byte.class);
+            }
+        } catch (Throwable t) {
+            Logger.
+                    getLogger(MethodHandleStringCreator.class).
+                    finest("String constructors are not accessible through method handles", t);
+        }
+        CHARS_CONSTRUCTOR = charsConstructor;
+        LATIN1_CONSTRUCTOR = latin1Constructor;
+    }
+
+    public MethodHandleStringCreator() {
+        if (!isAvailable()) {
+            throw new IllegalStateException("No String constructor is accessible through method handles");
+        }
+    }
+
+    public static boolean isAvailable() {
+        return CHARS_CONSTRUCTOR != null || LATIN1_CONSTRUCTOR != null;
+    }
+
+    @Override
+    public String buildString(final char[] chars) {
+        if (CHARS_CONSTRUCTOR != null) {
+            try {
+                return (String) CHARS_CONSTRUCTOR.invokeExact(chars, true);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return whether Latin-1 strings are built from their bytes without copying, only with
+     * compact strings enabled
+     */
+    @Override
+    public boolean supportsLatin1() {
+        return LATIN1_CONSTRUCTOR != null;
+    }
+
+    @Override
+    public String buildLatin1String(final byte[] bytes) {
+        if (LATIN1_CONSTRUCTOR != null) {
+            try {
+                return (String) LATIN1_CONSTRUCTOR.invokeExact(bytes, LATIN1);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+        final char[] chars = new char[bytes.length];
+        AsciiUtil.widenBytes(bytes, 0, chars, 0, bytes.length);
+        return buildString(chars);
+    }
+
+    private static MethodHandle findConstructor(Class<?>... parameterTypes) throws Exception {
+        Constructor<String> constructor = String.class.getDeclaredConstructor(parameterTypes);
+        constructor.setAccessible(true);
+        return MethodHandles.lookup().unreflectConstructor(constructor);
+    }
+
+    // Compact strings can be disabled by "-XX:-CompactStrings",
+    // then all strings have to be UTF-16 and a Latin-1 coder must not be used.
+    private static boolean isCompactStringsEnabled() throws Exception {
+        Field field = String.class.getDeclaredField("COMPACT_STRINGS");
+        field.setAccessible(true);
+        return field.getBoolean(null);
+    }
+
+}
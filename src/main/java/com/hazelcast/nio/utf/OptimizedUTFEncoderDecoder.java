@@ -8,8 +8,22 @@ import com.hazelcast.util.QuickMath;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.UTFDataFormatException;
 import java.lang.reflect.Constructor;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
@@ -18,7 +32,7 @@ import java.lang.reflect.Method;
  */
 public final class OptimizedUTFEncoderDecoder {
 
-    private static final int STRING_CHUNK_SIZE = 16 * 1024;
+    static final int STRING_CHUNK_SIZE = 16 * 1024;
 
     private static final OptimizedUTFEncoderDecoder INSTANCE;
     private static final StringValueArrayProviderFactory STRING_VALUE_ARRAY_PROVIDER_FACTORY;
@@ -29,15 +43,57 @@ public final class OptimizedUTFEncoderDecoder {
     // Buffered Data Output may set this flag
     // but Non-Buffered Data Output class always set this flag to "false".
     // So their results may be different.
-    private static final boolean ASCII_AWARE =
+    static final boolean ASCII_AWARE =
             Boolean.parseBoolean(
                     System.getProperty("hazelcast.nio.asciiaware", "true"));
 
+    // Copy runs of ASCII characters word-at-a-time instead of char by char
+    private static final boolean BULK_ASCII =
+            Boolean.parseBoolean(
+                    System.getProperty("hazelcast.nio.bulkascii", "true"));
+
+    // Write strings without chars above 0xFF as a coder tag plus raw Latin-1 bytes.
+    // Readers always understand this format, but readers before it would take the tag as "null".
+    private static final boolean COMPACT_LATIN1 =
+            Boolean.parseBoolean(
+                    System.getProperty("hazelcast.nio.compactlatin1", "false"));
+
+    // The first byte of an encoded string. It was a boolean "null" flag before the compact
+    // encoding was introduced, so the coder tags must not be 0 or 1. High bit marks a coder tag,
+    // the low bits are the version of it.
+    static final byte NOT_NULL = 0;
+    static final byte NULL = 1;
+    static final byte LATIN1_CODER_V1 = (byte) 0x81;
+
+    // Strings are backed by byte[] (Java 9+ compact strings), so a Latin-1 String
+    // can be built from bytes without widening them to chars.
+    private static final boolean COMPACT_STRINGS = isCompactStrings();
+
+    // Encode in a single pass with a back-patched length header when writing to a BufferObjectDataOutput
+    private static final boolean SINGLE_PASS =
+            Boolean.parseBoolean(
+                    System.getProperty("hazelcast.nio.singlepass", "true"));
+
     private static final CharArrayBasedUtfWriter CHAR_ARRAY_BASED_UTF_WRITER =
-            new CharArrayBasedUtfWriter();
+            new CharArrayBasedUtfWriter(false);
+    private static final CharArrayBasedUtfWriter BULK_ASCII_CHAR_ARRAY_BASED_UTF_WRITER =
+            new CharArrayBasedUtfWriter(true);
     private static final StringBasedUtfWriter STRING_BASED_UTF_WRITER =
             new StringBasedUtfWriter();
 
+    // Store the hash computed while decoding into the "hash" field of the decoded strings
+    private static final boolean STORE_STRING_HASH =
+            Boolean.parseBoolean(
+                    System.getProperty("hazelcast.nio.storestringhash", "false"));
+
+    // Strings with at least this many chars encode and decode their chunks in parallel, 0 disables it
+    private static final int PARALLEL_THRESHOLD =
+            Integer.getInteger("hazelcast.nio.parallelthreshold", 0);
+
+    private static final boolean NATIVE_BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+    // Offset of "java.nio.Buffer.address" which holds the memory address of direct buffers
+    private static final long BUFFER_ADDRESS_FIELD_OFFSET;
+
     static {
         INSTANCE = buildUTFUtil();
 
@@ -54,19 +110,71 @@ public final class OptimizedUTFEncoderDecoder {
             }
         }
         STRING_VALUE_ARRAY_PROVIDER_FACTORY = stringValueArrayProviderFactory;
+
+        long bufferAddressFieldOffset = -1;
+        if (UnsafeHelper.UNSAFE_AVAILABLE) {
+            try {
+                bufferAddressFieldOffset =
+                        UnsafeHelper.UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+            } catch (Throwable t) {
+                Logger.
+                        getLogger(OptimizedUTFEncoderDecoder.class).
+                        finest("Direct buffer address is not accessible", t);
+            }
+        }
+        BUFFER_ADDRESS_FIELD_OFFSET = bufferAddressFieldOffset;
     }
 
     private final StringCreator stringCreator;
     private final boolean hazelcastEnterpriseActive;
+    private final boolean bulkAscii;
+    private final boolean singlePass;
+    private final boolean compactLatin1;
+    private final StringCache stringCache;
+    private final Latin1StringCreator latin1StringCreator;
+    private final int parallelThreshold;
+    private final ForkJoinPool forkJoinPool;
+    private final boolean storeStringHash;
+    private final CharArrayBasedUtfWriter charArrayBasedUtfWriter;
 
     private OptimizedUTFEncoderDecoder(boolean fastStringCreator) {
-        this(fastStringCreator ? buildFastStringCreator() : new DefaultStringCreator(), false);
+        this(fastStringCreator ? buildFastStringCreator() : new DefaultStringCreator(), false,
+                BULK_ASCII, SINGLE_PASS, COMPACT_LATIN1, null,
+                PARALLEL_THRESHOLD, null, STORE_STRING_HASH);
     }
 
     private OptimizedUTFEncoderDecoder(StringCreator stringCreator,
-                                       boolean hazelcastEnterpriseActive) {
+                                       boolean hazelcastEnterpriseActive,
+                                       boolean bulkAscii,
+                                       boolean singlePass,
+                                       boolean compactLatin1,
+                                       StringCache stringCache,
+                                       int parallelThreshold,
+                                       ForkJoinPool forkJoinPool,
+                                       boolean storeStringHash) {
         this.stringCreator = stringCreator;
         this.hazelcastEnterpriseActive = hazelcastEnterpriseActive;
+        this.singlePass = singlePass;
+        this.compactLatin1 = compactLatin1;
+        this.stringCache = stringCache;
+        this.latin1StringCreator =
+                stringCreator instanceof Latin1StringCreator
+                        && ((Latin1StringCreator) stringCreator).supportsLatin1()
+                        ? (Latin1StringCreator) stringCreator
+                        : null;
+        this.bulkAscii = bulkAscii && AsciiUtil.AVAILABLE;
+        // Chunks are encoded into and decoded from their slices through Unsafe
+        this.parallelThreshold = UnsafeHelper.UNSAFE_AVAILABLE ? parallelThreshold : 0;
+        this.forkJoinPool = forkJoinPool;
+        this.storeStringHash = storeStringHash && UnsafeBasedStringCharProviderFactory.isHashStoreAvailable();
+        this.charArrayBasedUtfWriter =
+                this.bulkAscii
+                        ? BULK_ASCII_CHAR_ARRAY_BASED_UTF_WRITER
+                        : CHAR_ARRAY_BASED_UTF_WRITER;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
     }
 
     public StringCreator getStringCreator() {
@@ -77,19 +185,91 @@ public final class OptimizedUTFEncoderDecoder {
         return hazelcastEnterpriseActive;
     }
 
+    public boolean isBulkAscii() {
+        return bulkAscii;
+    }
+
+    public boolean isSinglePass() {
+        return singlePass;
+    }
+
+    public boolean isCompactLatin1() {
+        return compactLatin1;
+    }
+
+    public StringCache getStringCache() {
+        return stringCache;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public boolean isStoreStringHash() {
+        return storeStringHash;
+    }
+
+    public static void writeUTF(final DataOutput out,
+                                final String str) throws IOException {
+        INSTANCE.writeUTF0(out, str);
+    }
+
     public static void writeUTF(final DataOutput out,
                                 final String str,
                                 final byte[] buffer) throws IOException {
         INSTANCE.writeUTF0(out, str, buffer);
     }
 
+    public static String readUTF(final DataInput in) throws IOException {
+        return INSTANCE.readUTF0(in);
+    }
+
     public static String readUTF(final DataInput in,
                                  final byte[] buffer) throws IOException {
         return INSTANCE.readUTF0(in, buffer);
     }
 
+    public static String readUTF(final DataInput in,
+                                 final byte[] buffer,
+                                 final int[] hash) throws IOException {
+        return INSTANCE.readUTF0(in, buffer, hash);
+    }
+
+    public static void writeUTF(final ByteBuffer dst,
+                                final String str) throws IOException {
+        INSTANCE.writeUTF0(dst, str);
+    }
+
+    public static String readUTF(final ByteBuffer src) throws IOException {
+        return INSTANCE.readUTF0(src);
+    }
+
+    public static int writeUTF(final long address,
+                               final int limit,
+                               final String str) throws IOException {
+        return INSTANCE.writeUTF0(address, limit, str);
+    }
+
+    public static String readUTF(final long address,
+                                 final int limit) throws IOException {
+        return INSTANCE.readUTF0(address, limit);
+    }
+
     // ********************************************************************* //
 
+    /**
+     * Encodes a string like {@link #writeUTF0(DataOutput, String, byte[])} with a staging buffer
+     * taken from the {@link UtfBufferPool} of the current thread, sized for the string.
+     */
+    public void writeUTF0(final DataOutput out, final String str) throws IOException {
+        final byte[] buffer = UtfBufferPool.acquire(UtfBufferPool.writeBufferSize(str != null ? str.length() : 0));
+        try {
+            writeUTF0(out, str, buffer);
+        } finally {
+            UtfBufferPool.release(buffer);
+        }
+    }
+
     public void writeUTF0(final DataOutput out,
                           final String str,
                           final byte[] buffer) throws IOException {
@@ -98,8 +278,8 @@ public final class OptimizedUTFEncoderDecoder {
                     "Size of the buffer has to be power of two, was " + buffer.length);
         }
         boolean isNull = str == null;
-        out.writeBoolean(isNull);
         if (isNull) {
+            out.writeByte(NULL);
             return;
         }
 
@@ -107,20 +287,29 @@ public final class OptimizedUTFEncoderDecoder {
                 STRING_VALUE_ARRAY_PROVIDER_FACTORY != null
                         ? STRING_VALUE_ARRAY_PROVIDER_FACTORY.create(str)
                         : null;
+        final char[] value = stringValueArrayProvider != null ? stringValueArrayProvider.value() : null;
+        if (compactLatin1 && isLatin1(value, str)) {
+            writeLatin1(out, value, str, buffer);
+            return;
+        }
+        out.writeByte(NOT_NULL);
+
         final UtfWriter utfWriter =
                 stringValueArrayProvider != null
-                        ? CHAR_ARRAY_BASED_UTF_WRITER
+                        ? charArrayBasedUtfWriter
                         : STRING_BASED_UTF_WRITER;
 
         int length = str.length();
         out.writeInt(length);
         out.writeInt(length);
-        if (length > 0) {
+        if (isParallel(length)) {
+            writeChunksParallel(out, value, str, length);
+        } else if (length > 0) {
             int chunkSize = (length / STRING_CHUNK_SIZE) + 1;
             for (int i = 0; i < chunkSize; i++) {
                 int beginIndex = Math.max(0, i * STRING_CHUNK_SIZE - 1);
                 int endIndex = Math.min((i + 1) * STRING_CHUNK_SIZE - 1, length);
-                utfWriter.writeShortUTF(stringValueArrayProvider, out, str, beginIndex, endIndex, buffer);
+                utfWriter.writeShortUTF(stringValueArrayProvider, out, str, beginIndex, endIndex, buffer, singlePass);
             }
         }
     }
@@ -138,14 +327,26 @@ public final class OptimizedUTFEncoderDecoder {
             implements StringValueArrayProviderFactory {
 
         private static long stringValueFieldOffset = -1;
+        private static long stringHashFieldOffset = -1;
         private static sun.misc.Unsafe UNSAFE;
 
         static {
             if (UnsafeHelper.UNSAFE_AVAILABLE) {
                 UNSAFE = UnsafeHelper.UNSAFE;
                 try {
-                    stringValueFieldOffset =
-                            UNSAFE.objectFieldOffset(String.class.getDeclaredField("value"));
+                    Field valueField = String.class.getDeclaredField("value");
+                    // Strings are backed by byte[] with compact strings
+                    if (valueField.getType() == char[].class) {
+                        stringValueFieldOffset = UNSAFE.objectFieldOffset(valueField);
+                    }
+                } catch (Throwable t) {
+
+                }
+                try {
+                    Field hashField = String.class.getDeclaredField("hash");
+                    if (hashField.getType() == int.class) {
+                        stringHashFieldOffset = UNSAFE.objectFieldOffset(hashField);
+                    }
                 } catch (Throwable t) {
 
                 }
@@ -162,6 +363,15 @@ public final class OptimizedUTFEncoderDecoder {
             return UNSAFE != null && stringValueFieldOffset != -1;
         }
 
+        static boolean isHashStoreAvailable() {
+            return UNSAFE != null && stringHashFieldOffset != -1;
+        }
+
+        // Same as String caching its own hash, a racy but idempotent write of a plain field
+        static void storeHash(String str, int hash) {
+            UNSAFE.putInt(str, stringHashFieldOffset, hash);
+        }
+
     }
 
     private static class ReflectionBasedStringCharProviderFactory
@@ -172,7 +382,11 @@ public final class OptimizedUTFEncoderDecoder {
         static {
             try {
                 valueArrayField = String.class.getDeclaredField("value");
-                valueArrayField.setAccessible(true);
+                if (valueArrayField.getType() == char[].class) {
+                    valueArrayField.setAccessible(true);
+                } else {
+                    valueArrayField = null;
+                }
             } catch (Throwable t) {
                 valueArrayField = null;
             }
@@ -244,12 +458,19 @@ public final class OptimizedUTFEncoderDecoder {
                            final String str,
                            final int beginIndex,
                            final int endIndex,
-                           final byte[] buffer) throws IOException;
+                           final byte[] buffer,
+                           final boolean singlePass) throws IOException;
 
     }
 
     private static class CharArrayBasedUtfWriter implements UtfWriter {
 
+        private final boolean bulkAscii;
+
+        CharArrayBasedUtfWriter(boolean bulkAscii) {
+            this.bulkAscii = bulkAscii;
+        }
+
         //CHECKSTYLE:OFF
         @Override
         public void writeShortUTF(final StringValueArrayProvider stringCharProvider,
@@ -257,8 +478,11 @@ public final class OptimizedUTFEncoderDecoder {
                                   final String str,
                                   final int beginIndex,
                                   final int endIndex,
-                                  final byte[] buffer) throws IOException {
-            final boolean isBufferObjectDataOutput = out instanceof BufferObjectDataOutput;
+                                  final byte[] buffer,
+                                  final boolean singlePass) throws IOException {
+            // Single pass: reserve the header, encode while counting and patch the header afterwards.
+            // Otherwise the UTF length is calculated by an extra pass over the characters.
+            final boolean isBufferObjectDataOutput = singlePass && out instanceof BufferObjectDataOutput;
             final BufferObjectDataOutput bufferObjectDataOutput =
                     isBufferObjectDataOutput ? (BufferObjectDataOutput) out : null;
             final char[] value = stringCharProvider.value();
@@ -272,7 +496,7 @@ public final class OptimizedUTFEncoderDecoder {
 
             if (isBufferObjectDataOutput) {
                 // At most, one character can hold 3 bytes
-                utfLengthLimit = str.length() * 3;
+                utfLengthLimit = (endIndex - beginIndex) * 3;
 
                 // We save current position of buffer data output.
                 // Then we write the length of UTF and ASCII state to here
@@ -303,12 +527,17 @@ public final class OptimizedUTFEncoderDecoder {
             }
 
             if (buffer.length >= utfLengthLimit) {
-                for (i = beginIndex; i < endIndex; i++) {
-                    c = value[i];
-                    if (!((c <= 0x007F) && (c >= 0x0001))) {
-                        break;
+                if (bulkAscii) {
+                    bufferPos = AsciiUtil.copyAsciiChars(value, beginIndex, buffer, 0, endIndex - beginIndex);
+                    i = beginIndex + bufferPos;
+                } else {
+                    for (i = beginIndex; i < endIndex; i++) {
+                        c = value[i];
+                        if (!((c <= 0x007F) && (c >= 0x0001))) {
+                            break;
+                        }
+                        buffer[bufferPos++] = (byte) c;
                     }
-                    buffer[bufferPos++] = (byte) c;
                 }
 
                 for (; i < endIndex; i++) {
@@ -334,12 +563,30 @@ public final class OptimizedUTFEncoderDecoder {
                     utfLength = bufferPos;
                 }
             } else {
-                for (i = beginIndex; i < endIndex; i++) {
-                    c = value[i];
-                    if (!((c <= 0x007F) && (c >= 0x0001))) {
-                        break;
+                if (bulkAscii) {
+                    i = beginIndex;
+                    while (i < endIndex) {
+                        // Flush only if there is something left to write, same as "buffering" does
+                        if (bufferPos == buffer.length) {
+                            out.write(buffer, 0, buffer.length);
+                            bufferPos = 0;
+                        }
+                        int count = Math.min(buffer.length - bufferPos, endIndex - i);
+                        int copied = AsciiUtil.copyAsciiChars(value, i, buffer, bufferPos, count);
+                        i += copied;
+                        bufferPos += copied;
+                        if (copied != count) {
+                            break;
+                        }
+                    }
+                } else {
+                    for (i = beginIndex; i < endIndex; i++) {
+                        c = value[i];
+                        if (!((c <= 0x007F) && (c >= 0x0001))) {
+                            break;
+                        }
+                        bufferPos = buffering(buffer, bufferPos, (byte) c, out);
                     }
-                    bufferPos = buffering(buffer, bufferPos, (byte) c, out);
                 }
 
                 if (isBufferObjectDataOutput) {
@@ -391,7 +638,7 @@ public final class OptimizedUTFEncoderDecoder {
 
                 // Write the ASCII status of UTF to saved position before
                 if (ASCII_AWARE) {
-                    bufferObjectDataOutput.writeBoolean(pos + 2, utfLength == str.length());
+                    bufferObjectDataOutput.writeBoolean(pos + 2, utfLength == endIndex - beginIndex);
                 }
             }
         }
@@ -408,8 +655,11 @@ public final class OptimizedUTFEncoderDecoder {
                                   final String str,
                                   final int beginIndex,
                                   final int endIndex,
-                                  final byte[] buffer) throws IOException {
-            final boolean isBufferObjectDataOutput = out instanceof BufferObjectDataOutput;
+                                  final byte[] buffer,
+                                  final boolean singlePass) throws IOException {
+            // Single pass: reserve the header, encode while counting and patch the header afterwards.
+            // Otherwise the UTF length is calculated by an extra pass over the characters.
+            final boolean isBufferObjectDataOutput = singlePass && out instanceof BufferObjectDataOutput;
             final BufferObjectDataOutput bufferObjectDataOutput =
                     isBufferObjectDataOutput ? (BufferObjectDataOutput) out : null;
 
@@ -422,7 +672,7 @@ public final class OptimizedUTFEncoderDecoder {
 
             if (isBufferObjectDataOutput) {
                 // At most, one character can hold 3 bytes
-                utfLengthLimit = str.length() * 3;
+                utfLengthLimit = (endIndex - beginIndex) * 3;
 
                 // We save current position of buffer data output.
                 // Then we write the length of UTF and ASCII state to here
@@ -541,7 +791,7 @@ public final class OptimizedUTFEncoderDecoder {
 
                 // Write the ASCII status of UTF to saved position before
                 if (ASCII_AWARE) {
-                    bufferObjectDataOutput.writeBoolean(pos + 2, utfLength == str.length());
+                    bufferObjectDataOutput.writeBoolean(pos + 2, utfLength == endIndex - beginIndex);
                 }
             }
         }
@@ -551,13 +801,45 @@ public final class OptimizedUTFEncoderDecoder {
 
     // ********************************************************************* //
 
+    /**
+     * Decodes a string like {@link #readUTF0(DataInput, byte[])} with a staging buffer
+     * taken from the {@link UtfBufferPool} of the current thread.
+     */
+    public String readUTF0(final DataInput in) throws IOException {
+        final byte[] buffer = UtfBufferPool.acquire(UtfBufferPool.READ_BUFFER_SIZE);
+        try {
+            return readUTF0(in, buffer, null);
+        } finally {
+            UtfBufferPool.release(buffer);
+        }
+    }
+
     public String readUTF0(final DataInput in, final byte[] buffer) throws IOException {
+        return readUTF0(in, buffer, null);
+    }
+
+    /**
+     * Decodes a string like {@link #readUTF0(DataInput, byte[])} and computes its {@link String#hashCode()}
+     * chunk by chunk while doing so, instead of scanning the chars again later.
+     *
+     * @param hash if not <code>null</code>, the hash of the string is stored into <code>hash[0]</code>
+     *             (<code>0</code> for a <code>null</code> string)
+     */
+    public String readUTF0(final DataInput in, final byte[] buffer, final int[] hash) throws IOException {
         if (!QuickMath.isPowerOfTwo(buffer.length)) {
             throw new IllegalArgumentException(
                     "Size of the buffer has to be power of two, was " + buffer.length);
         }
-        boolean isNull = in.readBoolean();
+        byte header = in.readByte();
+        if (header == LATIN1_CODER_V1) {
+            return readLatin1(in, buffer, hash);
+        }
+        checkHeader(header);
+        boolean isNull = header == NULL;
         if (isNull) {
+            if (hash != null) {
+                hash[0] = 0;
+            }
             return null;
         }
         int length = in.readInt();
@@ -566,27 +848,114 @@ public final class OptimizedUTFEncoderDecoder {
             throw new UTFDataFormatException(
                     "Length check failed, maybe broken bytestream or wrong stream position");
         }
+        // Only single chunk strings are cached or built straight from their bytes
+        if (length > 0 && length < STRING_CHUNK_SIZE
+                && (stringCache != null || latin1StringCreator != null)) {
+            return readSingleChunkUTF(in, length, buffer, hash);
+        }
+        final boolean hashing = isHashing(hash);
         final char[] data = new char[length];
-        if (length > 0) {
+        int h = 0;
+        if (isParallel(length)) {
+            readChunksParallel(in, data);
+            if (hashing) {
+                h = hash(0, data, 0, length);
+            }
+        } else if (length > 0) {
             int chunkSize = length / STRING_CHUNK_SIZE + 1;
             for (int i = 0; i < chunkSize; i++) {
                 int beginIndex = Math.max(0, i * STRING_CHUNK_SIZE - 1);
                 readShortUTF(in, data, beginIndex, buffer);
+                if (hashing) {
+                    // Hash the chunk while its chars are still in the cache
+                    int endIndex = Math.min((i + 1) * STRING_CHUNK_SIZE - 1, length);
+                    h = hash(h, data, beginIndex, endIndex);
+                }
             }
         }
-        return stringCreator.buildString(data);
+        final String str = stringCreator.buildString(data);
+        return hashing ? hashed(str, h, hash) : str;
+    }
+
+    private String readSingleChunkUTF(final DataInput in,
+                                      final int length,
+                                      final byte[] buffer,
+                                      final int[] hash) throws IOException {
+        final int utfLength = in.readShort() & 0xFFFF;
+        final boolean allAscii = ASCII_AWARE ? in.readBoolean() : false;
+        // An ASCII chunk is its own Latin-1 encoding, so it can become a String without decoding
+        final boolean asLatin1 = allAscii && latin1StringCreator != null;
+        if (asLatin1 && utfLength != length) {
+            throw new UTFDataFormatException(
+                    "malformed input: ASCII chunk of " + utfLength + " bytes for " + length + " chars");
+        }
+        // buffer[0] is used to hold read data, a cached chunk has to fit after it as a whole
+        if (stringCache == null
+                || utfLength > stringCache.getMaxEncodedLength()
+                || utfLength > buffer.length - 1) {
+            if (asLatin1) {
+                final byte[] bytes = new byte[utfLength];
+                in.readFully(bytes);
+                return readLatin1String(bytes, hash);
+            }
+            in.readFully(buffer, 1, Math.min(utfLength, buffer.length - 1));
+            return decodeSingleChunkUTF(in, length, buffer, utfLength, allAscii, hash);
+        }
+        in.readFully(buffer, 1, utfLength);
+        final int cacheHash = StringCache.hash(buffer, 1, utfLength);
+        // Nothing is allocated before the lookup, a hit returns the cached string as it is
+        String str = stringCache.get(buffer, 1, utfLength, cacheHash);
+        if (str == null) {
+            str = asLatin1
+                    ? readLatin1String(Arrays.copyOfRange(buffer, 1, 1 + utfLength), hash)
+                    : decodeSingleChunkUTF(in, length, buffer, utfLength, allAscii, hash);
+            stringCache.put(buffer, 1, utfLength, cacheHash, str);
+        } else if (hash != null) {
+            // A cached string computes its hash once and keeps it, so there is nothing to precompute
+            hash[0] = str.hashCode();
+        }
+        return str;
+    }
+
+    private String decodeSingleChunkUTF(final DataInput in,
+                                        final int length,
+                                        final byte[] buffer,
+                                        final int utfLength,
+                                        final boolean allAscii,
+                                        final int[] hash) throws IOException {
+        final char[] data = new char[length];
+        decodeShortUTF(in, data, 0, buffer, utfLength, allAscii);
+        final String str = stringCreator.buildString(data);
+        return isHashing(hash) ? hashed(str, hash(0, data, 0, length), hash) : str;
+    }
+
+    private String readLatin1String(final byte[] bytes, final int[] hash) {
+        final String str = latin1StringCreator.buildLatin1String(bytes);
+        return isHashing(hash) ? hashed(str, hash(0, bytes, 0, bytes.length), hash) : str;
     }
 
-    //CHECKSTYLE:OFF
     private void readShortUTF(final DataInput in,
                               final char[] data,
                               final int beginIndex,
                               final byte[] buffer) throws IOException {
-        final int utfLength = in.readShort();
+        final int utfLength = in.readShort() & 0xFFFF;
         final boolean allAscii = ASCII_AWARE ? in.readBoolean() : false;
         // buffer[0] is used to hold read data
-        // so actual useful length of buffer is as "length - 1"
-        final int minUtfLenght = Math.min(utfLength, buffer.length - 1);
+        // so actual useful length of buffer is as "length - 1".
+        // The first readable data is at 1. index since 0. index is used to hold read data.
+        in.readFully(buffer, 1, Math.min(utfLength, buffer.length - 1));
+        decodeShortUTF(in, data, beginIndex, buffer, utfLength, allAscii);
+    }
+
+    // Decodes a chunk whose first "min(utfLength, buffer.length - 1)" bytes are already loaded into buffer
+    //CHECKSTYLE:OFF
+    private void decodeShortUTF(final DataInput in,
+                                final char[] data,
+                                final int beginIndex,
+                                final byte[] buffer,
+                                final int utfLength,
+                                final boolean allAscii) throws IOException {
+        int minUtfLenght = Math.min(utfLength, buffer.length - 1);
         final int bufferLimit = minUtfLenght + 1;
         int readCount = 0;
         // We use buffer[0] to hold read data, so position starts from 1
@@ -597,10 +966,22 @@ public final class OptimizedUTFEncoderDecoder {
         int cTemp = 0;
         int charArrCount = beginIndex;
 
-        // The first readable data is at 1. index since 0. index is used to hold read data.
-        in.readFully(buffer, 1, minUtfLenght);
+        // Unsafe copies are not bounds checked, so a broken stream must not overrun "data"
+        if (bulkAscii && allAscii && utfLength > data.length - beginIndex) {
+            throw new UTFDataFormatException("malformed input: chunk longer than string");
+        }
 
-        if (allAscii) {
+        if (allAscii && bulkAscii) {
+            AsciiUtil.widenBytes(buffer, 1, data, charArrCount, minUtfLenght);
+            charArrCount += minUtfLenght;
+
+            for (readCount = minUtfLenght; readCount < utfLength; readCount += minUtfLenght) {
+                minUtfLenght = Math.min(buffer.length - 1, utfLength - readCount);
+                in.readFully(buffer, 1, minUtfLenght);
+                AsciiUtil.widenBytes(buffer, 1, data, charArrCount, minUtfLenght);
+                charArrCount += minUtfLenght;
+            }
+        } else if (allAscii) {
             while (bufferPos != bufferLimit) {
                 data[charArrCount++] = (char)(buffer[bufferPos++] & 0xFF);
             }
@@ -610,25 +991,30 @@ public final class OptimizedUTFEncoderDecoder {
                 data[charArrCount++] = (char) (buffer[0] & 0xFF);
             }
         } else {
-            while (bufferPos != bufferLimit) {
-                c1 = buffer[bufferPos++] & 0xFF;
-                if (c1 > 127) {
-                    bufferPos--;
-                    break;
+            if (bulkAscii) {
+                readCount = AsciiUtil.copyAsciiBytes(buffer, 1, data, charArrCount,
+                        Math.min(minUtfLenght, data.length - charArrCount));
+                charArrCount += readCount;
+                bufferPos += readCount;
+            } else {
+                while (bufferPos != bufferLimit) {
+                    c1 = buffer[bufferPos] & 0xFF;
+                    if (c1 > 127) {
+                        break;
+                    }
+                    bufferPos++;
+                    data[charArrCount++] = (char) c1;
                 }
-                data[charArrCount++] = (char) c1;
+                readCount = bufferPos - 1;
             }
 
-            readCount = bufferPos - 1;
-
             // Means that, 1. loop is finished since "bufferPos" is equal to "minUtfLenght"
             // and buffer capacity may be not enough to serve the requested byte.
             // So, we should get requested byte via "buffered" method by checking buffer and
             // reloading it from DataInput if it is empty.
-            if (bufferPos == bufferLimit) {
-                bufferPos = buffered(buffer, bufferPos, utfLength, readCount, in);
-                c1 = buffer[0] & 0xFF;
-            }
+            // Otherwise "bufferPos" points to the first non-ASCII byte which is consumed here.
+            bufferPos = buffered(buffer, bufferPos, utfLength, readCount, in);
+            c1 = buffer[0] & 0xFF;
 
             while (readCount < utfLength) {
                 cTemp = c1 >> 4;
@@ -643,7 +1029,7 @@ public final class OptimizedUTFEncoderDecoder {
                         throw new UTFDataFormatException(
                                 "malformed input: partial character at end");
                     }
-                    bufferPos = buffered(buffer, bufferPos, utfLength, readCount, in);
+                    bufferPos = buffered(buffer, bufferPos, utfLength, readCount + 1, in);
                     c2 = buffer[0] & 0xFF;
                     if ((c2 & 0xC0) != 0x80) {
                         throw new UTFDataFormatException(
@@ -657,9 +1043,9 @@ public final class OptimizedUTFEncoderDecoder {
                         throw new UTFDataFormatException(
                                 "malformed input: partial character at end");
                     }
-                    bufferPos = buffered(buffer, bufferPos, utfLength, readCount, in);
+                    bufferPos = buffered(buffer, bufferPos, utfLength, readCount + 1, in);
                     c2 = buffer[0] & 0xFF;
-                    bufferPos = buffered(buffer, bufferPos, utfLength, readCount, in);
+                    bufferPos = buffered(buffer, bufferPos, utfLength, readCount + 2, in);
                     c3 = buffer[0] & 0xFF;
                     if (((c2 & 0xC0) != 0x80) || ((c3 & 0xC0) != 0x80)) {
                         throw new UTFDataFormatException(
@@ -681,6 +1067,644 @@ public final class OptimizedUTFEncoderDecoder {
     }
     //CHECKSTYLE:ON
 
+    // ********************************************************************* //
+    //
+    // Compact Latin-1 encoding: coder tag, int length and one byte per char.
+    //
+    // ********************************************************************* //
+
+    private static boolean isLatin1(final char[] value, final String str) {
+        if (value != null) {
+            return AsciiUtil.isLatin1(value, 0, value.length);
+        }
+        for (int i = 0, length = str.length(); i < length; i++) {
+            if (str.charAt(i) > 0x00FF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void writeLatin1(final DataOutput out,
+                                    final char[] value,
+                                    final String str,
+                                    final byte[] buffer) throws IOException {
+        final int length = str.length();
+        out.writeByte(LATIN1_CODER_V1);
+        out.writeInt(length);
+        for (int i = 0; i < length; i += buffer.length) {
+            int count = Math.min(buffer.length, length - i);
+            if (value != null) {
+                AsciiUtil.narrowChars(value, i, buffer, 0, count);
+            } else {
+                // Takes the low byte of each char, a plain array copy for compact strings
+                str.getBytes(i, i + count, buffer, 0);
+            }
+            out.write(buffer, 0, count);
+        }
+    }
+
+    private String readLatin1(final DataInput in, final byte[] buffer, final int[] hash) throws IOException {
+        final int length = in.readInt();
+        checkLatin1Length(length);
+        final boolean hashing = isHashing(hash);
+        if (latin1StringCreator != null) {
+            final byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return readLatin1String(bytes, hash);
+        }
+        if (COMPACT_STRINGS) {
+            final byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            final String str = newLatin1String(bytes);
+            return hashing ? hashed(str, hash(0, bytes, 0, length), hash) : str;
+        }
+        final char[] data = new char[length];
+        int h = 0;
+        for (int i = 0; i < length; i += buffer.length) {
+            int count = Math.min(buffer.length, length - i);
+            in.readFully(buffer, 0, count);
+            AsciiUtil.widenBytes(buffer, 0, data, i, count);
+            if (hashing) {
+                h = hash(h, buffer, 0, count);
+            }
+        }
+        final String str = stringCreator.buildString(data);
+        return hashing ? hashed(str, h, hash) : str;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String newLatin1String(final byte[] bytes) {
+        // With compact strings, a zero high byte makes this a copy of the bytes without widening
+        return new String(bytes, 0, 0, bytes.length);
+    }
+
+    private static boolean isCompactStrings() {
+        try {
+            return String.class.getDeclaredField("value").getType() == byte[].class;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    private boolean isHashing(final int[] hash) {
+        return hash != null || storeStringHash;
+    }
+
+    private String hashed(final String str, final int h, final int[] hash) {
+        if (hash != null) {
+            hash[0] = h;
+        }
+        // Zero is what an uncomputed hash looks like, so there is nothing to store then
+        if (storeStringHash && h != 0) {
+            UnsafeBasedStringCharProviderFactory.storeHash(str, h);
+        }
+        return str;
+    }
+
+    // Continues the String.hashCode() polynomial "h = 31 * h + c" over the given chars.
+    // Unrolled by four, so the multiplications don't all wait on each other.
+    private static int hash(int h, final char[] chars, final int from, final int to) {
+        int i = from;
+        for (; i <= to - 4; i += 4) {
+            h = 923521 * h + 29791 * chars[i] + 961 * chars[i + 1] + 31 * chars[i + 2] + chars[i + 3];
+        }
+        for (; i < to; i++) {
+            h = 31 * h + chars[i];
+        }
+        return h;
+    }
+
+    // Same as above over Latin-1 bytes
+    private static int hash(int h, final byte[] bytes, final int from, final int to) {
+        int i = from;
+        for (; i <= to - 4; i += 4) {
+            h = 923521 * h + 29791 * (bytes[i] & 0xFF) + 961 * (bytes[i + 1] & 0xFF)
+                    + 31 * (bytes[i + 2] & 0xFF) + (bytes[i + 3] & 0xFF);
+        }
+        for (; i < to; i++) {
+            h = 31 * h + (bytes[i] & 0xFF);
+        }
+        return h;
+    }
+
+    // ********************************************************************* //
+    //
+    // Parallel encoding and decoding of large strings.
+    // Every chunk is encoded into or decoded from its own slice on the fork/join pool
+    // by the direct (Unsafe based) chunk routines. Slices are written to the output in
+    // chunk order, and read from the input in order while earlier ones are decoded.
+    //
+    // ********************************************************************* //
+
+    private boolean isParallel(final int length) {
+        return parallelThreshold > 0 && length >= parallelThreshold && length >= STRING_CHUNK_SIZE;
+    }
+
+    private ForkJoinPool forkJoinPool() {
+        return forkJoinPool != null ? forkJoinPool : ParallelPoolHolder.POOL;
+    }
+
+    private void writeChunksParallel(final DataOutput out,
+                                     final char[] value,
+                                     final String str,
+                                     final int length) throws IOException {
+        final ForkJoinPool pool = forkJoinPool();
+        final int chunkSize = (length / STRING_CHUNK_SIZE) + 1;
+        final List<Future<byte[]>> slices = new ArrayList<Future<byte[]>>(chunkSize);
+        for (int i = 0; i < chunkSize; i++) {
+            final int beginIndex = Math.max(0, i * STRING_CHUNK_SIZE - 1);
+            final int endIndex = Math.min((i + 1) * STRING_CHUNK_SIZE - 1, length);
+            slices.add(pool.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    // Header plus the worst case of 3 bytes per character
+                    byte[] slice = new byte[(ASCII_AWARE ? 3 : 2) + (endIndex - beginIndex) * 3];
+                    long base = UnsafeHelper.BYTE_ARRAY_BASE_OFFSET;
+                    long end = writeShortUTF(slice, base, base + slice.length, true, value, str, beginIndex, endIndex);
+                    return end - base == slice.length ? slice : Arrays.copyOf(slice, (int) (end - base));
+                }
+            }));
+        }
+        for (Future<byte[]> slice : slices) {
+            byte[] bytes = getSlice(slice);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private void readChunksParallel(final DataInput in, final char[] data) throws IOException {
+        final ForkJoinPool pool = forkJoinPool();
+        final int chunkSize = data.length / STRING_CHUNK_SIZE + 1;
+        final List<Future<byte[]>> slices = new ArrayList<Future<byte[]>>(chunkSize);
+        for (int i = 0; i < chunkSize; i++) {
+            final int beginIndex = Math.max(0, i * STRING_CHUNK_SIZE - 1);
+            final int utfLength = in.readShort() & 0xFFFF;
+            final int headerLength = ASCII_AWARE ? 3 : 2;
+            final byte[] slice = new byte[headerLength + utfLength];
+            slice[0] = (byte) (utfLength >>> 8);
+            slice[1] = (byte) utfLength;
+            if (ASCII_AWARE) {
+                slice[2] = in.readByte();
+            }
+            in.readFully(slice, headerLength, utfLength);
+            slices.add(pool.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    long base = UnsafeHelper.BYTE_ARRAY_BASE_OFFSET;
+                    readShortUTF(slice, base, base + slice.length, true, data, beginIndex);
+                    return slice;
+                }
+            }));
+        }
+        for (Future<byte[]> slice : slices) {
+            getSlice(slice);
+        }
+    }
+
+    private static byte[] getSlice(final Future<byte[]> slice) throws IOException {
+        try {
+            return slice.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a chunk");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // Fork/join tasks report checked exceptions wrapped into RuntimeExceptions
+            for (Throwable t = cause; t != null; t = t.getCause()) {
+                if (t instanceof IOException) {
+                    throw (IOException) t;
+                }
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    // Created on first use only, so the threads are not started unless parallel mode is used
+    private static final class ParallelPoolHolder {
+
+        private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    }
+
+    // ********************************************************************* //
+    //
+    // Direct encoding into and decoding from ByteBuffers and raw memory.
+    // There is no staging buffer, chunks are encoded straight into the target
+    // and their length header is patched afterwards. The layout is the same as
+    // the DataOutput based one, in the byte order of the ByteBuffer and in
+    // big-endian (DataOutput) order for raw memory.
+    //
+    // ********************************************************************* //
+
+    /**
+     * Encodes <code>str</code> at the position of <code>dst</code> and advances its position.
+     *
+     * @throws BufferOverflowException if the remaining space of <code>dst</code> is not enough
+     */
+    public void writeUTF0(final ByteBuffer dst, final String str) throws IOException {
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        final int position = dst.position();
+        final Object base = directBase(dst);
+        final long offset = directOffset(dst);
+        long end = writeUTF0(base, offset, offset + dst.remaining(),
+                dst.order() == ByteOrder.BIG_ENDIAN, str);
+        dst.position(position + (int) (end - offset));
+    }
+
+    /**
+     * Decodes a string from the position of <code>src</code> and advances its position.
+     *
+     * @throws BufferUnderflowException if <code>src</code> ends before the encoded string
+     */
+    public String readUTF0(final ByteBuffer src) throws IOException {
+        if (!src.hasArray() && !src.isDirect()) {
+            // Read-only heap buffers don't expose their array
+            ByteBuffer copy = ByteBuffer.allocate(src.remaining()).order(src.order());
+            copy.put(src.duplicate()).flip();
+            String str = readUTF0(copy);
+            src.position(src.position() + copy.position());
+            return str;
+        }
+        final int position = src.position();
+        final Object base = directBase(src);
+        final long offset = directOffset(src);
+        final long[] end = new long[1];
+        String str = readUTF0(base, offset, offset + src.remaining(),
+                src.order() == ByteOrder.BIG_ENDIAN, end);
+        src.position(position + (int) (end[0] - offset));
+        return str;
+    }
+
+    /**
+     * Encodes <code>str</code> into the memory starting at <code>address</code>.
+     *
+     * @return the number of bytes written
+     * @throws BufferOverflowException if <code>limit</code> bytes are not enough
+     */
+    public int writeUTF0(final long address, final int limit, final String str) throws IOException {
+        checkDirectAvailable();
+        return (int) (writeUTF0(null, address, address + limit, true, str) - address);
+    }
+
+    /**
+     * Decodes a string from the memory starting at <code>address</code>.
+     *
+     * @throws BufferUnderflowException if the encoded string is longer than <code>limit</code> bytes
+     */
+    public String readUTF0(final long address, final int limit) throws IOException {
+        checkDirectAvailable();
+        return readUTF0(null, address, address + limit, true, null);
+    }
+
+    private long writeUTF0(final Object base,
+                           final long offset,
+                           final long limit,
+                           final boolean bigEndian,
+                           final String str) throws IOException {
+        final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+        final boolean isNull = str == null;
+        final int length = isNull ? 0 : str.length();
+        long pos = offset;
+        if (limit - pos < (isNull ? 1 : 9)) {
+            throw new BufferOverflowException();
+        }
+        if (isNull) {
+            unsafe.putByte(base, pos++, NULL);
+            return pos;
+        }
+
+        final StringValueArrayProvider stringValueArrayProvider =
+                STRING_VALUE_ARRAY_PROVIDER_FACTORY != null
+                        ? STRING_VALUE_ARRAY_PROVIDER_FACTORY.create(str)
+                        : null;
+        final char[] value = stringValueArrayProvider != null ? stringValueArrayProvider.value() : null;
+        if (compactLatin1 && isLatin1(value, str)) {
+            return writeLatin1(base, pos, limit, bigEndian, value, str);
+        }
+        unsafe.putByte(base, pos++, NOT_NULL);
+        putInt(base, pos, length, bigEndian);
+        putInt(base, pos + 4, length, bigEndian);
+        pos += 8;
+
+        if (length > 0) {
+            int chunkSize = (length / STRING_CHUNK_SIZE) + 1;
+            for (int i = 0; i < chunkSize; i++) {
+                int beginIndex = Math.max(0, i * STRING_CHUNK_SIZE - 1);
+                int endIndex = Math.min((i + 1) * STRING_CHUNK_SIZE - 1, length);
+                pos = writeShortUTF(base, pos, limit, bigEndian, value, str, beginIndex, endIndex);
+            }
+        }
+        return pos;
+    }
+
+    //CHECKSTYLE:OFF
+    private long writeShortUTF(final Object base,
+                               final long offset,
+                               final long limit,
+                               final boolean bigEndian,
+                               final char[] value,
+                               final String str,
+                               final int beginIndex,
+                               final int endIndex) throws IOException {
+        final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+        final int headerLength = ASCII_AWARE ? 3 : 2;
+        final int charCount = endIndex - beginIndex;
+        long pos = offset + headerLength;
+        // At most, one character can hold 3 bytes.
+        // Only calculate the exact length if the worst case doesn't fit.
+        if (limit - pos < charCount * 3L) {
+            int utfLength = value != null
+                    ? calculateUtf8Length(value, beginIndex, endIndex)
+                    : calculateUtf8Length(str, beginIndex, endIndex);
+            if (limit - pos < utfLength) {
+                throw new BufferOverflowException();
+            }
+        }
+
+        int i = beginIndex;
+        int c;
+        if (value != null && bulkAscii) {
+            int copied = AsciiUtil.copyAsciiChars(value, beginIndex, base, pos, charCount);
+            i += copied;
+            pos += copied;
+        }
+        for (; i < endIndex; i++) {
+            c = value != null ? value[i] : str.charAt(i);
+            if (c <= 0) {
+                // X == 0 or 0x007F < X < 0x7FFF
+                unsafe.putByte(base, pos++, (byte) (0xC0 | ((c >> 6) & 0x1F)));
+                unsafe.putByte(base, pos++, (byte) (0x80 | ((c) & 0x3F)));
+            } else if (c > 0x007F) {
+                // 0x007F < X <= 0x7FFF
+                unsafe.putByte(base, pos++, (byte) (0xE0 | ((c >> 12) & 0x0F)));
+                unsafe.putByte(base, pos++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+                unsafe.putByte(base, pos++, (byte) (0x80 | ((c) & 0x3F)));
+            } else {
+                // 0x0001 <= X <= 0x007F
+                unsafe.putByte(base, pos++, (byte) c);
+            }
+        }
+
+        // A chunk has at most STRING_CHUNK_SIZE characters, so its length always fits into a short
+        int utfLength = (int) (pos - offset - headerLength);
+        putShort(base, offset, utfLength, bigEndian);
+        if (ASCII_AWARE) {
+            unsafe.putByte(base, offset + 2, (byte) (utfLength == charCount ? 1 : 0));
+        }
+        return pos;
+    }
+    //CHECKSTYLE:ON
+
+    private String readUTF0(final Object base,
+                            final long offset,
+                            final long limit,
+                            final boolean bigEndian,
+                            final long[] end) throws IOException {
+        final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+        long pos = offset;
+        checkReadable(pos, 1, limit);
+        byte header = unsafe.getByte(base, pos++);
+        if (header == LATIN1_CODER_V1) {
+            return readLatin1(base, pos, limit, bigEndian, end);
+        }
+        checkHeader(header);
+        boolean isNull = header == NULL;
+        if (isNull) {
+            if (end != null) {
+                end[0] = pos;
+            }
+            return null;
+        }
+        checkReadable(pos, 8, limit);
+        int length = getInt(base, pos, bigEndian);
+        int lengthCheck = getInt(base, pos + 4, bigEndian);
+        pos += 8;
+        if (length != lengthCheck) {
+            throw new UTFDataFormatException(
+                    "Length check failed, maybe broken bytestream or wrong stream position");
+        }
+        final char[] data = new char[length];
+        if (length > 0) {
+            int chunkSize = length / STRING_CHUNK_SIZE + 1;
+            for (int i = 0; i < chunkSize; i++) {
+                int beginIndex = Math.max(0, i * STRING_CHUNK_SIZE - 1);
+                pos = readShortUTF(base, pos, limit, bigEndian, data, beginIndex);
+            }
+        }
+        if (end != null) {
+            end[0] = pos;
+        }
+        return stringCreator.buildString(data);
+    }
+
+    //CHECKSTYLE:OFF
+    private long readShortUTF(final Object base,
+                              final long offset,
+                              final long limit,
+                              final boolean bigEndian,
+                              final char[] data,
+                              final int beginIndex) throws IOException {
+        final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+        long pos = offset;
+        checkReadable(pos, ASCII_AWARE ? 3 : 2, limit);
+        final int utfLength = getShort(base, pos, bigEndian) & 0xFFFF;
+        pos += 2;
+        final boolean allAscii = ASCII_AWARE ? unsafe.getByte(base, pos++) != 0 : false;
+        checkReadable(pos, utfLength, limit);
+        final long utfEnd = pos + utfLength;
+        int charArrCount = beginIndex;
+        int c1, c2, c3;
+
+        // Unsafe copies are not bounds checked, so a broken stream must not overrun "data"
+        final int maxCharCount = data.length - charArrCount;
+        if (allAscii) {
+            if (utfLength > maxCharCount) {
+                throw new UTFDataFormatException("malformed input: chunk longer than string");
+            }
+            AsciiUtil.widenBytes(base, pos, data, charArrCount, utfLength);
+            return utfEnd;
+        }
+        if (bulkAscii) {
+            int copied = AsciiUtil.copyAsciiBytes(base, pos, data, charArrCount, Math.min(utfLength, maxCharCount));
+            charArrCount += copied;
+            pos += copied;
+        }
+        while (pos < utfEnd) {
+            c1 = unsafe.getByte(base, pos) & 0xFF;
+            switch (c1 >> 4) {
+                case 0:
+                case 1:
+                case 2:
+                case 3:
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                    /* 0xxxxxxx */
+                    pos++;
+                    data[charArrCount++] = (char) c1;
+                    break;
+                case 12:
+                case 13:
+                    /* 110x xxxx 10xx xxxx */
+                    if (pos + 2 > utfEnd) {
+                        throw new UTFDataFormatException(
+                                "malformed input: partial character at end");
+                    }
+                    c2 = unsafe.getByte(base, pos + 1);
+                    if ((c2 & 0xC0) != 0x80) {
+                        throw new UTFDataFormatException(
+                                "malformed input around byte " + (pos - offset + 1));
+                    }
+                    data[charArrCount++] = (char) (((c1 & 0x1F) << 6) | (c2 & 0x3F));
+                    pos += 2;
+                    break;
+                case 14:
+                    /* 1110 xxxx 10xx xxxx 10xx xxxx */
+                    if (pos + 3 > utfEnd) {
+                        throw new UTFDataFormatException(
+                                "malformed input: partial character at end");
+                    }
+                    c2 = unsafe.getByte(base, pos + 1);
+                    c3 = unsafe.getByte(base, pos + 2);
+                    if (((c2 & 0xC0) != 0x80) || ((c3 & 0xC0) != 0x80)) {
+                        throw new UTFDataFormatException(
+                                "malformed input around byte " + (pos - offset + 1));
+                    }
+                    data[charArrCount++] = (char) (((c1 & 0x0F) << 12)
+                            | ((c2 & 0x3F) << 6) | ((c3 & 0x3F)));
+                    pos += 3;
+                    break;
+                default:
+                    /* 10xx xxxx, 1111 xxxx */
+                    throw new UTFDataFormatException(
+                            "malformed input around byte " + (pos - offset));
+            }
+        }
+        return utfEnd;
+    }
+    //CHECKSTYLE:ON
+
+    private static long writeLatin1(final Object base,
+                                    final long offset,
+                                    final long limit,
+                                    final boolean bigEndian,
+                                    final char[] value,
+                                    final String str) {
+        final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+        final int length = str.length();
+        if (limit - offset < 5L + length) {
+            throw new BufferOverflowException();
+        }
+        long pos = offset;
+        unsafe.putByte(base, pos++, LATIN1_CODER_V1);
+        putInt(base, pos, length, bigEndian);
+        pos += 4;
+        if (value != null) {
+            AsciiUtil.narrowChars(value, 0, base, pos, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                unsafe.putByte(base, pos + i, (byte) str.charAt(i));
+            }
+        }
+        return pos + length;
+    }
+
+    private String readLatin1(final Object base,
+                              final long offset,
+                              final long limit,
+                              final boolean bigEndian,
+                              final long[] end) throws IOException {
+        long pos = offset;
+        checkReadable(pos, 4, limit);
+        final int length = getInt(base, pos, bigEndian);
+        pos += 4;
+        checkLatin1Length(length);
+        checkReadable(pos, length, limit);
+        if (end != null) {
+            end[0] = pos + length;
+        }
+        if (latin1StringCreator != null || COMPACT_STRINGS) {
+            final byte[] bytes = new byte[length];
+            UnsafeHelper.UNSAFE.copyMemory(base, pos, bytes, UnsafeHelper.BYTE_ARRAY_BASE_OFFSET, length);
+            return latin1StringCreator != null
+                    ? latin1StringCreator.buildLatin1String(bytes)
+                    : newLatin1String(bytes);
+        }
+        final char[] data = new char[length];
+        AsciiUtil.widenBytes(base, pos, data, 0, length);
+        return stringCreator.buildString(data);
+    }
+
+    // Any other first byte is a coder tag of a newer version or a broken stream
+    private static void checkHeader(final byte header) throws UTFDataFormatException {
+        if (header != NOT_NULL && header != NULL) {
+            throw new UTFDataFormatException(
+                    "Unknown string header " + (header & 0xFF) + ", maybe broken bytestream or wrong stream position");
+        }
+    }
+
+    private static void checkLatin1Length(final int length) throws UTFDataFormatException {
+        if (length < 0) {
+            throw new UTFDataFormatException(
+                    "Negative Latin-1 length " + length + ", maybe broken bytestream or wrong stream position");
+        }
+    }
+
+    private static Object directBase(final ByteBuffer buffer) {
+        checkDirectAvailable();
+        return buffer.hasArray() ? buffer.array() : null;
+    }
+
+    private static long directOffset(final ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return UnsafeHelper.BYTE_ARRAY_BASE_OFFSET + buffer.arrayOffset() + buffer.position();
+        }
+        return UnsafeHelper.UNSAFE.getLong(buffer, BUFFER_ADDRESS_FIELD_OFFSET) + buffer.position();
+    }
+
+    private static void checkDirectAvailable() {
+        if (!AsciiUtil.AVAILABLE || BUFFER_ADDRESS_FIELD_OFFSET == -1) {
+            throw new UnsupportedOperationException(
+                    "Direct UTF encoding/decoding requires sun.misc.Unsafe");
+        }
+    }
+
+    private static void checkReadable(final long pos, final int length, final long limit) {
+        if (limit - pos < length) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    private static void putShort(final Object base, final long offset,
+                                 final int value, final boolean bigEndian) {
+        short v = (short) value;
+        UnsafeHelper.UNSAFE.putShort(base, offset, bigEndian == NATIVE_BIG_ENDIAN ? v : Short.reverseBytes(v));
+    }
+
+    private static short getShort(final Object base, final long offset, final boolean bigEndian) {
+        short v = UnsafeHelper.UNSAFE.getShort(base, offset);
+        return bigEndian == NATIVE_BIG_ENDIAN ? v : Short.reverseBytes(v);
+    }
+
+    private static void putInt(final Object base, final long offset,
+                               final int value, final boolean bigEndian) {
+        UnsafeHelper.UNSAFE.putInt(base, offset, bigEndian == NATIVE_BIG_ENDIAN ? value : Integer.reverseBytes(value));
+    }
+
+    private static int getInt(final Object base, final long offset, final boolean bigEndian) {
+        int v = UnsafeHelper.UNSAFE.getInt(base, offset);
+        return bigEndian == NATIVE_BIG_ENDIAN ? v : Integer.reverseBytes(v);
+    }
+
     // ********************************************************************* //
 
     private static int calculateUtf8Length(final char[] value,
@@ -783,7 +1807,8 @@ public final class OptimizedUTFEncoderDecoder {
                     Class.forName("com.hazelcast.nio.utf8.EnterpriseStringCreator");
             Method method = clazz.getDeclaredMethod("findBestStringCreator");
             return new OptimizedUTFEncoderDecoder(
-                    (StringCreator) method.invoke(clazz), true);
+                    (StringCreator) method.invoke(clazz), true, BULK_ASCII, SINGLE_PASS, COMPACT_LATIN1,
+                    null, PARALLEL_THRESHOLD, null, STORE_STRING_HASH);
         } catch (Throwable t) {
             Logger.
                     getLogger(OptimizedUTFEncoderDecoder.class).
@@ -795,10 +1820,19 @@ public final class OptimizedUTFEncoderDecoder {
         return new OptimizedUTFEncoderDecoder(
                 faststringEnabled
                         ? buildFastStringCreator()
-                        : new DefaultStringCreator(), false);
+                        : new DefaultStringCreator(), false, BULK_ASCII, SINGLE_PASS, COMPACT_LATIN1,
+                        null, PARALLEL_THRESHOLD, null, STORE_STRING_HASH);
     }
 
     private static StringCreator buildFastStringCreator() {
+        if (MethodHandleStringCreator.isAvailable()) {
+            return new MethodHandleStringCreator();
+        }
+        StringCreator stringCreator = buildReflectionStringCreator();
+        return stringCreator != null ? stringCreator : new DefaultStringCreator();
+    }
+
+    static StringCreator buildReflectionStringCreator() {
         try {
             // Give access to the package private String constructor
             Constructor<String> constructor = null;
@@ -816,12 +1850,12 @@ public final class OptimizedUTFEncoderDecoder {
         } catch (Throwable t) {
             Logger.
                     getLogger(OptimizedUTFEncoderDecoder.class).
-                    finest("No fast string creator seems to available, falling back to reflection", t);
+                    finest("No fast string creator seems to available, falling back to copying", t);
         }
         return null;
     }
 
-    private static class DefaultStringCreator implements OptimizedUTFEncoderDecoder.StringCreator {
+    static class DefaultStringCreator implements OptimizedUTFEncoderDecoder.StringCreator {
 
         @Override
         public String buildString(final char[] chars) {
@@ -861,4 +1895,103 @@ public final class OptimizedUTFEncoderDecoder {
 
     }
 
+    /**
+     * {@link StringCreator} that can also build strings from Latin-1 bytes,
+     * ideally without copying them (compact strings).
+     */
+    public interface Latin1StringCreator extends StringCreator {
+
+        String buildLatin1String(final byte[] bytes);
+
+        /**
+         * @return whether {@link #buildLatin1String(byte[])} takes the bytes over as they are.
+         * If not, decoders don't go through it, widening the bytes would be slower than decoding.
+         */
+        boolean supportsLatin1();
+
+    }
+
+    /**
+     * Builds {@link OptimizedUTFEncoderDecoder} instances whose settings differ from the
+     * system property driven defaults, e.g. to compare both variants in one benchmark run.
+     */
+    public static final class Builder {
+
+        private StringCreator stringCreator = INSTANCE.stringCreator;
+        private boolean hazelcastEnterpriseActive = INSTANCE.hazelcastEnterpriseActive;
+        private boolean bulkAscii = BULK_ASCII;
+        private boolean singlePass = SINGLE_PASS;
+        private boolean compactLatin1 = COMPACT_LATIN1;
+        private StringCache stringCache;
+        private int parallelThreshold = PARALLEL_THRESHOLD;
+        private ForkJoinPool forkJoinPool;
+        private boolean storeStringHash = STORE_STRING_HASH;
+
+        private Builder() {
+        }
+
+        public Builder setStringCreator(StringCreator stringCreator) {
+            this.stringCreator = stringCreator;
+            return this;
+        }
+
+        public Builder setBulkAscii(boolean bulkAscii) {
+            this.bulkAscii = bulkAscii;
+            return this;
+        }
+
+        public Builder setSinglePass(boolean singlePass) {
+            this.singlePass = singlePass;
+            return this;
+        }
+
+        public Builder setCompactLatin1(boolean compactLatin1) {
+            this.compactLatin1 = compactLatin1;
+            return this;
+        }
+
+        /**
+         * Sets the cache that decoded strings are looked up in and added to, <code>null</code> disables caching.
+         */
+        public Builder setStringCache(StringCache stringCache) {
+            this.stringCache = stringCache;
+            return this;
+        }
+
+        /**
+         * Sets the number of chars from which on the chunks of a string are encoded and decoded
+         * in parallel, <code>0</code> disables it. Only strings with more than one chunk qualify.
+         */
+        public Builder setParallelThreshold(int parallelThreshold) {
+            this.parallelThreshold = parallelThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the pool that chunks are encoded and decoded on in parallel mode,
+         * by default a shared pool with a thread per core is used.
+         */
+        public Builder setForkJoinPool(ForkJoinPool forkJoinPool) {
+            this.forkJoinPool = forkJoinPool;
+            return this;
+        }
+
+        /**
+         * Sets whether the hash computed while decoding is stored into the decoded strings,
+         * so their first {@link String#hashCode()} call doesn't scan them again.
+         * Needs Unsafe, ignored otherwise.
+         */
+        public Builder setStoreStringHash(boolean storeStringHash) {
+            this.storeStringHash = storeStringHash;
+            return this;
+        }
+
+        public OptimizedUTFEncoderDecoder build() {
+            return new OptimizedUTFEncoderDecoder(stringCreator, hazelcastEnterpriseActive,
+                    bulkAscii, singlePass, compactLatin1, stringCache, parallelThreshold, forkJoinPool,
+                    storeStringHash);
+        }
+
+    }
+
 }
@@ -0,0 +1,179 @@
+package com.hazelcast.nio.utf;
+
+import com.hazelcast.nio.UnsafeHelper;
+import com.hazelcast.util.QuickMath;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free cache of decoded strings keyed on their encoded bytes.
+ *
+ * Every slot holds an immutable entry, so readers and writers race without locking.
+ * A new entry simply replaces whatever was in its slot (direct-mapped), there is
+ * no chaining and no resizing. Final fields make an entry safe to read through a
+ * racy slot read.
+ *
+ * Hits and misses are only counted if statistics are enabled. The counters are striped by
+ * thread, so that counting doesn't make readers of different threads write the same cache line.
+ */
+public final class StringCache {
+
+    private static final int HASH_SEED = 0x9E3779B9;
+    private static final long HASH_MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+    private static final int COUNTER_STRIPES = 16;
+    // Longs between two counters, a cache line of 64 bytes
+    private static final int COUNTER_PADDING = 8;
+
+    private final Entry[] table;
+    private final int mask;
+    private final int maxEncodedLength;
+    private final boolean statisticsEnabled;
+    private final AtomicLongArray hits = new AtomicLongArray(COUNTER_STRIPES * COUNTER_PADDING);
+    private final AtomicLongArray misses = new AtomicLongArray(COUNTER_STRIPES * COUNTER_PADDING);
+
+    /**
+     * Cache without statistics.
+     *
+     * @param capacity         number of slots, has to be power of two
+     * @param maxEncodedLength strings encoded into more bytes than this are not cached
+     */
+    public StringCache(int capacity, int maxEncodedLength) {
+        this(capacity, maxEncodedLength, false);
+    }
+
+    public StringCache(int capacity, int maxEncodedLength, boolean statisticsEnabled) {
+        if (!QuickMath.isPowerOfTwo(capacity)) {
+            throw new IllegalArgumentException(
+                    "Capacity of the cache has to be power of two, was " + capacity);
+        }
+        this.table = new Entry[capacity];
+        this.mask = capacity - 1;
+        this.maxEncodedLength = maxEncodedLength;
+        this.statisticsEnabled = statisticsEnabled;
+    }
+
+    public int getMaxEncodedLength() {
+        return maxEncodedLength;
+    }
+
+    public boolean isStatisticsEnabled() {
+        return statisticsEnabled;
+    }
+
+    public long getHits() {
+        return sum(hits);
+    }
+
+    public long getMisses() {
+        return sum(misses);
+    }
+
+    public double getHitRatio() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0D : (double) h / total;
+    }
+
+    public void resetStatistics() {
+        for (int i = 0; i < COUNTER_STRIPES * COUNTER_PADDING; i += COUNTER_PADDING) {
+            hits.set(i, 0);
+            misses.set(i, 0);
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = null;
+        }
+    }
+
+    static int hash(final byte[] bytes, final int offset, final int length) {
+        long h = HASH_SEED ^ length;
+        int i = 0;
+        if (AsciiUtil.AVAILABLE) {
+            final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+            final long base = UnsafeHelper.BYTE_ARRAY_BASE_OFFSET + offset;
+            for (; i <= length - 8; i += 8) {
+                h = (h ^ unsafe.getLong(bytes, base + i)) * HASH_MULTIPLIER;
+                h ^= h >>> 29;
+            }
+        }
+        for (; i < length; i++) {
+            h = (h ^ bytes[offset + i]) * HASH_MULTIPLIER;
+        }
+        h ^= h >>> 32;
+        return (int) h;
+    }
+
+    /**
+     * @return the cached string for the given encoded bytes, or <code>null</code> on a miss
+     */
+    String get(final byte[] bytes, final int offset, final int length, final int hash) {
+        Entry entry = table[hash & mask];
+        if (entry != null && entry.hash == hash && entry.matches(bytes, offset, length)) {
+            if (statisticsEnabled) {
+                hits.incrementAndGet(counterIndex());
+            }
+            return entry.value;
+        }
+        if (statisticsEnabled) {
+            misses.incrementAndGet(counterIndex());
+        }
+        return null;
+    }
+
+    void put(final byte[] bytes, final int offset, final int length, final int hash, final String value) {
+        byte[] encoded = new byte[length];
+        System.arraycopy(bytes, offset, encoded, 0, length);
+        table[hash & mask] = new Entry(hash, encoded, value);
+    }
+
+    private static int counterIndex() {
+        return ((int) Thread.currentThread().getId() & (COUNTER_STRIPES - 1)) * COUNTER_PADDING;
+    }
+
+    private static long sum(AtomicLongArray counters) {
+        long sum = 0;
+        for (int i = 0; i < COUNTER_STRIPES * COUNTER_PADDING; i += COUNTER_PADDING) {
+            sum += counters.get(i);
+        }
+        return sum;
+    }
+
+    private static final class Entry {
+
+        private final int hash;
+        private final byte[] encoded;
+        private final String value;
+
+        Entry(int hash, byte[] encoded, String value) {
+            this.hash = hash;
+            this.encoded = encoded;
+            this.value = value;
+        }
+
+        boolean matches(final byte[] bytes, final int offset, final int length) {
+            if (encoded.length != length) {
+                return false;
+            }
+            int i = 0;
+            if (AsciiUtil.AVAILABLE) {
+                final sun.misc.Unsafe unsafe = UnsafeHelper.UNSAFE;
+                final long base = UnsafeHelper.BYTE_ARRAY_BASE_OFFSET;
+                for (; i <= length - 8; i += 8) {
+                    if (unsafe.getLong(encoded, base + i) != unsafe.getLong(bytes, base + offset + i)) {
+                        return false;
+                    }
+                }
+            }
+            for (; i < length; i++) {
+                if (encoded[i] != bytes[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.hazelcast.nio.utf;
+
+import com.hazelcast.nio.BufferObjectDataInput;
+import com.hazelcast.nio.BufferObjectDataOutput;
+import com.hazelcast.nio.serialization.SerializationService;
+import com.hazelcast.nio.serialization.SerializationServiceBuilder;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link OptimizedUTFEncoderDecoder.StringCreator} implementations,
+ * on their own and when decoding through {@link OptimizedUTFEncoderDecoder}.
+ *
+ * A creator that is not accessible on the running JVM is replaced by the copying one,
+ * see the setup output. On Java 16+ run with
+ * <code>--add-opens java.base/java.lang=ALL-UNNAMED</code> to measure all of them.
+ */
+@State(Scope.Benchmark)
+public class StringCreatorBenchmark {
+
+    public static final int BUFFER_SIZE = 4 * 1024;
+
+    private OptimizedUTFEncoderDecoder.StringCreator defaultStringCreator;
+    private OptimizedUTFEncoderDecoder.StringCreator reflectionStringCreator;
+    private OptimizedUTFEncoderDecoder.StringCreator methodHandleStringCreator;
+
+    private OptimizedUTFEncoderDecoder defaultEncoderDecoder;
+    private OptimizedUTFEncoderDecoder reflectionEncoderDecoder;
+    private OptimizedUTFEncoderDecoder methodHandleEncoderDecoder;
+
+    private SerializationService ss;
+    private char[] chars;
+    private byte[] encoded;
+    private byte[] buffer;
+
+    @Param(value = { "8", "64", "512", "4096" })
+    private String size;
+
+    @Setup
+    public void setUp() throws IOException {
+        defaultStringCreator = new OptimizedUTFEncoderDecoder.DefaultStringCreator();
+        reflectionStringCreator = OptimizedUTFEncoderDecoder.buildReflectionStringCreator();
+        if (reflectionStringCreator == null) {
+            System.out.println("\nReflection based string creator is not available, using the default one");
+            reflectionStringCreator = defaultStringCreator;
+        }
+        if (MethodHandleStringCreator.isAvailable()) {
+            methodHandleStringCreator = new MethodHandleStringCreator();
+        } else {
+            System.out.println("\nMethod handle based string creator is not available, using the default one");
+            methodHandleStringCreator = defaultStringCreator;
+        }
+
+        defaultEncoderDecoder = newEncoderDecoder(defaultStringCreator);
+        reflectionEncoderDecoder = newEncoderDecoder(reflectionStringCreator);
+        methodHandleEncoderDecoder = newEncoderDecoder(methodHandleStringCreator);
+
+        ss = new SerializationServiceBuilder().setInitialOutputBufferSize(BUFFER_SIZE).build();
+        String str = RandomStringUtils.randomAlphanumeric(Integer.parseInt(size));
+        chars = str.toCharArray();
+        buffer = new byte[1024];
+        BufferObjectDataOutput out = ss.createObjectDataOutput(BUFFER_SIZE);
+        OptimizedUTFEncoderDecoder.writeUTF(out, str, buffer);
+        encoded = out.toByteArray();
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String build_Default() {
+        return defaultStringCreator.buildString(chars);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String build_Reflection() {
+        return reflectionStringCreator.buildString(chars);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String build_MethodHandle() {
+        return methodHandleStringCreator.buildString(chars);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String read_Default() throws IOException {
+        BufferObjectDataInput in = ss.createObjectDataInput(encoded);
+        return defaultEncoderDecoder.readUTF0(in, buffer);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String read_Reflection() throws IOException {
+        BufferObjectDataInput in = ss.createObjectDataInput(encoded);
+        return reflectionEncoderDecoder.readUTF0(in, buffer);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String read_MethodHandle() throws IOException {
+        BufferObjectDataInput in = ss.createObjectDataInput(encoded);
+        return methodHandleEncoderDecoder.readUTF0(in, buffer);
+    }
+
+    private static OptimizedUTFEncoderDecoder newEncoderDecoder(OptimizedUTFEncoderDecoder.StringCreator creator) {
+        return OptimizedUTFEncoderDecoder.newBuilder().setStringCreator(creator).build();
+    }
+
+}
@@ -1,10 +1,13 @@
 package com.hazelcast.nio.utf;
 
+import com.hazelcast.nio.BufferObjectDataOutput;
+
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.UTFDataFormatException;
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
 
 public final class UTFUtil {
 
@@ -12,12 +15,25 @@ public final class UTFUtil {
 
     private static final StringCreator STRING_CREATOR;
 
+    private static final boolean SINGLE_PASS =
+            Boolean.parseBoolean(System.getProperty("hazelcast.nio.singlepass", "true"));
+
     static {
         boolean faststringEnabled = Boolean.parseBoolean(System.getProperty("hazelcast.nio.faststring", "true"));
         STRING_CREATOR = faststringEnabled ? buildFastStringCreator() : new DefaultStringCreator();
     }
 
     public static void writeUTF(final DataOutput out, final String str) throws IOException {
+        writeUTF(out, str, SINGLE_PASS);
+    }
+
+    /**
+     * @param singlePass if <code>true</code> and <code>out</code> is a {@link BufferObjectDataOutput},
+     *                   each chunk is encoded in a single pass and its length is patched afterwards.
+     *                   Otherwise the length is calculated by an extra pass before encoding.
+     */
+    public static void writeUTF(final DataOutput out, final String str, final boolean singlePass)
+            throws IOException {
         boolean isNull = str == null;
         out.writeBoolean(isNull);
         if (isNull) return;
@@ -28,8 +44,49 @@ public final class UTFUtil {
         for (int i = 0; i < chunkSize; i++) {
             int beginIndex = Math.max(0, i * STRING_CHUNK_SIZE - 1);
             int endIndex = Math.min((i + 1) * STRING_CHUNK_SIZE - 1, length);
-            writeShortUTF(out, str, beginIndex, endIndex);
+            if (singlePass && out instanceof BufferObjectDataOutput) {
+                writeShortUTF((BufferObjectDataOutput) out, str, beginIndex, endIndex);
+            } else {
+                writeShortUTF(out, str, beginIndex, endIndex);
+            }
+        }
+    }
+
+    private static void writeShortUTF(final BufferObjectDataOutput out, final String str,
+                                      final int beginIndex, final int endIndex) throws IOException {
+        int c, count = 0;
+        // Reserve the length, it is written to this position once known
+        final int pos = out.position();
+        out.writeShort(0);
+        // Sized for ASCII, only grown to the worst case (3 bytes per char) if a non-ASCII char shows up
+        byte[] byteArray = new byte[endIndex - beginIndex];
+        int i;
+        for (i = beginIndex; i < endIndex; i++) {
+            c = str.charAt(i);
+            if (!((c >= 0x0001) && (c <= 0x007F))) break;
+            byteArray[count++] = (byte) c;
         }
+        if (i < endIndex) {
+            byteArray = Arrays.copyOf(byteArray, count + (endIndex - i) * 3);
+        }
+        for (; i < endIndex; i++) {
+            c = str.charAt(i);
+            if ((c >= 0x0001) && (c <= 0x007F)) {
+                byteArray[count++] = (byte) c;
+            } else if (c > 0x07FF) {
+                byteArray[count++] = (byte) (0xE0 | ((c >> 12) & 0x0F));
+                byteArray[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                byteArray[count++] = (byte) (0x80 | ((c) & 0x3F));
+            } else {
+                byteArray[count++] = (byte) (0xC0 | ((c >> 6) & 0x1F));
+                byteArray[count++] = (byte) (0x80 | ((c) & 0x3F));
+            }
+        }
+        if (count > 65535) {
+            throw new UTFDataFormatException("encoded string too long:" + count + " bytes");
+        }
+        out.write(byteArray, 0, count);
+        out.writeShort(pos, count);
     }
 
     private static void writeShortUTF(final DataOutput out, final String str, final int beginIndex, final int endIndex)
@@ -90,7 +147,7 @@ public final class UTFUtil {
 
     private static void readShortUTF(final DataInput in, final char[] data, final int beginIndex, final int endIndex)
             throws IOException {
-        final int utflen = in.readShort();
+        final int utflen = in.readShort() & 0xFFFF;
         byte[] bytearr = new byte[utflen];
         int c, char2, char3;
         int count = 0;
@@ -159,6 +216,9 @@ public final class UTFUtil {
     }
 
     private static StringCreator buildFastStringCreator() {
+        if (MethodHandleStringCreator.isAvailable()) {
+            return new MethodHandleStringCreator();
+        }
         try {
             // Give access to the package private String constructor
             Constructor<String> constructor = null;
@@ -173,7 +233,7 @@ public final class UTFUtil {
             }
         } catch (Throwable ignore) {
         }
-        return null;
+        return new DefaultStringCreator();
     }
 
     private static class DefaultStringCreator implements StringCreator {
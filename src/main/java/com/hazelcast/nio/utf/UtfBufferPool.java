@@ -0,0 +1,79 @@
+package com.hazelcast.nio.utf;
+
+import com.hazelcast.util.QuickMath;
+
+/**
+ * Per-thread pool of the power-of-two staging buffers used by {@link OptimizedUTFEncoderDecoder}.
+ *
+ * Every thread keeps at most one buffer per size class, from {@link #MIN_BUFFER_SIZE} up to
+ * {@link #MAX_BUFFER_SIZE}. A buffer is taken out of its slot while in use, so a nested
+ * acquire on the same thread gets a fresh buffer instead of sharing one, and put back on
+ * release. Larger requests are capped at {@link #MAX_BUFFER_SIZE}, which is enough to
+ * encode or decode a whole chunk in one go.
+ */
+public final class UtfBufferPool {
+
+    public static final int MIN_BUFFER_SIZE = 64;
+    // Chunks are at most 16K chars, so at most 48K bytes
+    public static final int MAX_BUFFER_SIZE = 64 * 1024;
+    // Size of the buffers used for decoding, the length of a string is not known before reading it
+    public static final int READ_BUFFER_SIZE = 4 * 1024;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    private static final int SIZE_CLASSES = Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE) - MIN_SHIFT + 1;
+
+    private static final ThreadLocal<byte[][]> BUFFERS = new ThreadLocal<byte[][]>() {
+        @Override
+        protected byte[][] initialValue() {
+            return new byte[SIZE_CLASSES][];
+        }
+    };
+
+    private UtfBufferPool() {
+    }
+
+    /**
+     * Takes a buffer of at least <code>minSize</code> bytes (at most {@link #MAX_BUFFER_SIZE})
+     * from the pool of the current thread, or allocates one if it has none of that size.
+     * The buffer has to be given back with {@link #release(byte[])} by the same thread.
+     */
+    public static byte[] acquire(int minSize) {
+        final int sizeClass = sizeClass(minSize);
+        final byte[][] buffers = BUFFERS.get();
+        final byte[] buffer = buffers[sizeClass];
+        if (buffer != null) {
+            buffers[sizeClass] = null;
+            return buffer;
+        }
+        return new byte[1 << (sizeClass + MIN_SHIFT)];
+    }
+
+    /**
+     * Gives back a buffer to the pool of the current thread. Buffers that were not
+     * taken from the pool are pooled too if they fit into a size class.
+     */
+    public static void release(byte[] buffer) {
+        final int size = buffer.length;
+        if (size < MIN_BUFFER_SIZE || size > MAX_BUFFER_SIZE || !QuickMath.isPowerOfTwo(size)) {
+            return;
+        }
+        BUFFERS.get()[Integer.numberOfTrailingZeros(size) - MIN_SHIFT] = buffer;
+    }
+
+    // Size of the buffer that holds the encoded form of the first chunk of
+    // a string with the given length, so it is encoded in a single pass
+    static int writeBufferSize(int length) {
+        return Math.min(length, OptimizedUTFEncoderDecoder.STRING_CHUNK_SIZE) * 3;
+    }
+
+    static int sizeClass(int minSize) {
+        if (minSize <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        if (minSize >= MAX_BUFFER_SIZE) {
+            return SIZE_CLASSES - 1;
+        }
+        return 32 - Integer.numberOfLeadingZeros(minSize - 1) - MIN_SHIFT;
+    }
+
+}
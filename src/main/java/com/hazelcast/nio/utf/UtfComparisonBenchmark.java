@@ -0,0 +1,182 @@
+package com.hazelcast.nio.utf;
+
+import com.hazelcast.Util;
+import com.hazelcast.nio.BufferObjectDataOutput;
+import com.hazelcast.nio.serialization.SerializationService;
+import com.hazelcast.nio.serialization.SerializationServiceBuilder;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares equality, order and prefix checks on encoded strings through {@link EncodedUTFUtil}
+ * with decoding the strings first and comparing them as usual.
+ *
+ * Half of the pairs are equal, the other half only differ in their last char.
+ */
+@State(Scope.Benchmark)
+@OperationsPerInvocation(UtfComparisonBenchmark.OPS_PER_INV)
+public class UtfComparisonBenchmark {
+
+    public static final int OPS_PER_INV = 100;
+    public static final int BUFFER_SIZE = 4 * 1024;
+    public static final int SAMPLES = 1000;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random rand = new Random();
+        final SerializationService ss = createSerializationService();
+        final byte[] buffer = new byte[1024];
+        long total;
+    }
+
+    private String[] strings = new String[SAMPLES];
+    private String[] others = new String[SAMPLES];
+    private String[] prefixes = new String[SAMPLES];
+    private byte[][] samples = new byte[SAMPLES][];
+    private byte[][] other_samples = new byte[SAMPLES][];
+
+    @Param(value = { "16", "128", "1024", "8192" })
+    private String size;
+
+    @Param(value = { "ALPHANUMERIC", "FULL_RANGE" })
+    private String content;
+
+    @Setup
+    public void setUp() throws IOException {
+        SerializationService ss = createSerializationService();
+        BufferObjectDataOutput out = ss.createObjectDataOutput(BUFFER_SIZE);
+        Random rand = new Random();
+        int length = Integer.parseInt(size);
+        for (int i = 0; i < SAMPLES; i++) {
+            String str = "FULL_RANGE".equals(content)
+                    ? Util.randomString(length)
+                    : RandomStringUtils.randomAlphanumeric(length);
+            strings[i] = str;
+            // A copy, so equal strings are not the same instance
+            others[i] = rand.nextBoolean()
+                    ? new String(str.toCharArray())
+                    : str.substring(0, length - 1) + (char) (str.charAt(length - 1) + 1);
+            prefixes[i] = str.substring(0, length / 2);
+
+            OptimizedUTFEncoderDecoder.writeUTF(out, strings[i], new byte[1024]);
+            samples[i] = out.toByteArray();
+
+            out.clear();
+
+            OptimizedUTFEncoderDecoder.writeUTF(out, others[i], new byte[1024]);
+            other_samples[i] = out.toByteArray();
+
+            out.clear();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void equals_Decoded(ThreadState state) throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            String s1 = decode(state, samples[ix]);
+            String s2 = decode(state, other_samples[ix]);
+            state.total += s1.equals(s2) ? 1 : 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void equals_Encoded(ThreadState state) {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            state.total += EncodedUTFUtil.equals(samples[ix], 0, other_samples[ix], 0) ? 1 : 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void equalsString_Decoded(ThreadState state) throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            String s = decode(state, samples[ix]);
+            state.total += s.equals(others[ix]) ? 1 : 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void equalsString_Encoded(ThreadState state) {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            state.total += EncodedUTFUtil.equals(samples[ix], 0, others[ix]) ? 1 : 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void compareTo_Decoded(ThreadState state) throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            String s1 = decode(state, samples[ix]);
+            String s2 = decode(state, other_samples[ix]);
+            state.total += s1.compareTo(s2);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void compareTo_Encoded(ThreadState state) {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            state.total += EncodedUTFUtil.compareTo(samples[ix], 0, other_samples[ix], 0);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void startsWith_Decoded(ThreadState state) throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            String s = decode(state, samples[ix]);
+            state.total += s.startsWith(prefixes[ix]) ? 1 : 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void startsWith_Encoded(ThreadState state) {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            state.total += EncodedUTFUtil.startsWith(samples[ix], 0, prefixes[ix]) ? 1 : 0;
+        }
+    }
+
+    private static String decode(ThreadState state, byte[] bytes) throws IOException {
+        return OptimizedUTFEncoderDecoder.readUTF(state.ss.createObjectDataInput(bytes), state.buffer);
+    }
+
+    private static SerializationService createSerializationService() {
+        return
+            new SerializationServiceBuilder().
+                    setInitialOutputBufferSize(BUFFER_SIZE).build();
+    }
+
+}
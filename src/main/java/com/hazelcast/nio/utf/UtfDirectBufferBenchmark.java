@@ -0,0 +1,188 @@
+package com.hazelcast.nio.utf;
+
+import com.hazelcast.nio.BufferObjectDataInput;
+import com.hazelcast.nio.BufferObjectDataOutput;
+import com.hazelcast.nio.UnsafeHelper;
+import com.hazelcast.nio.serialization.SerializationService;
+import com.hazelcast.nio.serialization.SerializationServiceBuilder;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding/decoding through a {@link BufferObjectDataOutput} staging copy
+ * with encoding/decoding straight into/from a {@link ByteBuffer} or raw memory.
+ */
+@State(Scope.Benchmark)
+@OperationsPerInvocation(UtfDirectBufferBenchmark.OPS_PER_INV)
+public class UtfDirectBufferBenchmark {
+
+    public static final int OPS_PER_INV = 100;
+    public static final int BUFFER_SIZE = 4 * 1024;
+    public static final int SAMPLES = 1000;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random rand = new Random();
+        final SerializationService ss = createSerializationService();
+        ByteBuffer heapBuffer;
+        ByteBuffer directBuffer;
+        long address;
+        int addressLimit;
+        long total;
+
+        @Setup
+        public void setUp(UtfDirectBufferBenchmark benchmark) {
+            // At most, one character can hold 3 bytes, plus the headers
+            int capacity = Integer.parseInt(benchmark.size) * 3 + 1024;
+            heapBuffer = ByteBuffer.allocate(capacity);
+            directBuffer = ByteBuffer.allocateDirect(capacity);
+            addressLimit = capacity;
+            address = UnsafeHelper.UNSAFE.allocateMemory(capacity);
+        }
+
+        @TearDown
+        public void tearDown() {
+            UnsafeHelper.UNSAFE.freeMemory(address);
+        }
+    }
+
+    private String[] strings = new String[SAMPLES];
+    private byte[][] samples = new byte[SAMPLES][];
+    private ByteBuffer[] directSamples = new ByteBuffer[SAMPLES];
+
+    @Param(value = {    "8", "16", "32", "64", "128", "256",
+                        "512", "1024", "2048", "4096", "8192" })
+    private String size;
+
+    @Setup
+    public void setUp() throws IOException {
+        SerializationService ss = createSerializationService();
+        BufferObjectDataOutput out = ss.createObjectDataOutput(BUFFER_SIZE);
+        for (int i = 0; i < SAMPLES; i++) {
+            String str =
+                    RandomStringUtils.randomAlphanumeric(Integer.parseInt(size));
+            strings[i] = str;
+
+            OptimizedUTFEncoderDecoder.writeUTF(out, str, new byte[1024]);
+            samples[i] = out.toByteArray();
+            directSamples[i] = ByteBuffer.allocateDirect(samples[i].length);
+            directSamples[i].put(samples[i]).flip();
+
+            out.clear();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_StagedToDirectBuffer(ThreadState state) throws IOException {
+        BufferObjectDataOutput out =
+                state.ss.createObjectDataOutput(BUFFER_SIZE);
+        byte[] buffer = new byte[Integer.parseInt(size) * 4];
+        ByteBuffer dst = state.directBuffer;
+
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            OptimizedUTFEncoderDecoder.writeUTF(out, strings[ix], buffer);
+            dst.clear();
+            dst.put(out.getBuffer(), 0, out.position());
+            out.clear();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_DirectBuffer(ThreadState state) throws IOException {
+        ByteBuffer dst = state.directBuffer;
+
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            dst.clear();
+            OptimizedUTFEncoderDecoder.writeUTF(dst, strings[ix]);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_HeapBuffer(ThreadState state) throws IOException {
+        ByteBuffer dst = state.heapBuffer;
+
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            dst.clear();
+            OptimizedUTFEncoderDecoder.writeUTF(dst, strings[ix]);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_Address(ThreadState state) throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            state.total += OptimizedUTFEncoderDecoder.writeUTF(state.address, state.addressLimit, strings[ix]);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_StagedFromDirectBuffer(ThreadState state) throws IOException {
+        byte[] buffer = new byte[Integer.parseInt(size) * 4];
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            ByteBuffer src = directSamples[ix].duplicate();
+            byte[] bytes = new byte[src.remaining()];
+            src.get(bytes);
+            BufferObjectDataInput in = state.ss.createObjectDataInput(bytes);
+            String s = OptimizedUTFEncoderDecoder.readUTF(in, buffer);
+            state.total += s.length();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_DirectBuffer(ThreadState state) throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            String s = OptimizedUTFEncoderDecoder.readUTF(directSamples[ix].duplicate());
+            state.total += s.length();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_HeapBuffer(ThreadState state) throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(SAMPLES);
+            String s = OptimizedUTFEncoderDecoder.readUTF(ByteBuffer.wrap(samples[ix]));
+            state.total += s.length();
+        }
+    }
+
+    private static SerializationService createSerializationService() {
+        return
+            new SerializationServiceBuilder().
+                    setInitialOutputBufferSize(BUFFER_SIZE).build();
+    }
+
+}
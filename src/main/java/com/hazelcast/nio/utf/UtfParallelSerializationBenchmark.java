@@ -0,0 +1,157 @@
+package com.hazelcast.nio.utf;
+
+import com.hazelcast.Util;
+import com.hazelcast.nio.BufferObjectDataInput;
+import com.hazelcast.nio.BufferObjectDataOutput;
+import com.hazelcast.nio.serialization.SerializationService;
+import com.hazelcast.nio.serialization.SerializationServiceBuilder;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes the chunks of large strings in parallel on a <code>ForkJoinPool</code>.
+ * Only sizes with more than one chunk, smaller strings are encoded serially anyway. The serial
+ * baseline are the OptimizedUTFEncodeDecoder rows of {@link UtfSerializationBenchmark} of the
+ * same size.
+ */
+@State(Scope.Benchmark)
+@OperationsPerInvocation(UtfParallelSerializationBenchmark.OPS_PER_INV)
+public class UtfParallelSerializationBenchmark {
+
+    public static final int OPS_PER_INV = 100;
+    public static final int BUFFER_SIZE = 4 * 1024;
+    public static final int SAMPLES = 1000;
+    // Caps the samples of large sizes, so the corpora of multi-megabyte strings fit into the heap
+    public static final int MAX_SAMPLE_CHARS = 16 * 1024 * 1024;
+    // Strings from this size on have more than one chunk
+    public static final int PARALLEL_THRESHOLD = 16 * 1024;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random rand = new Random();
+        final SerializationService ss = createSerializationService();
+        long total;
+
+        // Staging buffer, allocated once so the rows don't measure its allocation
+        byte[] buffer;
+
+        @Setup
+        public void allocateBuffer(UtfParallelSerializationBenchmark benchmark) {
+            buffer = new byte[Integer.parseInt(benchmark.size) * 4];
+        }
+    }
+
+    private String[] strings = new String[SAMPLES];
+    private byte[][] samples = new byte[SAMPLES][];
+    // Util.randomString corpus, chars from the full range instead of alphanumerics
+    private byte[][] full_range_samples = new byte[SAMPLES][];
+
+    private OptimizedUTFEncoderDecoder parallelEncoderDecoder;
+    private ForkJoinPool forkJoinPool;
+    private int sampleCount;
+
+    @Param(value = { "16384", "65536", "262144", "1048576", "4194304" })
+    private String size;
+
+    // Threads of the pool, 0 is a thread per core
+    @Param(value = { "0", "1", "2", "4" })
+    private String parallelism;
+
+    @Setup
+    public void setUp() throws IOException {
+        int threads = Integer.parseInt(parallelism);
+        forkJoinPool = threads > 0 ? new ForkJoinPool(threads) : new ForkJoinPool();
+        parallelEncoderDecoder =
+                OptimizedUTFEncoderDecoder.newBuilder().
+                        setParallelThreshold(PARALLEL_THRESHOLD).
+                        setForkJoinPool(forkJoinPool).build();
+        sampleCount = Math.max(1, Math.min(SAMPLES, MAX_SAMPLE_CHARS / Integer.parseInt(size)));
+
+        SerializationService ss = createSerializationService();
+        BufferObjectDataOutput out = ss.createObjectDataOutput(BUFFER_SIZE);
+        for (int i = 0; i < sampleCount; i++) {
+            String str = RandomStringUtils.randomAlphanumeric(Integer.parseInt(size));
+            strings[i] = str;
+
+            OptimizedUTFEncoderDecoder.writeUTF(out, str, new byte[1024]);
+            samples[i] = out.toByteArray();
+
+            out.clear();
+
+            OptimizedUTFEncoderDecoder.writeUTF(out, Util.randomString(Integer.parseInt(size)), new byte[1024]);
+            full_range_samples[i] = out.toByteArray();
+
+            out.clear();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        forkJoinPool.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_OptimizedUTFEncodeDecoderParallel(ThreadState state)
+            throws IOException {
+        BufferObjectDataOutput out =
+                state.ss.createObjectDataOutput(BUFFER_SIZE);
+
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            parallelEncoderDecoder.writeUTF0(out, strings[ix], state.buffer);
+            out.clear();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_OptimizedUTFEncodeDecoderParallel(ThreadState state)
+            throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            BufferObjectDataInput in =
+                    state.ss.createObjectDataInput(samples[ix]);
+            String s = parallelEncoderDecoder.readUTF0(in, state.buffer);
+            state.total += s.length();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_OptimizedUTFEncodeDecoderParallelFullRange(ThreadState state)
+            throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            BufferObjectDataInput in =
+                    state.ss.createObjectDataInput(full_range_samples[ix]);
+            String s = parallelEncoderDecoder.readUTF0(in, state.buffer);
+            state.total += s.length();
+        }
+    }
+
+    private static SerializationService createSerializationService() {
+        return
+            new SerializationServiceBuilder().
+                    setInitialOutputBufferSize(BUFFER_SIZE).build();
+    }
+
+}
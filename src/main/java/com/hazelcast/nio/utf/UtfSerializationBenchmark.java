@@ -1,5 +1,6 @@
 package com.hazelcast.nio.utf;
 
+import com.hazelcast.Util;
 import com.hazelcast.nio.BufferObjectDataInput;
 import com.hazelcast.nio.BufferObjectDataOutput;
 import com.hazelcast.nio.UTFEncoderDecoder;
@@ -7,8 +8,10 @@ import com.hazelcast.nio.serialization.SerializationService;
 import com.hazelcast.nio.serialization.SerializationServiceBuilder;
 
 import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OperationsPerInvocation;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
@@ -16,8 +19,11 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
@@ -31,28 +37,86 @@ public class UtfSerializationBenchmark {
     public static final int OPS_PER_INV = 100;
     public static final int BUFFER_SIZE = 4 * 1024;
     public static final int SAMPLES = 1000;
+    // Caps the samples of large sizes, so the corpora of multi-megabyte strings fit into the heap
+    public static final int MAX_SAMPLE_CHARS = 16 * 1024 * 1024;
 
     @State(Scope.Thread)
     public static class ThreadState {
         final Random rand = new Random();
         final SerializationService ss = createSerializationService();
         long total;
+
+        // Staging buffers of the WithSmallBuffer and WithLargeBuffer variants, allocated once so
+        // the benchmarks of large strings don't measure the allocation of the buffer
+        byte[] smallBuffer;
+        byte[] largeBuffer;
+
+        @Setup
+        public void allocateBuffers(UtfSerializationBenchmark benchmark) {
+            int size = Integer.parseInt(benchmark.size);
+            smallBuffer = new byte[size / 2];
+            largeBuffer = new byte[size * 4];
+        }
+    }
+
+    /**
+     * Bytes allocated by the benchmark thread during an iteration, reported per time unit like
+     * the score. Divided by the score it is the allocation per operation. Stays 0 if the JVM
+     * doesn't count the allocated bytes of threads.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class AllocationCounters {
+        public long allocatedBytes;
+
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            allocatedBytes = 0;
+            start = threadAllocatedBytes();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            long end = threadAllocatedBytes();
+            if (start >= 0 && end >= 0) {
+                allocatedBytes = end - start;
+            }
+        }
     }
 
     private String[] strings = new String[SAMPLES];
     private byte[][] utf_util_samples = new byte[SAMPLES][];
     private byte[][] utf_encoder_decoder_samples = new byte[SAMPLES][];
     private byte[][] optimized_utf_encoder_decoder_samples = new byte[SAMPLES][];
+    private byte[][] latin1_samples = new byte[SAMPLES][];
+
+    // Util.randomString corpus, chars from the full range instead of alphanumerics
+    private String[] full_range_strings = new String[SAMPLES];
+    private byte[][] full_range_samples = new byte[SAMPLES][];
+    private byte[][] full_range_latin1_samples = new byte[SAMPLES][];
+
+    private final OptimizedUTFEncoderDecoder scalarAsciiEncoderDecoder =
+            OptimizedUTFEncoderDecoder.newBuilder().setBulkAscii(false).build();
+    private final OptimizedUTFEncoderDecoder twoPassEncoderDecoder =
+            OptimizedUTFEncoderDecoder.newBuilder().setSinglePass(false).build();
+    private final OptimizedUTFEncoderDecoder latin1EncoderDecoder =
+            OptimizedUTFEncoderDecoder.newBuilder().setCompactLatin1(true).build();
+    private int sampleCount;
 
     @Param(value = {    "8", "16", "32", "64", "128", "256",
-                        "512", "1024", "2048", "4096", "8192" })
+                        "512", "1024", "2048", "4096", "8192",
+                        "16384", "65536", "262144", "1048576", "4194304" })
     private String size;
 
     @Setup
     public void setUp() throws IOException {
+        sampleCount = Math.max(1, Math.min(SAMPLES, MAX_SAMPLE_CHARS / Integer.parseInt(size)));
+
         SerializationService ss = createSerializationService();
         BufferObjectDataOutput out = ss.createObjectDataOutput(BUFFER_SIZE);
-        for (int i = 0; i < SAMPLES; i++) {
+        for (int i = 0; i < sampleCount; i++) {
             String str = 
                     RandomStringUtils.randomAlphanumeric(Integer.parseInt(size));
             strings[i] = str;
@@ -71,6 +135,24 @@ public class UtfSerializationBenchmark {
             optimized_utf_encoder_decoder_samples[i] = out.toByteArray();
 
             out.clear();
+
+            latin1EncoderDecoder.writeUTF0(out, str, new byte[1024]);
+            latin1_samples[i] = out.toByteArray();
+
+            out.clear();
+
+            String fullRangeStr = Util.randomString(Integer.parseInt(size));
+            full_range_strings[i] = fullRangeStr;
+
+            OptimizedUTFEncoderDecoder.writeUTF(out, fullRangeStr, new byte[1024]);
+            full_range_samples[i] = out.toByteArray();
+
+            out.clear();
+
+            latin1EncoderDecoder.writeUTF0(out, fullRangeStr, new byte[1024]);
+            full_range_latin1_samples[i] = out.toByteArray();
+
+            out.clear();
         }
     }
 
@@ -81,12 +163,25 @@ public class UtfSerializationBenchmark {
         BufferObjectDataOutput out = 
                 state.ss.createObjectDataOutput(BUFFER_SIZE);
         for (int i = 0; i < OPS_PER_INV; i++) {
-            int ix = state.rand.nextInt(SAMPLES);
+            int ix = state.rand.nextInt(sampleCount);
             UTFUtil.writeUTF(out, strings[ix]);
             out.clear();
         }
     }
 
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_UTFUtilTwoPass(ThreadState state) throws IOException {
+        BufferObjectDataOutput out = 
+                state.ss.createObjectDataOutput(BUFFER_SIZE);
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            UTFUtil.writeUTF(out, strings[ix], false);
+            out.clear();
+        }
+    }
+
     @Benchmark
     @BenchmarkMode({ Mode.Throughput })
     @OutputTimeUnit(TimeUnit.MILLISECONDS)
@@ -94,10 +189,10 @@ public class UtfSerializationBenchmark {
             throws IOException {
         BufferObjectDataOutput out = 
                 state.ss.createObjectDataOutput(BUFFER_SIZE);
-        byte[] buffer = new byte[Integer.parseInt(size) / 2];
+        byte[] buffer = state.smallBuffer;
 
         for (int i = 0; i < OPS_PER_INV; i++) {
-            int ix = state.rand.nextInt(SAMPLES);
+            int ix = state.rand.nextInt(sampleCount);
             UTFEncoderDecoder.writeUTF(out, strings[ix], buffer);
             out.clear();
         }
@@ -110,10 +205,10 @@ public class UtfSerializationBenchmark {
             throws IOException {
         BufferObjectDataOutput out = 
                 state.ss.createObjectDataOutput(BUFFER_SIZE);
-        byte[] buffer = new byte[Integer.parseInt(size) * 4];
+        byte[] buffer = state.largeBuffer;
 
         for (int i = 0; i < OPS_PER_INV; i++) {
-            int ix = state.rand.nextInt(SAMPLES);
+            int ix = state.rand.nextInt(sampleCount);
             UTFEncoderDecoder.writeUTF(out, strings[ix], buffer);
             out.clear();
         }
@@ -126,10 +221,10 @@ public class UtfSerializationBenchmark {
             throws IOException {
         BufferObjectDataOutput out = 
                 state.ss.createObjectDataOutput(BUFFER_SIZE);
-        byte[] buffer = new byte[Integer.parseInt(size) / 2];
+        byte[] buffer = state.smallBuffer;
 
         for (int i = 0; i < OPS_PER_INV; i++) {
-            int ix = state.rand.nextInt(SAMPLES);
+            int ix = state.rand.nextInt(sampleCount);
             OptimizedUTFEncoderDecoder.writeUTF(out, strings[ix], buffer);
             out.clear();
         }
@@ -138,25 +233,152 @@ public class UtfSerializationBenchmark {
     @Benchmark
     @BenchmarkMode({ Mode.Throughput })
     @OutputTimeUnit(TimeUnit.MILLISECONDS)
-    public void write_OptimizedUTFEncodeDecoderWithLargeBuffer(ThreadState state)
+    public void write_OptimizedUTFEncodeDecoderWithLargeBuffer(ThreadState state, AllocationCounters counters)
             throws IOException {
         BufferObjectDataOutput out = 
                 state.ss.createObjectDataOutput(BUFFER_SIZE);
-        byte[] buffer = new byte[Integer.parseInt(size) * 4];
+        byte[] buffer = state.largeBuffer;
 
         for (int i = 0; i < OPS_PER_INV; i++) {
-            int ix = state.rand.nextInt(SAMPLES);
+            int ix = state.rand.nextInt(sampleCount);
             OptimizedUTFEncoderDecoder.writeUTF(out, strings[ix], buffer);
             out.clear();
         }
     }
 
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_OptimizedUTFEncodeDecoderPooled(ThreadState state, AllocationCounters counters)
+            throws IOException {
+        BufferObjectDataOutput out = 
+                state.ss.createObjectDataOutput(BUFFER_SIZE);
+
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            OptimizedUTFEncoderDecoder.writeUTF(out, strings[ix]);
+            out.clear();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_OptimizedUTFEncodeDecoderScalarAsciiWithSmallBuffer(ThreadState state)
+            throws IOException {
+        BufferObjectDataOutput out = 
+                state.ss.createObjectDataOutput(BUFFER_SIZE);
+        byte[] buffer = state.smallBuffer;
+
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            scalarAsciiEncoderDecoder.writeUTF0(out, strings[ix], buffer);
+            out.clear();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_OptimizedUTFEncodeDecoderScalarAsciiWithLargeBuffer(ThreadState state)
+            throws IOException {
+        BufferObjectDataOutput out = 
+                state.ss.createObjectDataOutput(BUFFER_SIZE);
+        byte[] buffer = state.largeBuffer;
+
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            scalarAsciiEncoderDecoder.writeUTF0(out, strings[ix], buffer);
+            out.clear();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_OptimizedUTFEncodeDecoderTwoPassWithSmallBuffer(ThreadState state)
+            throws IOException {
+        BufferObjectDataOutput out = 
+                state.ss.createObjectDataOutput(BUFFER_SIZE);
+        byte[] buffer = state.smallBuffer;
+
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            twoPassEncoderDecoder.writeUTF0(out, strings[ix], buffer);
+            out.clear();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_OptimizedUTFEncodeDecoderTwoPassWithLargeBuffer(ThreadState state)
+            throws IOException {
+        BufferObjectDataOutput out = 
+                state.ss.createObjectDataOutput(BUFFER_SIZE);
+        byte[] buffer = state.largeBuffer;
+
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            twoPassEncoderDecoder.writeUTF0(out, strings[ix], buffer);
+            out.clear();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_OptimizedUTFEncodeDecoderLatin1(ThreadState state)
+            throws IOException {
+        BufferObjectDataOutput out = 
+                state.ss.createObjectDataOutput(BUFFER_SIZE);
+        byte[] buffer = state.largeBuffer;
+
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            latin1EncoderDecoder.writeUTF0(out, strings[ix], buffer);
+            out.clear();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_OptimizedUTFEncodeDecoderFullRange(ThreadState state)
+            throws IOException {
+        BufferObjectDataOutput out = 
+                state.ss.createObjectDataOutput(BUFFER_SIZE);
+        byte[] buffer = state.largeBuffer;
+
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            OptimizedUTFEncoderDecoder.writeUTF(out, full_range_strings[ix], buffer);
+            out.clear();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void write_OptimizedUTFEncodeDecoderLatin1FullRange(ThreadState state)
+            throws IOException {
+        BufferObjectDataOutput out = 
+                state.ss.createObjectDataOutput(BUFFER_SIZE);
+        byte[] buffer = state.largeBuffer;
+
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            latin1EncoderDecoder.writeUTF0(out, full_range_strings[ix], buffer);
+            out.clear();
+        }
+    }
+
     @Benchmark
     @BenchmarkMode({ Mode.Throughput })
     @OutputTimeUnit(TimeUnit.MILLISECONDS)
     public void read_UTFUtil(ThreadState state) throws IOException {
         for (int i = 0; i < OPS_PER_INV; i++) {
-            int ix = state.rand.nextInt(SAMPLES);
+            int ix = state.rand.nextInt(sampleCount);
             BufferObjectDataInput in = 
                     state.ss.createObjectDataInput(utf_util_samples[ix]);
             String s = com.hazelcast.nio.utf.UTFUtil.readUTF(in);
@@ -169,9 +391,9 @@ public class UtfSerializationBenchmark {
     @OutputTimeUnit(TimeUnit.MILLISECONDS)
     public void read_UTFEncodeDecoderWithSmallBuffer(ThreadState state)
             throws IOException {
-        byte[] buffer = new byte[Integer.parseInt(size) / 2];
+        byte[] buffer = state.smallBuffer;
         for (int i = 0; i < OPS_PER_INV; i++) {
-            int ix = state.rand.nextInt(SAMPLES);
+            int ix = state.rand.nextInt(sampleCount);
             BufferObjectDataInput in = 
                     state.ss.createObjectDataInput(utf_encoder_decoder_samples[ix]);
             String s = UTFEncoderDecoder.readUTF(in, buffer);
@@ -184,9 +406,9 @@ public class UtfSerializationBenchmark {
     @OutputTimeUnit(TimeUnit.MILLISECONDS)
     public void read_UTFEncodeDecoderWithLargeBuffer(ThreadState state)
             throws IOException {
-        byte[] buffer = new byte[Integer.parseInt(size) * 4];
+        byte[] buffer = state.largeBuffer;
         for (int i = 0; i < OPS_PER_INV; i++) {
-            int ix = state.rand.nextInt(SAMPLES);
+            int ix = state.rand.nextInt(sampleCount);
             BufferObjectDataInput in = 
                     state.ss.createObjectDataInput(utf_encoder_decoder_samples[ix]);
             String s = UTFEncoderDecoder.readUTF(in, buffer);
@@ -199,9 +421,24 @@ public class UtfSerializationBenchmark {
     @OutputTimeUnit(TimeUnit.MILLISECONDS)
     public void read_OptimizedUTFEncodeDecoderWithSmallBuffer(ThreadState state)
             throws IOException {
-        byte[] buffer = new byte[Integer.parseInt(size) / 2];
+        byte[] buffer = state.smallBuffer;
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            BufferObjectDataInput in = 
+                    state.ss.createObjectDataInput(optimized_utf_encoder_decoder_samples[ix]);
+            String s = OptimizedUTFEncoderDecoder.readUTF(in, buffer);
+            state.total += s.length();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_OptimizedUTFEncodeDecoderWithLargeBuffer(ThreadState state, AllocationCounters counters)
+            throws IOException {
+        byte[] buffer = state.largeBuffer;
         for (int i = 0; i < OPS_PER_INV; i++) {
-            int ix = state.rand.nextInt(SAMPLES);
+            int ix = state.rand.nextInt(sampleCount);
             BufferObjectDataInput in = 
                     state.ss.createObjectDataInput(optimized_utf_encoder_decoder_samples[ix]);
             String s = OptimizedUTFEncoderDecoder.readUTF(in, buffer);
@@ -212,18 +449,102 @@ public class UtfSerializationBenchmark {
     @Benchmark
     @BenchmarkMode({ Mode.Throughput })
     @OutputTimeUnit(TimeUnit.MILLISECONDS)
-    public void read_OptimizedUTFEncodeDecoderWithLargeBuffer(ThreadState state)
+    public void read_OptimizedUTFEncodeDecoderPooled(ThreadState state, AllocationCounters counters)
+            throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            BufferObjectDataInput in = 
+                    state.ss.createObjectDataInput(optimized_utf_encoder_decoder_samples[ix]);
+            String s = OptimizedUTFEncoderDecoder.readUTF(in);
+            state.total += s.length();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_OptimizedUTFEncodeDecoderScalarAsciiWithSmallBuffer(ThreadState state)
             throws IOException {
-        byte[] buffer = new byte[Integer.parseInt(size) * 4];
+        byte[] buffer = state.smallBuffer;
         for (int i = 0; i < OPS_PER_INV; i++) {
-            int ix = state.rand.nextInt(SAMPLES);
+            int ix = state.rand.nextInt(sampleCount);
             BufferObjectDataInput in = 
                     state.ss.createObjectDataInput(optimized_utf_encoder_decoder_samples[ix]);
+            String s = scalarAsciiEncoderDecoder.readUTF0(in, buffer);
+            state.total += s.length();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_OptimizedUTFEncodeDecoderScalarAsciiWithLargeBuffer(ThreadState state)
+            throws IOException {
+        byte[] buffer = state.largeBuffer;
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            BufferObjectDataInput in = 
+                    state.ss.createObjectDataInput(optimized_utf_encoder_decoder_samples[ix]);
+            String s = scalarAsciiEncoderDecoder.readUTF0(in, buffer);
+            state.total += s.length();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_OptimizedUTFEncodeDecoderLatin1(ThreadState state)
+            throws IOException {
+        byte[] buffer = state.largeBuffer;
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            BufferObjectDataInput in = 
+                    state.ss.createObjectDataInput(latin1_samples[ix]);
+            String s = latin1EncoderDecoder.readUTF0(in, buffer);
+            state.total += s.length();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_OptimizedUTFEncodeDecoderFullRange(ThreadState state)
+            throws IOException {
+        byte[] buffer = state.largeBuffer;
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            BufferObjectDataInput in = 
+                    state.ss.createObjectDataInput(full_range_samples[ix]);
             String s = OptimizedUTFEncoderDecoder.readUTF(in, buffer);
             state.total += s.length();
         }
     }
 
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_OptimizedUTFEncodeDecoderLatin1FullRange(ThreadState state)
+            throws IOException {
+        byte[] buffer = state.largeBuffer;
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int ix = state.rand.nextInt(sampleCount);
+            BufferObjectDataInput in = 
+                    state.ss.createObjectDataInput(full_range_latin1_samples[ix]);
+            String s = latin1EncoderDecoder.readUTF0(in, buffer);
+            state.total += s.length();
+        }
+    }
+
+    // Bytes allocated by the current thread so far, -1 if the JVM doesn't count them
+    private static long threadAllocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadMXBean).
+                    getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
     private static SerializationService createSerializationService() {
         return 
             new SerializationServiceBuilder().
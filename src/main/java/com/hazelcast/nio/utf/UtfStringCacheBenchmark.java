@@ -0,0 +1,159 @@
+package com.hazelcast.nio.utf;
+
+import com.hazelcast.nio.BufferObjectDataInput;
+import com.hazelcast.nio.BufferObjectDataOutput;
+import com.hazelcast.nio.serialization.SerializationService;
+import com.hazelcast.nio.serialization.SerializationServiceBuilder;
+import com.hazelcast.util.UuidUtil;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes UUID strings picked with a Zipf distribution from a fixed set of keys,
+ * with and without a {@link StringCache}. Skew 0 picks every key with the same
+ * probability, higher skews concentrate the traffic on fewer keys.
+ *
+ * read_Cache reports the hits and misses of the cache per time unit next to its throughput,
+ * the hit ratio is hits / (hits + misses).
+ */
+@State(Scope.Benchmark)
+@OperationsPerInvocation(UtfStringCacheBenchmark.OPS_PER_INV)
+public class UtfStringCacheBenchmark {
+
+    public static final int OPS_PER_INV = 100;
+    public static final int BUFFER_SIZE = 4 * 1024;
+    public static final int KEYS = 10000;
+    public static final int SEQUENCE_LENGTH = 64 * 1024;
+    public static final int CACHE_CAPACITY = 1024;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final SerializationService ss = createSerializationService();
+        final byte[] buffer = new byte[1024];
+        int position = new Random().nextInt(SEQUENCE_LENGTH);
+        long total;
+
+        int nextIndex(int[] sequence) {
+            int ix = sequence[position];
+            position = (position + 1) & (SEQUENCE_LENGTH - 1);
+            return ix;
+        }
+    }
+
+    private final byte[][] samples = new byte[KEYS][];
+    private final int[] sequence = new int[SEQUENCE_LENGTH];
+    private final StringCache stringCache = new StringCache(CACHE_CAPACITY, 128, true);
+    private final OptimizedUTFEncoderDecoder cachingEncoderDecoder =
+            OptimizedUTFEncoderDecoder.newBuilder().setStringCache(stringCache).build();
+
+    @Param(value = { "0.0", "0.5", "1.0", "1.5" })
+    private String skew;
+
+    @Setup
+    public void setUp() throws IOException {
+        SerializationService ss = createSerializationService();
+        BufferObjectDataOutput out = ss.createObjectDataOutput(BUFFER_SIZE);
+        for (int i = 0; i < KEYS; i++) {
+            OptimizedUTFEncoderDecoder.writeUTF(out, UuidUtil.buildRandomUuidString(), new byte[1024]);
+            samples[i] = out.toByteArray();
+            out.clear();
+        }
+
+        // Zipf distribution over the keys, key "k" is picked with a weight of 1 / (k + 1) ^ skew
+        double s = Double.parseDouble(skew);
+        double[] cdf = new double[KEYS];
+        double sum = 0;
+        for (int k = 0; k < KEYS; k++) {
+            sum += 1D / Math.pow(k + 1, s);
+            cdf[k] = sum;
+        }
+        Random rand = new Random(42);
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            int ix = Arrays.binarySearch(cdf, rand.nextDouble() * sum);
+            sequence[i] = Math.min(ix < 0 ? -ix - 1 : ix, KEYS - 1);
+        }
+    }
+
+    /**
+     * Hits and misses of the cache in the iteration. The statistics of the cache are not kept per
+     * thread, so only the first thread reports them and the other threads report 0. JMH sums up
+     * the counters of all threads.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class CacheCounters {
+
+        public long cacheHits;
+        public long cacheMisses;
+
+        private StringCache stringCache;
+        private boolean reporting;
+        private long hitsBefore;
+        private long missesBefore;
+
+        @Setup(Level.Iteration)
+        public void start(UtfStringCacheBenchmark benchmark, ThreadParams threadParams) {
+            stringCache = benchmark.stringCache;
+            reporting = threadParams.getThreadIndex() == 0;
+            cacheHits = 0;
+            cacheMisses = 0;
+            hitsBefore = stringCache.getHits();
+            missesBefore = stringCache.getMisses();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            if (reporting) {
+                cacheHits = stringCache.getHits() - hitsBefore;
+                cacheMisses = stringCache.getMisses() - missesBefore;
+            }
+        }
+
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_NoCache(ThreadState state) throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            BufferObjectDataInput in = state.ss.createObjectDataInput(samples[state.nextIndex(sequence)]);
+            String s = OptimizedUTFEncoderDecoder.readUTF(in, state.buffer);
+            state.total += s.length();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_Cache(ThreadState state, CacheCounters counters) throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            BufferObjectDataInput in = state.ss.createObjectDataInput(samples[state.nextIndex(sequence)]);
+            String s = cachingEncoderDecoder.readUTF0(in, state.buffer);
+            state.total += s.length();
+        }
+    }
+
+    private static SerializationService createSerializationService() {
+        return
+            new SerializationServiceBuilder().
+                    setInitialOutputBufferSize(BUFFER_SIZE).build();
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.hazelcast.nio.utf;
+
+import com.hazelcast.nio.BufferObjectDataInput;
+import com.hazelcast.nio.BufferObjectDataOutput;
+import com.hazelcast.nio.serialization.SerializationService;
+import com.hazelcast.nio.serialization.SerializationServiceBuilder;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes strings and takes their hash code, the way map keys are used after deserialization.
+ * Compares hashing the decoded string afterwards with getting the hash from the decoder,
+ * either returned next to the string or stored into it.
+ */
+@State(Scope.Benchmark)
+@OperationsPerInvocation(UtfStringHashBenchmark.OPS_PER_INV)
+public class UtfStringHashBenchmark {
+
+    public static final int OPS_PER_INV = 100;
+    public static final int BUFFER_SIZE = 4 * 1024;
+    public static final int SAMPLES = 1000;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random rand = new Random();
+        final SerializationService ss = createSerializationService();
+        final byte[] buffer = new byte[1024];
+        final int[] hash = new int[1];
+        long total;
+    }
+
+    private final byte[][] samples = new byte[SAMPLES][];
+    private final OptimizedUTFEncoderDecoder encoderDecoder =
+            OptimizedUTFEncoderDecoder.newBuilder().setStoreStringHash(false).build();
+    private final OptimizedUTFEncoderDecoder storingEncoderDecoder =
+            OptimizedUTFEncoderDecoder.newBuilder().setStoreStringHash(true).build();
+
+    @Param(value = { "8", "36", "128", "1024", "8192" })
+    private String size;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (!storingEncoderDecoder.isStoreStringHash()) {
+            System.out.println("\nString hash field is not accessible, hashes are not stored");
+        }
+        SerializationService ss = createSerializationService();
+        BufferObjectDataOutput out = ss.createObjectDataOutput(BUFFER_SIZE);
+        int length = Integer.parseInt(size);
+        for (int i = 0; i < SAMPLES; i++) {
+            OptimizedUTFEncoderDecoder.writeUTF(out, RandomStringUtils.randomAlphanumeric(length), new byte[1024]);
+            samples[i] = out.toByteArray();
+            out.clear();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_ThenHashCode(ThreadState state) throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            BufferObjectDataInput in = state.ss.createObjectDataInput(samples[state.rand.nextInt(SAMPLES)]);
+            String s = encoderDecoder.readUTF0(in, state.buffer);
+            state.total += s.hashCode();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_WithHash(ThreadState state) throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            BufferObjectDataInput in = state.ss.createObjectDataInput(samples[state.rand.nextInt(SAMPLES)]);
+            String s = encoderDecoder.readUTF0(in, state.buffer, state.hash);
+            state.total += s.length() + state.hash[0];
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void read_StoreHashThenHashCode(ThreadState state) throws IOException {
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            BufferObjectDataInput in = state.ss.createObjectDataInput(samples[state.rand.nextInt(SAMPLES)]);
+            String s = storingEncoderDecoder.readUTF0(in, state.buffer);
+            state.total += s.hashCode();
+        }
+    }
+
+    private static SerializationService createSerializationService() {
+        return
+            new SerializationServiceBuilder().
+                    setInitialOutputBufferSize(BUFFER_SIZE).build();
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map of byte[] values that stores them compressed by a {@link SlabCompressor} in another map,
+ * so a {@link SlapMap} keeps the compressed blocks in its segments. Values are compressed on put
+ * and decompressed on every get, the values returned are always copies.
+ *
+ * Thread-safe as far as the map it wraps is, as long as only one thread writes, the compressor
+ * is not thread-safe.
+ */
+public class CompressingMap extends AbstractMap<Integer, byte[]> {
+
+    private final Map<Integer, byte[]> delegate;
+    private final SlabCompressor compressor;
+
+    public CompressingMap(Map<Integer, byte[]> delegate, SlabCompressor compressor) {
+        this.delegate = delegate;
+        this.compressor = compressor;
+    }
+
+    public Map<Integer, byte[]> getDelegate() {
+        return delegate;
+    }
+
+    public SlabCompressor getCompressor() {
+        return compressor;
+    }
+
+    @Override
+    public byte[] put(Integer key, byte[] value) {
+        return compressor.decompress(delegate.put(key, compressor.compress(value)));
+    }
+
+    @Override
+    public byte[] get(Object key) {
+        return compressor.decompress(delegate.get(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return delegate.containsKey(key);
+    }
+
+    @Override
+    public byte[] remove(Object key) {
+        return compressor.decompress(delegate.remove(key));
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public Set<Entry<Integer, byte[]>> entrySet() {
+        return new AbstractSet<Entry<Integer, byte[]>>() {
+            @Override
+            public Iterator<Entry<Integer, byte[]>> iterator() {
+                final Iterator<Entry<Integer, byte[]>> iterator = delegate.entrySet().iterator();
+                return new Iterator<Entry<Integer, byte[]>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<Integer, byte[]> next() {
+                        final Entry<Integer, byte[]> entry = iterator.next();
+                        return new SimpleImmutableEntry<Integer, byte[]>(entry.getKey(),
+                                compressor.decompress(entry.getValue()));
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return delegate.size();
+            }
+        };
+    }
+
+}
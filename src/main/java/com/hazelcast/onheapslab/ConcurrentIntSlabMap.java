@@ -0,0 +1,613 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import com.hazelcast.nio.UnsafeHelper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Thread-safe {@link IntSlabMap}. Keys are spread over <code>noOfSegments</code> stripes, every
+ * stripe is an {@link IntSlabMap} with its own lock, so writers of different stripes don't contend.
+ * A stripe splits its <code>capacityOfSegment</code> bytes into {@value #SEGMENTS_PER_STRIPE}
+ * segments and compacts automatically, so replaced values don't fill it up.
+ *
+ * Reads are lock-free. Every stripe has a stamp that writers make odd while they change the stripe,
+ * a reader looks the key up without locking and retries if the stamp has changed meanwhile.
+ * Validating a stamp after plain reads needs <code>Unsafe.loadFence()</code> (Java 8+),
+ * without it reads take the lock of the stripe. The fences are resolved into constant
+ * {@link MethodHandle}s, so the map compiles and runs on Java 7 too.
+ *
+ * With arenas, writers don't allocate and copy under the lock of the stripe. Like a TLAB, every
+ * writer thread claims {@value #ARENA_SIZE} bytes of the current segment of a stripe at once with
+ * a single atomic update of its position, allocates the records in there without any atomics and
+ * writes the values. Only indexing the record takes the lock. A value never overwrites the old
+ * one in place then. The unused end of an arena goes back to the segment when the writer claims
+ * the next arena or calls {@link #releaseArenas()}, if no other arena was claimed after it.
+ * Otherwise it is left as a dead record. Once the current segment is full, the writer that runs
+ * out of room seals it and moves the stripe on to the next one under the lock, compacting a
+ * segment whose arenas are all given back if no empty one is left. An arena a thread never gives
+ * back keeps its segment from being compacted. {@link #clear()} must not run concurrently with
+ * puts of a map with arenas. Arenas need <code>sun.misc.Unsafe</code> for the atomic updates.
+ *
+ * {@link #putAll(int[], byte[][], int)} and {@link #getAll(int[], byte[][], int)} work on batches of
+ * entries. They group the keys by stripe and take the lock of every stripe, or validate its stamp,
+ * once per batch instead of once per entry.
+ */
+public class ConcurrentIntSlabMap {
+
+    // Unsafe.loadFence() and Unsafe.storeFence() bound to the Unsafe instance, null before Java 8
+    private static final MethodHandle LOAD_FENCE;
+    private static final MethodHandle STORE_FENCE;
+    private static final boolean LOCK_FREE_READS;
+
+    static {
+        MethodHandle loadFence = null;
+        MethodHandle storeFence = null;
+        if (UnsafeHelper.UNSAFE_AVAILABLE) {
+            try {
+                loadFence = findFence("loadFence");
+                storeFence = findFence("storeFence");
+            } catch (Exception e) {
+                loadFence = null;
+                storeFence = null;
+            }
+        }
+        LOAD_FENCE = loadFence;
+        STORE_FENCE = storeFence;
+        LOCK_FREE_READS = loadFence != null && storeFence != null;
+    }
+
+    static final int ARENA_SIZE = 64 * 1024;
+    static final int SEGMENTS_PER_STRIPE = 4;
+    // Times a writer that needs a new segment waits for the arenas of other writers to be given back
+    static final int MAX_CLAIM_RETRIES = 1000;
+
+    private final Stripe[] stripes;
+    // Arenas of the calling thread, one per stripe, null without arenas
+    private final ThreadLocal<Arena[]> arenas;
+
+    public ConcurrentIntSlabMap(boolean offheap, int capacity, int noOfSegments, int capacityOfSegment) {
+        this(offheap, false, capacity, noOfSegments, capacityOfSegment);
+    }
+
+    public ConcurrentIntSlabMap(boolean offheap, boolean arenas, int capacity, int noOfSegments,
+                                int capacityOfSegment) {
+        if (arenas && !SlabSegment.supportsClaims()) {
+            throw new UnsupportedOperationException("Arenas need sun.misc.Unsafe");
+        }
+        this.stripes = new Stripe[noOfSegments];
+        final int capacityOfStripe = capacity / noOfSegments + 1;
+        final int capacityOfStripeSegment = capacityOfSegment / SEGMENTS_PER_STRIPE & -SlabSegment.ALIGNMENT;
+        for (int i = 0; i < noOfSegments; i++) {
+            final HeapIntSlabIndex index = new HeapIntSlabIndex(capacityOfStripe);
+            final IntSlabMap map = new IntSlabMap(offheap, index, SEGMENTS_PER_STRIPE, capacityOfStripeSegment);
+            map.setAutoCompaction(true);
+            if (arenas) {
+                map.allocateByClaims();
+            }
+            stripes[i] = new Stripe(i, map, index);
+        }
+        this.arenas = !arenas ? null : new ThreadLocal<Arena[]>() {
+            @Override
+            protected Arena[] initialValue() {
+                final Arena[] arenas = new Arena[stripes.length];
+                for (int i = 0; i < arenas.length; i++) {
+                    arenas[i] = new Arena();
+                }
+                return arenas;
+            }
+        };
+    }
+
+    public static boolean isLockFreeReads() {
+        return LOCK_FREE_READS;
+    }
+
+    public void put(int key, byte[] value) {
+        final Stripe stripe = stripeOf(key);
+        if (arenas != null) {
+            putFromArena(stripe, key, value);
+            return;
+        }
+        synchronized (stripe) {
+            stripe.beginWrite();
+            try {
+                stripe.map.put(key, value);
+            } finally {
+                stripe.endWrite();
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the value, or <code>null</code> if there is no value for the key
+     */
+    public byte[] get(int key) {
+        final Stripe stripe = stripeOf(key);
+        if (!LOCK_FREE_READS) {
+            synchronized (stripe) {
+                return stripe.map.get(key);
+            }
+        }
+        final IntSlabMap map = stripe.map;
+        for (;;) {
+            final long stamp = stripe.stamp;
+            if ((stamp & 1) != 0) {
+                continue;
+            }
+            final long ref = stripe.findRacy(key);
+            if (ref == IntSlabIndex.NOT_FOUND) {
+                if (stripe.validate(stamp)) {
+                    return null;
+                }
+                continue;
+            }
+            final int length = map.lengthRacy(ref);
+            // The length has to be valid before it is used to allocate and copy
+            if (length < 0 || !stripe.validate(stamp)) {
+                continue;
+            }
+            final byte[] value = new byte[length];
+            map.readRacy(ref, value);
+            if (stripe.validate(stamp)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Puts the first <code>count</code> keys with their values. Every stripe is locked once for
+     * all of its entries. With arenas the records of a stripe are written back to back before
+     * its lock is taken to index them.
+     */
+    public void putAll(int[] keys, byte[][] values, int count) {
+        final int[] starts = new int[stripes.length + 1];
+        final int[] order = groupByStripe(keys, count, starts);
+        final long[] refs = arenas != null ? new long[count] : null;
+        for (int s = 0; s < stripes.length; s++) {
+            final int start = starts[s];
+            final int end = starts[s + 1];
+            if (start == end) {
+                continue;
+            }
+            final Stripe stripe = stripes[s];
+            if (refs == null) {
+                synchronized (stripe) {
+                    stripe.beginWrite();
+                    try {
+                        for (int j = start; j < end; j++) {
+                            stripe.map.put(keys[order[j]], values[order[j]]);
+                        }
+                    } finally {
+                        stripe.endWrite();
+                    }
+                }
+                continue;
+            }
+            final Arena arena = arenas.get()[s];
+            int from = start;
+            for (int j = start; j < end; j++) {
+                // The records of an arena are indexed before it is retired
+                if (j > from && !fits(stripe, arena, values[order[j]].length)) {
+                    putRecords(stripe, arena, keys, order, refs, from, j);
+                    from = j;
+                }
+                refs[j] = allocateFromArena(stripe, arena, keys[order[j]], values[order[j]]);
+            }
+            putRecords(stripe, arena, keys, order, refs, from, end);
+        }
+    }
+
+    /**
+     * Gets copies of the values of the first <code>count</code> keys into <code>values</code>,
+     * <code>null</code> for keys without a value. The keys of a stripe are all looked up in its
+     * index before any value is copied, so the lookups don't wait for the copies and one stamp
+     * covers all of them. A stripe written to meanwhile is read again.
+     */
+    public void getAll(int[] keys, byte[][] values, int count) {
+        final int[] starts = new int[stripes.length + 1];
+        final int[] order = groupByStripe(keys, count, starts);
+        final long[] refs = new long[count];
+        for (int s = 0; s < stripes.length; s++) {
+            final int start = starts[s];
+            final int end = starts[s + 1];
+            if (start == end) {
+                continue;
+            }
+            final Stripe stripe = stripes[s];
+            if (!LOCK_FREE_READS) {
+                synchronized (stripe) {
+                    for (int j = start; j < end; j++) {
+                        values[order[j]] = stripe.map.get(keys[order[j]]);
+                    }
+                }
+                continue;
+            }
+            while (!getAllRacy(stripe, keys, values, order, refs, start, end)) {
+                Thread.yield();
+            }
+        }
+    }
+
+    public boolean containsKey(int key) {
+        final Stripe stripe = stripeOf(key);
+        if (!LOCK_FREE_READS) {
+            synchronized (stripe) {
+                return stripe.map.containsKey(key);
+            }
+        }
+        for (;;) {
+            final long stamp = stripe.stamp;
+            if ((stamp & 1) == 0) {
+                final boolean found = stripe.findRacy(key) != IntSlabIndex.NOT_FOUND;
+                if (stripe.validate(stamp)) {
+                    return found;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether there was a value for the key
+     */
+    public boolean remove(int key) {
+        final Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            stripe.beginWrite();
+            try {
+                return stripe.map.remove(key);
+            } finally {
+                stripe.endWrite();
+            }
+        }
+    }
+
+    /**
+     * Gives the unused ends of the arenas of the calling thread back, call it before the thread
+     * stops writing to the map for good. Nothing to do without arenas.
+     */
+    public void releaseArenas() {
+        if (arenas == null) {
+            return;
+        }
+        final Arena[] arenasOfThread = arenas.get();
+        for (int i = 0; i < stripes.length; i++) {
+            retire(stripes[i], arenasOfThread[i]);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.map.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.beginWrite();
+                try {
+                    stripe.generation++;
+                    stripe.map.clear();
+                } finally {
+                    stripe.endWrite();
+                }
+            }
+        }
+    }
+
+    /**
+     * Frees the segments, no other thread may use the map anymore.
+     */
+    public void destroy() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.map.destroy();
+            }
+        }
+    }
+
+    private void putFromArena(Stripe stripe, int key, byte[] value) {
+        final Arena arena = arenas.get()[stripe.index];
+        final long ref = allocateFromArena(stripe, arena, key, value);
+        synchronized (stripe) {
+            stripe.beginWrite();
+            try {
+                stripe.map.putRecord(key, ref);
+            } finally {
+                stripe.endWrite();
+            }
+        }
+        retireIfSealed(stripe, arena);
+    }
+
+    // Indexes the records order[from, to) of the stripe allocated from the arena
+    private void putRecords(Stripe stripe, Arena arena, int[] keys, int[] order, long[] refs, int from, int to) {
+        synchronized (stripe) {
+            stripe.beginWrite();
+            try {
+                for (int j = from; j < to; j++) {
+                    stripe.map.putRecord(keys[order[j]], refs[j]);
+                }
+            } finally {
+                stripe.endWrite();
+            }
+        }
+        retireIfSealed(stripe, arena);
+    }
+
+    // Writes the record into the arena and returns its reference, it still has to be indexed
+    private long allocateFromArena(Stripe stripe, Arena arena, int key, byte[] value) {
+        final int size = SlabSegment.recordSize(value.length);
+        if (!fits(stripe, arena, value.length)) {
+            refill(stripe, arena, size);
+        }
+        final int offset = arena.offset;
+        arena.offset += size;
+        final SlabSegment segment = stripe.map.segment(arena.segment);
+        segment.header(offset, key, value.length);
+        segment.write(offset, value);
+        return IntSlabIndex.ref(arena.segment, offset);
+    }
+
+    // Whether a value of the length can be allocated from the arena without refilling it
+    private static boolean fits(Stripe stripe, Arena arena, int length) {
+        return arena.generation == stripe.generation && arena.segment == stripe.current
+                && arena.end - arena.offset >= SlabSegment.recordSize(length);
+    }
+
+    // One attempt to read the keys order[start, end) of the stripe, false if a writer interfered
+    private static boolean getAllRacy(Stripe stripe, int[] keys, byte[][] values, int[] order, long[] refs,
+                                      int start, int end) {
+        final IntSlabMap map = stripe.map;
+        final long stamp = stripe.stamp;
+        if ((stamp & 1) != 0) {
+            return false;
+        }
+        for (int j = start; j < end; j++) {
+            refs[j] = stripe.findRacy(keys[order[j]]);
+        }
+        // The lengths have to be valid before they are used to allocate and copy
+        for (int j = start; j < end; j++) {
+            if (refs[j] != IntSlabIndex.NOT_FOUND && map.lengthRacy(refs[j]) < 0) {
+                return false;
+            }
+        }
+        if (!stripe.validate(stamp)) {
+            return false;
+        }
+        for (int j = start; j < end; j++) {
+            final long ref = refs[j];
+            byte[] value = null;
+            if (ref != IntSlabIndex.NOT_FOUND) {
+                value = new byte[map.lengthRacy(ref)];
+                map.readRacy(ref, value);
+            }
+            values[order[j]] = value;
+        }
+        return stripe.validate(stamp);
+    }
+
+    // Indexes of the first count keys sorted by stripe, the ones of stripe s are at
+    // [starts[s], starts[s + 1]) of the result
+    private int[] groupByStripe(int[] keys, int count, int[] starts) {
+        for (int i = 0; i < count; i++) {
+            starts[stripeIndex(keys[i])]++;
+        }
+        int start = 0;
+        for (int s = 0; s < stripes.length; s++) {
+            final int keysOfStripe = starts[s];
+            starts[s] = start;
+            start += keysOfStripe;
+        }
+        starts[stripes.length] = count;
+        final int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[starts[stripeIndex(keys[i])]++] = i;
+        }
+        // Every start was moved to the start of the next stripe
+        for (int s = stripes.length - 1; s > 0; s--) {
+            starts[s] = starts[s - 1];
+        }
+        starts[0] = 0;
+        return order;
+    }
+
+    private void refill(Stripe stripe, Arena arena, int size) {
+        retire(stripe, arena);
+        final int capacityOfSegment = stripe.map.segment(0).capacity();
+        if (size > capacityOfSegment) {
+            throw new IllegalArgumentException("A value of " + (size - SlabSegment.HEADER_SIZE)
+                    + " bytes doesn't fit into a segment of " + capacityOfSegment + " bytes");
+        }
+        final int maxSize = Math.max(size, ARENA_SIZE);
+        for (int retries = 0;; retries++) {
+            final int current = stripe.current;
+            final int offset = stripe.map.segment(current).claim(size, maxSize);
+            if (offset != -1) {
+                arena.segment = current;
+                arena.offset = offset;
+                arena.end = Math.min(capacityOfSegment, offset + maxSize);
+                arena.generation = stripe.generation;
+                return;
+            }
+            synchronized (stripe) {
+                // Unless another writer has moved the stripe on meanwhile
+                if (stripe.current == current) {
+                    stripe.beginWrite();
+                    try {
+                        if (stripe.map.nextClaimSegment()) {
+                            continue;
+                        }
+                        // Writers about to index the records of their arenas keep segments from
+                        // being compacted for a moment
+                        if (!stripe.map.hasOpenClaims() || retries == MAX_CLAIM_RETRIES) {
+                            throw new IllegalStateException("No segment has room left for a value of "
+                                    + (size - SlabSegment.HEADER_SIZE) + " bytes");
+                        }
+                    } finally {
+                        stripe.endWrite();
+                    }
+                }
+            }
+            // Other writers may wait for the arenas of this one the same way
+            retireSealedArenas();
+            Thread.yield();
+        }
+    }
+
+    // Gives the unused end of the arena back and closes its claim, all records allocated from it
+    // have to be indexed
+    private void retire(Stripe stripe, Arena arena) {
+        // The segment of an arena of an older generation was cleared, nothing to give back
+        if (arena.generation == stripe.generation && arena.segment != -1) {
+            final SlabSegment segment = stripe.map.segment(arena.segment);
+            if (arena.offset < arena.end && !segment.unclaim(arena.offset, arena.end)) {
+                // Scans of the segment see the end as one dead record, the garbage is counted under the lock
+                synchronized (stripe) {
+                    segment.header(arena.offset, 0, arena.end - arena.offset - SlabSegment.HEADER_SIZE);
+                    segment.markDead(arena.offset);
+                }
+            }
+            segment.closeClaim();
+        }
+        arena.segment = -1;
+        arena.offset = arena.end;
+    }
+
+    // An arena of a sealed segment is given up right away, so that the segment can be compacted soon
+    private void retireIfSealed(Stripe stripe, Arena arena) {
+        if (arena.segment != stripe.current) {
+            retire(stripe, arena);
+        }
+    }
+
+    // The records of the arenas of other stripes are all indexed, putAll indexes a stripe at a time
+    private void retireSealedArenas() {
+        final Arena[] arenasOfThread = arenas.get();
+        for (int i = 0; i < stripes.length; i++) {
+            retireIfSealed(stripes[i], arenasOfThread[i]);
+        }
+    }
+
+    private Stripe stripeOf(int key) {
+        return stripes[stripeIndex(key)];
+    }
+
+    private int stripeIndex(int key) {
+        // Different bits of the key than the ones the index of a stripe uses for its slots
+        final int h = Integer.reverse(key * 0x9E3779B9);
+        return (int) (((h & 0xFFFFFFFFL) * stripes.length) >>> 32);
+    }
+
+    private static MethodHandle findFence(String name) throws Exception {
+        return MethodHandles.publicLookup()
+                .findVirtual(sun.misc.Unsafe.class, name, MethodType.methodType(void.class))
+                .bindTo(UnsafeHelper.UNSAFE);
+    }
+
+    private static void loadFence() {
+        try {
+            LOAD_FENCE.invokeExact();
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static void storeFence() {
+        try {
+            STORE_FENCE.invokeExact();
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static final class Stripe {
+
+        final int index;
+        final IntSlabMap map;
+        // Index of the map, the heap index is the one with racy lookups
+        final HeapIntSlabIndex slabIndex;
+        // Odd while a writer changes the map
+        volatile long stamp;
+        // Incremented when the map is cleared, arenas of older generations are gone
+        volatile long generation;
+        // Current segment of the map that arenas are claimed from, updated by endWrite()
+        volatile int current;
+
+        Stripe(int index, IntSlabMap map, HeapIntSlabIndex slabIndex) {
+            this.index = index;
+            this.map = map;
+            this.slabIndex = slabIndex;
+            this.current = map.currentSegment();
+        }
+
+        // Reference of the key for a reader racing with writers, see IntSlabMap.isRacyRef
+        long findRacy(int key) {
+            final long ref = slabIndex.getRacy(key);
+            return map.isRacyRef(ref) ? ref : IntSlabIndex.NOT_FOUND;
+        }
+
+        // Called with the lock of the stripe held
+        void beginWrite() {
+            stamp++;
+            if (LOCK_FREE_READS) {
+                // The odd stamp has to be visible before any change of the map
+                storeFence();
+            }
+        }
+
+        // Called with the lock of the stripe held
+        void endWrite() {
+            // Compaction moves the map on to the next segment too
+            final int segment = map.currentSegment();
+            if (segment != current) {
+                current = segment;
+            }
+            // Volatile write, the changes of the map are visible before the even stamp
+            stamp++;
+        }
+
+        // Whether nothing was written since the stamp was read
+        boolean validate(long stamp) {
+            // The reads of the map must not move after the read of the stamp
+            loadFence();
+            return this.stamp == stamp;
+        }
+
+    }
+
+    // Part of a segment of a stripe that a thread allocates records from, records are
+    // aligned so the end is too
+    private static final class Arena {
+
+        // -1 once retired
+        int segment = -1;
+        int offset;
+        int end;
+        long generation = -1;
+
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets and puts from many threads on a {@link ConcurrentIntSlabMap} and on a
+ * <code>ConcurrentHashMap&lt;Integer, byte[]&gt;</code>. The same workload runs with 1, 2, 4
+ * and as many threads as there are cores, so the rows show how throughput scales.
+ *
+ * Every put stores a value of a random size, so updates mostly append a new record instead of
+ * overwriting the old one in place, and the stripes have to compact the replaced values away.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsPrepend = {"-Xmx8G", "-Xms8G", "-XX:+UseTLAB"})
+@OperationsPerInvocation(ConcurrentSlabMapBenchmark.OPS_PER_INV)
+public class ConcurrentSlabMapBenchmark {
+
+    public static final int OPS_PER_INV = 100;
+    public static final int DEFAULT_NO_OF_SEGMENTS = 16;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random rand = new Random();
+        long total;
+    }
+
+    /**
+     * Gets of the slab map that took the lock of their stripe, all of them if the Unsafe fences of
+     * lock-free reads are not available and none otherwise. Always 0 for CHM.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class ReadCounters {
+        public long lockedReads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lockedReads = 0;
+        }
+    }
+
+    // SLAB and OFFHEAP are ConcurrentIntSlabMaps with segments on and off the heap
+    @Param(value = {"SLAB", "OFFHEAP", "CHM"})
+    private String type;
+
+    @Param(value = {"100000"})
+    private String keys;
+
+    @Param(value = {"10"})
+    private String writePercent;
+
+    private int keyCount;
+    private int writeThreshold;
+    private byte[][] values;
+    private ConcurrentIntSlabMap slabMap;
+    private ConcurrentHashMap<Integer, byte[]> chm;
+    private final boolean lockFreeReads = ConcurrentIntSlabMap.isLockFreeReads();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keyCount = Integer.parseInt(keys);
+        writeThreshold = Integer.parseInt(writePercent);
+        // Values of 1000 to 2000 bytes like the entities of OnheapSlabBenchmark, the initial one
+        // of a key is the value of the same index, later puts pick one at random
+        Random random = new Random(42);
+        values = new byte[keyCount][];
+        long totalSize = 0;
+        for (int i = 0; i < keyCount; i++) {
+            values[i] = new byte[1000 + random.nextInt(1000)];
+            random.nextBytes(values[i]);
+            totalSize += SlabSegment.recordSize(values[i].length);
+        }
+        if ("CHM".equals(type)) {
+            chm = new ConcurrentHashMap<Integer, byte[]>(keyCount);
+        } else {
+            int noOfSegments = Integer.getInteger("noOfSegments", DEFAULT_NO_OF_SEGMENTS);
+            // Twice the average share of a stripe, keys are not spread perfectly evenly
+            long capacityOfSegment = Math.min(Integer.MAX_VALUE - SlabSegment.ALIGNMENT,
+                    2 * totalSize / noOfSegments + 1024 * 1024);
+            slabMap = new ConcurrentIntSlabMap("OFFHEAP".equals(type), keyCount, noOfSegments,
+                    (int) capacityOfSegment);
+        }
+        for (int i = 0; i < keyCount; i++) {
+            put(i, values[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (slabMap != null) {
+            slabMap.destroy();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(1)
+    public void getPut_1Thread(ThreadState state, ReadCounters counters) {
+        getPut(state, counters);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(2)
+    public void getPut_2Threads(ThreadState state, ReadCounters counters) {
+        getPut(state, counters);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(4)
+    public void getPut_4Threads(ThreadState state, ReadCounters counters) {
+        getPut(state, counters);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(Threads.MAX)
+    public void getPut_MaxThreads(ThreadState state, ReadCounters counters) {
+        getPut(state, counters);
+    }
+
+    private void getPut(ThreadState state, ReadCounters counters) {
+        final Random rand = state.rand;
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            int key = rand.nextInt(keyCount);
+            if (rand.nextInt(100) < writeThreshold) {
+                put(key, values[rand.nextInt(keyCount)]);
+            } else {
+                byte[] value = slabMap != null ? slabMap.get(key) : chm.get(key);
+                state.total += value.length;
+                if (slabMap != null && !lockFreeReads) {
+                    counters.lockedReads++;
+                }
+            }
+        }
+    }
+
+    private void put(int key, byte[] value) {
+        if (slabMap != null) {
+            slabMap.put(key, value);
+        } else {
+            chm.put(key, value);
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import java.util.Arrays;
+
+/**
+ * {@link IntSlabIndex} kept in a single <code>long[]</code>, a key word and a reference per slot.
+ * It is rehashed into a new array at once when it grows.
+ */
+final class HeapIntSlabIndex extends IntSlabIndex {
+
+    private long[] table;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    HeapIntSlabIndex(int initialCapacity) {
+        allocate(capacityFor(initialCapacity));
+    }
+
+    @Override
+    long get(int key) {
+        final long keyWord = keyWord(key);
+        final long[] table = this.table;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            final long word = table[slot << 1];
+            if ((word & KEY_MASK) == keyWord) {
+                return table[(slot << 1) + 1];
+            }
+            if (word == 0) {
+                return NOT_FOUND;
+            }
+        }
+    }
+
+    /**
+     * Lookup for readers racing with a writer. It stays in bounds and terminates whatever it sees,
+     * the result is only meaningful if no write happened meanwhile. Takes the mask from the table
+     * it reads and gives up after probing every slot once. The off-heap index has no such lookup,
+     * it frees the memory of its old table while growing.
+     */
+    long getRacy(int key) {
+        final long keyWord = keyWord(key);
+        final long[] table = this.table;
+        final int mask = (table.length >> 1) - 1;
+        int slot = slot(key, mask);
+        for (int probes = 0; probes <= mask; probes++, slot = (slot + 1) & mask) {
+            final long word = table[slot << 1];
+            if ((word & KEY_MASK) == keyWord) {
+                return table[(slot << 1) + 1];
+            }
+            if (word == 0) {
+                break;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    @Override
+    long put(int key, long ref) {
+        final long keyWord = keyWord(key);
+        final long[] table = this.table;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            final int i = slot << 1;
+            final long word = table[i];
+            if ((word & KEY_MASK) == keyWord) {
+                final long old = table[i + 1];
+                table[i + 1] = ref;
+                return old;
+            }
+            if (word == 0) {
+                table[i] = keyWord;
+                table[i + 1] = ref;
+                if (++size > resizeThreshold) {
+                    resize((mask + 1) << 1);
+                }
+                return NOT_FOUND;
+            }
+        }
+    }
+
+    @Override
+    long remove(int key) {
+        final long keyWord = keyWord(key);
+        final long[] table = this.table;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            final int i = slot << 1;
+            final long word = table[i];
+            if ((word & KEY_MASK) == keyWord) {
+                final long old = table[i + 1];
+                shiftBack(slot);
+                size--;
+                return old;
+            }
+            if (word == 0) {
+                return NOT_FOUND;
+            }
+        }
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    int slotCount() {
+        return mask + 1;
+    }
+
+    @Override
+    int slotOf(int key) {
+        final long keyWord = keyWord(key);
+        final long[] table = this.table;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            final long word = table[slot << 1];
+            if ((word & KEY_MASK) == keyWord) {
+                return slot;
+            }
+            if (word == 0) {
+                return -1;
+            }
+        }
+    }
+
+    @Override
+    boolean isUsed(int slot) {
+        return table[slot << 1] != 0;
+    }
+
+    @Override
+    int keyAt(int slot) {
+        return (int) table[slot << 1];
+    }
+
+    @Override
+    long refAt(int slot) {
+        return table[(slot << 1) + 1];
+    }
+
+    @Override
+    int metaAt(int slot) {
+        return (int) (table[slot << 1] >>> META_SHIFT);
+    }
+
+    @Override
+    void metaAt(int slot, int meta) {
+        final int i = slot << 1;
+        table[i] = withMeta(table[i], meta);
+    }
+
+    @Override
+    void clear() {
+        Arrays.fill(table, 0L);
+        size = 0;
+    }
+
+    @Override
+    void destroy() {
+    }
+
+    // Moves the entries after a removed slot back into it when their probe sequence passes it,
+    // so lookups never stop early at the freed slot
+    private void shiftBack(int free) {
+        final long[] table = this.table;
+        for (int slot = (free + 1) & mask; ; slot = (slot + 1) & mask) {
+            final long word = table[slot << 1];
+            if (word == 0) {
+                break;
+            }
+            final int home = slot((int) word, mask);
+            // Moves when "home" is not in the cyclic range (free, slot]
+            if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                table[free << 1] = word;
+                table[(free << 1) + 1] = table[(slot << 1) + 1];
+                free = slot;
+            }
+        }
+        table[free << 1] = 0L;
+        table[(free << 1) + 1] = 0L;
+    }
+
+    private void resize(int capacity) {
+        final long[] oldTable = table;
+        allocate(capacity);
+        final long[] table = this.table;
+        for (int i = 0; i < oldTable.length; i += 2) {
+            final long word = oldTable[i];
+            if (word != 0) {
+                int slot = slot((int) word, mask);
+                while (table[slot << 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot << 1] = word;
+                table[(slot << 1) + 1] = oldTable[i + 1];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity << 1];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+}
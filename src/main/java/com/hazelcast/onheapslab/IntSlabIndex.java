@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+/**
+ * Open-addressing hash index from int keys to record references, with no object per entry.
+ *
+ * Every slot is two longs, the key word and the reference. The key word is 0 for a free
+ * slot, otherwise the key with {@link #USED} set. Collisions are resolved by linear
+ * probing, removal shifts the following entries back so there are no tombstones.
+ *
+ * The top {@value #META_BITS} bits of a key word are free for metadata of the entry, like the
+ * state of an eviction policy. They move with the entry and are 0 for a new entry.
+ *
+ * {@link HeapIntSlabIndex} keeps the slots in a <code>long[]</code>, {@link OffheapIntSlabIndex}
+ * in native memory.
+ */
+abstract class IntSlabIndex {
+
+    static final long NOT_FOUND = -1L;
+
+    static final int META_BITS = 24;
+    static final int META_MASK = (1 << META_BITS) - 1;
+
+    static final long USED = 1L << 32;
+    static final long KEY_MASK = USED | 0xFFFFFFFFL;
+    static final int META_SHIFT = 64 - META_BITS;
+    static final float LOAD_FACTOR = 0.75F;
+    static final int MIN_CAPACITY = 16;
+
+    // Record references are the segment number in the high and the offset in the low int
+    static long ref(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    static int segment(long ref) {
+        return (int) (ref >>> 32);
+    }
+
+    static int offset(long ref) {
+        return (int) ref;
+    }
+
+    abstract long get(int key);
+
+    /**
+     * @return the previous reference of the key, or {@link #NOT_FOUND}
+     */
+    abstract long put(int key, long ref);
+
+    /**
+     * @return the removed reference of the key, or {@link #NOT_FOUND}
+     */
+    abstract long remove(int key);
+
+    abstract int size();
+
+    // Slot access, for going over the entries. Slots change when entries are added or removed.
+
+    /**
+     * @return the number of slots, a power of two
+     */
+    abstract int slotCount();
+
+    /**
+     * @return the slot of the key, or -1
+     */
+    abstract int slotOf(int key);
+
+    abstract boolean isUsed(int slot);
+
+    abstract int keyAt(int slot);
+
+    abstract long refAt(int slot);
+
+    abstract int metaAt(int slot);
+
+    abstract void metaAt(int slot, int meta);
+
+    abstract void clear();
+
+    /**
+     * Frees the memory of the index, it can't be used afterwards.
+     */
+    abstract void destroy();
+
+    static long keyWord(int key) {
+        return USED | (key & 0xFFFFFFFFL);
+    }
+
+    static long withMeta(long word, int meta) {
+        return (word & KEY_MASK) | ((long) (meta & META_MASK) << META_SHIFT);
+    }
+
+    static int slot(int key, int mask) {
+        final int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    static int capacityFor(int expectedSize) {
+        final int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        return Math.max(MIN_CAPACITY, capacity);
+    }
+
+}
@@ -0,0 +1,841 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Primitive <code>int</code> keyed store of <code>byte[]</code> values. Keys are never boxed,
+ * the index is an {@link IntSlabIndex} and the values are copied into {@link SlabSegment}s,
+ * either on the heap or in native memory.
+ *
+ * Records are allocated from the current segment, a full segment is replaced by an empty one.
+ * A value replaced by one with the same record size is overwritten in place, other replaced and
+ * removed values stay in their segment as garbage. {@link #compact(int)} gets that space back:
+ * it copies the live records of the sparsest full segment into the current one, a bounded number
+ * of bytes per call, and the segment is empty again once all its records are copied. With
+ * {@link #setAutoCompaction(boolean)} every put runs such a step as soon as empty segments run low.
+ * A put fails with {@link IllegalStateException} if no segment has room left, unless an eviction
+ * policy is set with {@link #setEvictionPolicy(SlabEvictionPolicy)}. Then the map is a bounded
+ * cache, puts evict entries so that the live records fit into the segments with room to compact.
+ *
+ * A map created by {@link #mapped(File, int, int, int)} keeps its segments in memory-mapped files
+ * and can be opened again from them, by another JVM too, the index is rebuilt from the record
+ * headers. Not thread-safe.
+ *
+ * Full scans go over the records in memory order with a {@link SlabCursor}, without boxing keys
+ * or copying values, and {@link #parallelScan(ForkJoinPool, SlabCursor.Scan)} scans the segments
+ * in parallel.
+ */
+public class IntSlabMap {
+
+    // A full segment is compacted only if at least this part of it is garbage
+    static final int MIN_GARBAGE_PERCENT = 25;
+    // Automatic compaction scans this many bytes per byte written, enough to keep up with the
+    // writes as long as the compacted segments are at least MIN_GARBAGE_PERCENT garbage
+    static final int AUTO_COMPACTION_RATIO = 100 / MIN_GARBAGE_PERCENT;
+
+    private final SlabSegment[] segments;
+    private final IntSlabIndex index;
+    // Stack of the empty segments
+    private final int[] freeSegments;
+    // Entries evicted from every segment
+    private final long[] evictions;
+
+    private int freeCount;
+    private int currentSegment;
+    private long lastSequence;
+    private boolean autoCompaction;
+    // Whether arenas claim from the current segment, see allocateByClaims()
+    private boolean claims;
+    // Segment being compacted and offset of its next record to look at
+    private int compactedSegment = -1;
+    private int compactionOffset;
+    private SlabEvictionPolicy evictionPolicy;
+    private SlabEvictor evictor;
+    private long maxLiveBytes;
+
+    public IntSlabMap(boolean offheap, int capacity, int noOfSegments, int capacityOfSegment) {
+        this(offheap, false, capacity, noOfSegments, capacityOfSegment);
+    }
+
+    /**
+     * @param offheapIndex whether the index is kept in native memory too, see {@link OffheapIntSlabIndex}
+     */
+    public IntSlabMap(boolean offheap, boolean offheapIndex, int capacity, int noOfSegments, int capacityOfSegment) {
+        this(offheap, offheapIndex ? new OffheapIntSlabIndex(capacity) : new HeapIntSlabIndex(capacity),
+                noOfSegments, capacityOfSegment);
+    }
+
+    // For callers that keep a reference to the index, like ConcurrentIntSlabMap for racy lookups
+    IntSlabMap(boolean offheap, IntSlabIndex index, int noOfSegments, int capacityOfSegment) {
+        this(newSegments(offheap, noOfSegments, capacityOfSegment), index);
+        resetSegments();
+    }
+
+    private IntSlabMap(SlabSegment[] segments, IntSlabIndex index) {
+        this.segments = segments;
+        this.index = index;
+        this.freeSegments = new int[segments.length];
+        this.evictions = new long[segments.length];
+    }
+
+    /**
+     * Creates a map whose segments are the files <code>segment-&lt;n&gt;.slab</code> in the
+     * directory, or opens the map again if the files are there already. Reopening takes
+     * a scan of the record headers of all segments to rebuild the index.
+     *
+     * Values are written straight into the mapped files, so the map survives the JVM exiting
+     * or crashing. Call {@link #flush()} to have them survive the machine crashing too.
+     *
+     * @throws IOException if the files can't be mapped, or were created with a different
+     * capacity of segment
+     */
+    public static IntSlabMap mapped(File directory, int capacity, int noOfSegments, int capacityOfSegment)
+            throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        final SlabSegment[] segments = new SlabSegment[noOfSegments];
+        try {
+            for (int i = 0; i < noOfSegments; i++) {
+                segments[i] = SlabSegment.mapped(new File(directory, "segment-" + i + ".slab"), capacityOfSegment);
+            }
+        } catch (IOException e) {
+            for (SlabSegment segment : segments) {
+                if (segment != null) {
+                    segment.destroy();
+                }
+            }
+            throw e;
+        }
+        final IntSlabMap map = new IntSlabMap(segments, new HeapIntSlabIndex(capacity));
+        map.rebuild();
+        return map;
+    }
+
+    /**
+     * Whether puts compact incrementally once at most one segment is left empty, off by default.
+     */
+    public void setAutoCompaction(boolean autoCompaction) {
+        this.autoCompaction = autoCompaction;
+    }
+
+    public boolean isAutoCompaction() {
+        return autoCompaction;
+    }
+
+    /**
+     * Makes the map evict entries chosen by the policy once the live records take more than
+     * {@value #MIN_GARBAGE_PERCENT}% less than the capacity of the segments, less one segment
+     * more, or at least half of the capacity. The rest is left for garbage, eviction turns on
+     * automatic compaction. If a value doesn't fit anyway, all entries of the segment with the
+     * most garbage are evicted at once. <code>null</code>, the default, turns eviction off.
+     */
+    public void setEvictionPolicy(SlabEvictionPolicy evictionPolicy) {
+        this.evictionPolicy = evictionPolicy;
+        if (evictionPolicy == null) {
+            evictor = null;
+            return;
+        }
+        evictor = evictionPolicy.newEvictor();
+        autoCompaction = true;
+        final long capacity = capacityBytes();
+        maxLiveBytes = Math.max(capacity / 2,
+                capacity * (100 - MIN_GARBAGE_PERCENT) / 100 - segments[0].capacity());
+        for (int slot = 0; slot < index.slotCount(); slot++) {
+            if (index.isUsed(slot)) {
+                index.metaAt(slot, evictor.initialMeta());
+            }
+        }
+    }
+
+    public SlabEvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /**
+     * @return the number of entries evicted so far
+     */
+    public long evictions() {
+        long total = 0;
+        for (long count : evictions) {
+            total += count;
+        }
+        return total;
+    }
+
+    public void put(int key, byte[] value) {
+        final long old = index.get(key);
+        if (old != IntSlabIndex.NOT_FOUND) {
+            final SlabSegment segment = segments[IntSlabIndex.segment(old)];
+            final int offset = IntSlabIndex.offset(old);
+            if (SlabSegment.recordSize(segment.length(offset)) == SlabSegment.recordSize(value.length)) {
+                segment.overwrite(offset, value);
+                if (evictor != null) {
+                    access(index.slotOf(key));
+                }
+                return;
+            }
+        }
+        final long ref = allocate(key, value.length);
+        final SlabSegment segment = segments[IntSlabIndex.segment(ref)];
+        segment.write(IntSlabIndex.offset(ref), value);
+        segment.publish();
+        putRef(key, ref);
+        afterAllocate(SlabSegment.recordSize(value.length));
+    }
+
+    /**
+     * Serializes the value with the given output straight into the free space of the current
+     * segment and turns that into the record of the key, there is no intermediate buffer.
+     * If the value doesn't fit, it is serialized again into the next segment.
+     */
+    public void put(int key, Object value, SlabObjectDataOutput out) throws IOException {
+        for (;;) {
+            final SlabSegment segment = segments[currentSegment];
+            final int offset = segment.nextOffset();
+            final int maxLength = segment.maxValueLength();
+            if (maxLength >= 0) {
+                out.init(segment.base(), segment.valueAddress(offset), maxLength);
+                out.writeObject(value);
+                if (!out.isOverflow()) {
+                    segment.allocate(key, out.position());
+                    segment.publish();
+                    putRef(key, IntSlabIndex.ref(currentSegment, offset));
+                    afterAllocate(SlabSegment.recordSize(out.position()));
+                    return;
+                }
+            }
+            // Not even an empty segment holds the value, no other segment does either
+            if (segment.used() == 0) {
+                throw new IllegalArgumentException("The value of key " + key + " doesn't fit into a segment of "
+                        + segment.capacity() + " bytes");
+            }
+            if (!nextSegment() && !(autoCompaction && compact(Integer.MAX_VALUE) > 0)
+                    && !(evictor != null && evictSegment())) {
+                throw new IllegalStateException("No segment has room left for the value of key " + key);
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the value, or <code>null</code> if there is no value for the key
+     */
+    public byte[] get(int key) {
+        final long ref = find(key);
+        if (ref == IntSlabIndex.NOT_FOUND) {
+            return null;
+        }
+        return segments[IntSlabIndex.segment(ref)].read(IntSlabIndex.offset(ref));
+    }
+
+    /**
+     * Positions the view on the stored value of the key instead of copying it.
+     *
+     * @return whether there is a value for the key, the view is left as it was if not
+     */
+    public boolean get(int key, SlabValueView view) {
+        final long ref = find(key);
+        if (ref == IntSlabIndex.NOT_FOUND) {
+            return false;
+        }
+        final SlabSegment segment = segments[IntSlabIndex.segment(ref)];
+        final int offset = IntSlabIndex.offset(ref);
+        view.init(segment.base(), segment.valueAddress(offset), segment.length(offset));
+        return true;
+    }
+
+    // The racy methods are for readers racing with a writer, they stay in bounds whatever they see.
+    // Their results are only meaningful if no write happened meanwhile, see ConcurrentIntSlabMap.
+    // The references come from HeapIntSlabIndex.getRacy and are checked by isRacyRef first.
+
+    boolean isRacyRef(long ref) {
+        final int segment = IntSlabIndex.segment(ref);
+        return segment >= 0 && segment < segments.length;
+    }
+
+    int lengthRacy(long ref) {
+        return segments[IntSlabIndex.segment(ref)].lengthRacy(IntSlabIndex.offset(ref));
+    }
+
+    // The length of the value has to be validated before
+    void readRacy(long ref, byte[] value) {
+        segments[IntSlabIndex.segment(ref)].read(IntSlabIndex.offset(ref), value);
+    }
+
+    public boolean containsKey(int key) {
+        return index.get(key) != IntSlabIndex.NOT_FOUND;
+    }
+
+    /**
+     * @return whether there was a value for the key
+     */
+    public boolean remove(int key) {
+        final long ref = index.remove(key);
+        release(ref);
+        return ref != IntSlabIndex.NOT_FOUND;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public boolean isEmpty() {
+        return index.size() == 0;
+    }
+
+    public void clear() {
+        index.clear();
+        for (SlabSegment segment : segments) {
+            segment.clear();
+            segment.dropClaims();
+        }
+        resetSegments();
+    }
+
+    /**
+     * Runs one step of the compaction. Copies the live records of the full segment with the most
+     * garbage into the current segment until <code>maxBytes</code> bytes of the compacted segment
+     * are looked at, the next step carries on where this one stopped. The compacted segment is
+     * empty again once all its records are copied.
+     *
+     * A segment is only compacted if at least {@value #MIN_GARBAGE_PERCENT}% of it is garbage.
+     * Stored values move, so views on them are not valid anymore after a step.
+     *
+     * @return the bytes of the compacted segments looked at, 0 if there is nothing to compact
+     * or no room left to copy the records to
+     */
+    public int compact(int maxBytes) {
+        int scanned = 0;
+        while (scanned < maxBytes) {
+            if (compactedSegment == -1) {
+                compactedSegment = sparsestSegment();
+                compactionOffset = 0;
+                if (compactedSegment == -1) {
+                    break;
+                }
+                segments[compactedSegment].checkWalkable();
+            }
+            final SlabSegment segment = segments[compactedSegment];
+            final int offset = compactionOffset;
+            if (offset == segment.used()) {
+                segment.clear();
+                freeSegments[freeCount++] = compactedSegment;
+                compactedSegment = -1;
+                continue;
+            }
+            final int length = segment.length(offset);
+            if (segment.isLive(offset)) {
+                final int key = segment.key(offset);
+                final long ref = allocateOrNull(key, length);
+                if (ref == IntSlabIndex.NOT_FOUND) {
+                    break;
+                }
+                final SlabSegment target = segments[IntSlabIndex.segment(ref)];
+                segment.copyValue(offset, target, IntSlabIndex.offset(ref));
+                target.publish();
+                release(index.put(key, ref));
+            }
+            final int size = SlabSegment.recordSize(length);
+            compactionOffset = offset + size;
+            scanned += size;
+        }
+        return scanned;
+    }
+
+    public long capacityBytes() {
+        long capacity = 0;
+        for (SlabSegment segment : segments) {
+            capacity += segment.capacity();
+        }
+        return capacity;
+    }
+
+    /**
+     * @return the bytes of the live records, headers and padding included
+     */
+    public long liveBytes() {
+        long live = 0;
+        for (SlabSegment segment : segments) {
+            live += segment.used() - segment.garbage();
+        }
+        return live;
+    }
+
+    /**
+     * @return the bytes of replaced and removed records that are not compacted yet
+     */
+    public long garbageBytes() {
+        long garbage = 0;
+        for (SlabSegment segment : segments) {
+            garbage += segment.garbage();
+        }
+        return garbage;
+    }
+
+    public int freeSegments() {
+        return freeCount;
+    }
+
+    /**
+     * @return the bytes of all records, live and garbage
+     */
+    public long allocatedBytes() {
+        long allocated = 0;
+        for (SlabSegment segment : segments) {
+            allocated += segment.used();
+        }
+        return allocated;
+    }
+
+    /**
+     * @return the bytes left for new records, in the current segment and the empty ones
+     */
+    public long freeBytes() {
+        long free = 0;
+        for (int i = 0; i < segments.length; i++) {
+            free += freeBytes(i);
+        }
+        return free;
+    }
+
+    /**
+     * @return the bytes that are neither live nor free: garbage, and the ends of full segments
+     * that the next record didn't fit into
+     */
+    public long fragmentedBytes() {
+        long fragmented = 0;
+        for (int i = 0; i < segments.length; i++) {
+            fragmented += fragmentedBytes(i);
+        }
+        return fragmented;
+    }
+
+    public float indexLoadFactor() {
+        return index.size() / (float) index.slotCount();
+    }
+
+    int indexSlotCount() {
+        return index.slotCount();
+    }
+
+    /**
+     * @return a cursor over the live records of all segments
+     */
+    public SlabCursor cursor() {
+        return new SlabCursor(segments, 0, segments.length);
+    }
+
+    /**
+     * @return a cursor over the live records of the segment, from 0 to {@link #segmentCount()} - 1
+     */
+    public SlabCursor cursor(int segment) {
+        if (segment < 0 || segment >= segments.length) {
+            throw new IndexOutOfBoundsException("segment: " + segment + ", segments: " + segments.length);
+        }
+        return new SlabCursor(segments, segment, segment + 1);
+    }
+
+    /**
+     * Runs the scan on a cursor of every segment in the pool, the segments are split in halves
+     * until a task has a single one. The map must not be written to meanwhile.
+     *
+     * @return the sum of the results of the scans
+     */
+    public long parallelScan(ForkJoinPool pool, SlabCursor.Scan scan) {
+        return pool.invoke(new ScanTask(this, scan, 0, segments.length));
+    }
+
+    // For ConcurrentIntSlabMap, whose writers allocate records from arenas of their own. The open
+    // arenas count as allocated and live bytes, and their segments can't be scanned or compacted.
+
+    SlabSegment segment(int segment) {
+        return segments[segment];
+    }
+
+    // Opens the current segment for claims, a segment is sealed when the map moves on to the next one
+    void allocateByClaims() {
+        claims = true;
+        segments[currentSegment].openForClaims();
+    }
+
+    int currentSegment() {
+        return currentSegment;
+    }
+
+    /**
+     * Moves the claims on to an empty segment. The last empty segment is kept for compaction,
+     * claims only move on to it together with the records of the sparsest segments without open
+     * claims, which are compacted into it until another segment is empty.
+     *
+     * A compaction that stopped at a segment with open claims before is carried on first.
+     *
+     * @return false if there is no empty segment, or only the last one and nothing to compact
+     */
+    boolean nextClaimSegment() {
+        compactUntilFree();
+        if (freeCount == 1 && compactedSegment == -1 && sparsestSegment() == -1) {
+            return false;
+        }
+        if (!nextSegment()) {
+            return false;
+        }
+        compactUntilFree();
+        return true;
+    }
+
+    private void compactUntilFree() {
+        while (freeCount == 0 && compact(segments[0].capacity()) > 0) {
+            continue;
+        }
+    }
+
+    // Whether a segment other than the current one has open claims, it can't be compacted yet
+    boolean hasOpenClaims() {
+        for (int i = 0; i < segments.length; i++) {
+            if (i != currentSegment && !segments[i].isWalkable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Indexes a record the caller allocated and wrote, the record it replaces becomes garbage
+    void putRecord(int key, long ref) {
+        putRef(key, ref);
+    }
+
+    // Per segment metrics, see the totals above
+
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    long allocatedBytes(int segment) {
+        return segments[segment].used();
+    }
+
+    long liveBytes(int segment) {
+        return segments[segment].used() - segments[segment].garbage();
+    }
+
+    long freeBytes(int segment) {
+        return isFull(segment) ? 0 : segments[segment].remaining();
+    }
+
+    long fragmentedBytes(int segment) {
+        return segments[segment].garbage() + (isFull(segment) ? segments[segment].remaining() : 0);
+    }
+
+    long evictions(int segment) {
+        return evictions[segment];
+    }
+
+    // Segments in use other than the current one get no more records until they are emptied
+    private boolean isFull(int segment) {
+        return segment != currentSegment && segments[segment].used() > 0;
+    }
+
+    /**
+     * Writes the segments of a mapped map to their files, nothing to do for other maps.
+     */
+    public void flush() {
+        for (SlabSegment segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Frees the segments. The segments of a mapped map are flushed, stay in their files and
+     * are unmapped.
+     */
+    public void destroy() {
+        for (SlabSegment segment : segments) {
+            segment.destroy();
+        }
+        index.destroy();
+    }
+
+    private long allocate(int key, int length) {
+        checkFits(length);
+        long ref = allocateOrNull(key, length);
+        // Out of empty segments, finishing the running compaction may still free one
+        while (ref == IntSlabIndex.NOT_FOUND && autoCompaction && compact(Integer.MAX_VALUE) > 0) {
+            ref = allocateOrNull(key, length);
+        }
+        if (ref == IntSlabIndex.NOT_FOUND && evictor != null && evictSegment()) {
+            ref = allocateOrNull(key, length);
+        }
+        if (ref == IntSlabIndex.NOT_FOUND) {
+            throw new IllegalStateException("No segment has room left for a value of " + length + " bytes");
+        }
+        return ref;
+    }
+
+    private long allocateOrNull(int key, int length) {
+        do {
+            final int offset = segments[currentSegment].allocate(key, length);
+            if (offset != -1) {
+                return IntSlabIndex.ref(currentSegment, offset);
+            }
+        } while (nextSegment());
+        return IntSlabIndex.NOT_FOUND;
+    }
+
+    private void checkFits(int length) {
+        if (SlabSegment.recordSize(length) > segments[0].capacity()) {
+            throw new IllegalArgumentException("A value of " + length + " bytes doesn't fit into a segment of "
+                    + segments[0].capacity() + " bytes");
+        }
+    }
+
+    private static SlabSegment[] newSegments(boolean offheap, int noOfSegments, int capacityOfSegment) {
+        final SlabSegment[] segments = new SlabSegment[noOfSegments];
+        for (int i = 0; i < noOfSegments; i++) {
+            segments[i] = new SlabSegment(offheap, capacityOfSegment);
+        }
+        return segments;
+    }
+
+    // Replaces the current segment with an empty one, false if there is none. An empty current
+    // segment is kept, it isn't in the free segments and would be lost.
+    private boolean nextSegment() {
+        if (freeCount == 0 || segments[currentSegment].used() == 0) {
+            return false;
+        }
+        if (claims) {
+            segments[currentSegment].seal();
+        }
+        currentSegment = freeSegments[--freeCount];
+        segments[currentSegment].sequence(++lastSequence);
+        if (claims) {
+            segments[currentSegment].openForClaims();
+        }
+        return true;
+    }
+
+    private void afterAllocate(int size) {
+        if (evictor != null) {
+            long live = liveBytes();
+            while (live > maxLiveBytes && index.size() > 0) {
+                live -= evict(evictor.victim(index));
+            }
+        }
+        if (autoCompaction && freeCount <= 1) {
+            compact(AUTO_COMPACTION_RATIO * size);
+        }
+    }
+
+    // Lookup that counts as an access for the eviction policy
+    private long find(int key) {
+        if (evictor == null) {
+            return index.get(key);
+        }
+        final int slot = index.slotOf(key);
+        if (slot == -1) {
+            return IntSlabIndex.NOT_FOUND;
+        }
+        access(slot);
+        return index.refAt(slot);
+    }
+
+    private void putRef(int key, long ref) {
+        final long old = index.put(key, ref);
+        release(old);
+        if (evictor != null) {
+            final int slot = index.slotOf(key);
+            if (old == IntSlabIndex.NOT_FOUND) {
+                index.metaAt(slot, evictor.initialMeta());
+            } else {
+                access(slot);
+            }
+        }
+    }
+
+    private void access(int slot) {
+        final int meta = index.metaAt(slot);
+        final int accessed = evictor.onAccess(meta);
+        if (accessed != meta) {
+            index.metaAt(slot, accessed);
+        }
+    }
+
+    // Removes the entry of the slot, returns the size of its record
+    private int evict(int slot) {
+        final long ref = index.remove(index.keyAt(slot));
+        final int size = SlabSegment.recordSize(segments[IntSlabIndex.segment(ref)].length(IntSlabIndex.offset(ref)));
+        release(ref);
+        evictions[IntSlabIndex.segment(ref)]++;
+        return size;
+    }
+
+    // Evicts all entries of the segment being compacted, else of the full segment with the most
+    // garbage, or of the current segment if it is the only one in use, false if all segments are empty
+    private boolean evictSegment() {
+        int victim = compactedSegment;
+        if (victim == -1) {
+            long maxGarbage = -1;
+            for (int i = 0; i < segments.length; i++) {
+                final SlabSegment segment = segments[i];
+                if (i != currentSegment && segment.used() > 0 && segment.garbage() > maxGarbage
+                        && segment.isWalkable()) {
+                    victim = i;
+                    maxGarbage = segment.garbage();
+                }
+            }
+        }
+        if (victim == -1) {
+            if (segments[currentSegment].used() == 0) {
+                return false;
+            }
+            victim = currentSegment;
+        }
+        final SlabSegment segment = segments[victim];
+        segment.checkWalkable();
+        for (int offset = 0; offset < segment.used(); offset += SlabSegment.recordSize(segment.length(offset))) {
+            if (segment.isLive(offset)) {
+                index.remove(segment.key(offset));
+                evictions[victim]++;
+            }
+        }
+        segment.clear();
+        if (victim == compactedSegment) {
+            compactedSegment = -1;
+        }
+        if (victim != currentSegment) {
+            freeSegments[freeCount++] = victim;
+        }
+        return true;
+    }
+
+    // Full segment with the most garbage, -1 if none has enough. Segments with open arenas are skipped.
+    private int sparsestSegment() {
+        int sparsest = -1;
+        long maxGarbage = 0;
+        for (int i = 0; i < segments.length; i++) {
+            final SlabSegment segment = segments[i];
+            final long garbage = segment.garbage();
+            if (i != currentSegment && garbage > maxGarbage
+                    && garbage * 100 >= (long) segment.used() * MIN_GARBAGE_PERCENT && segment.isWalkable()) {
+                sparsest = i;
+                maxGarbage = garbage;
+            }
+        }
+        return sparsest;
+    }
+
+    private void resetSegments() {
+        currentSegment = 0;
+        segments[0].sequence(++lastSequence);
+        compactedSegment = -1;
+        if (claims) {
+            segments[0].openForClaims();
+        }
+        // Handed out in order, segment 1 first
+        freeCount = 0;
+        for (int i = segments.length - 1; i > 0; i--) {
+            freeSegments[freeCount++] = i;
+        }
+    }
+
+    // Indexes the live records of reopened segments, oldest segment first so that newer records
+    // replace older ones of the same key that weren't marked as dead yet
+    private void rebuild() {
+        final Integer[] order = new Integer[segments.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                final long sa = segments[a].sequence();
+                final long sb = segments[b].sequence();
+                return sa < sb ? -1 : (sa == sb ? 0 : 1);
+            }
+        });
+        index.clear();
+        freeCount = 0;
+        int newest = -1;
+        for (int i = order.length - 1; i >= 0; i--) {
+            if (segments[order[i]].used() == 0) {
+                freeSegments[freeCount++] = order[i];
+            }
+        }
+        for (int s : order) {
+            final SlabSegment segment = segments[s];
+            lastSequence = Math.max(lastSequence, segment.sequence());
+            if (segment.used() == 0) {
+                continue;
+            }
+            newest = s;
+            for (int offset = 0; offset < segment.used(); offset += SlabSegment.recordSize(segment.length(offset))) {
+                if (segment.isLive(offset)) {
+                    release(index.put(segment.key(offset), IntSlabIndex.ref(s, offset)));
+                }
+            }
+        }
+        // Carry on filling the newest segment
+        if (newest != -1) {
+            currentSegment = newest;
+        } else {
+            resetSegments();
+        }
+    }
+
+    private void release(long ref) {
+        if (ref != IntSlabIndex.NOT_FOUND) {
+            segments[IntSlabIndex.segment(ref)].markDead(IntSlabIndex.offset(ref));
+        }
+    }
+
+    private static final class ScanTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IntSlabMap map;
+        private final SlabCursor.Scan scan;
+        private final int fromSegment;
+        private final int toSegment;
+
+        ScanTask(IntSlabMap map, SlabCursor.Scan scan, int fromSegment, int toSegment) {
+            this.map = map;
+            this.scan = scan;
+            this.fromSegment = fromSegment;
+            this.toSegment = toSegment;
+        }
+
+        @Override
+        protected Long compute() {
+            if (toSegment - fromSegment <= 1) {
+                return fromSegment < toSegment ? scan.scan(map.cursor(fromSegment)) : 0L;
+            }
+            final int middle = (fromSegment + toSegment) >>> 1;
+            final ScanTask high = new ScanTask(map, scan, middle, toSegment);
+            high.fork();
+            final long low = new ScanTask(map, scan, fromSegment, middle).compute();
+            return low + high.join();
+        }
+
+    }
+
+}
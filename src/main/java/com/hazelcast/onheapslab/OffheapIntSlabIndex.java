@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import com.hazelcast.nio.UnsafeHelper;
+
+/**
+ * {@link IntSlabIndex} kept in native memory, nothing of it is on the heap but the object itself.
+ *
+ * It grows without a pause to rehash everything. A table twice as large is allocated and new
+ * entries go there, while every put and remove moves up to {@value #MIGRATION_STEP} slots worth
+ * of entries from the old table. Lookups look into both tables until the old one is empty and
+ * freed. The slots of the old table follow the ones of the new table in the slot numbers, with
+ * unused slots after them to keep the count a power of two.
+ *
+ * The old table is freed while readers could still be looking into it, so there are no racy reads.
+ */
+final class OffheapIntSlabIndex extends IntSlabIndex {
+
+    // Slots of the old table moved or skipped per update while growing. Growing doubles the
+    // capacity, so the old table is empty long before the new one is full again.
+    static final int MIGRATION_STEP = 16;
+    // Keeps the slot numbers in an int while growing
+    static final int MAX_CAPACITY = 1 << 29;
+
+    private static final sun.misc.Unsafe UNSAFE = UnsafeHelper.UNSAFE;
+    private static final int SLOT_SIZE = 16;
+
+    private long address;
+    private int mask;
+    private int resizeThreshold;
+    // Entries of both tables
+    private int size;
+
+    // Table being emptied into the new one, 0 if not growing
+    private long oldAddress;
+    private int oldMask;
+    private int oldSize;
+    private int migrationSlot;
+
+    OffheapIntSlabIndex(int initialCapacity) {
+        if (!UnsafeHelper.UNSAFE_AVAILABLE) {
+            throw new IllegalStateException("Off-heap index needs sun.misc.Unsafe");
+        }
+        allocate(Math.min(MAX_CAPACITY, capacityFor(initialCapacity)));
+    }
+
+    @Override
+    long get(int key) {
+        final long keyWord = keyWord(key);
+        long slot = find(address, mask, key, keyWord);
+        if (slot == 0 && oldAddress != 0) {
+            slot = find(oldAddress, oldMask, key, keyWord);
+        }
+        return slot != 0 ? UNSAFE.getLong(slot + 8) : NOT_FOUND;
+    }
+
+    @Override
+    long put(int key, long ref) {
+        migrate();
+        final long keyWord = keyWord(key);
+        long slot = find(address, mask, key, keyWord);
+        if (slot != 0) {
+            final long old = UNSAFE.getLong(slot + 8);
+            UNSAFE.putLong(slot + 8, ref);
+            return old;
+        }
+        // One slot stays free, so probing always ends
+        if (size - oldSize == mask) {
+            throw new IllegalStateException("Off-heap index is full with " + size + " entries");
+        }
+        long word = keyWord;
+        long old = NOT_FOUND;
+        if (oldAddress != 0) {
+            slot = find(oldAddress, oldMask, key, keyWord);
+            if (slot != 0) {
+                // Moves to the new table right away, with its metadata
+                word = UNSAFE.getLong(slot);
+                old = UNSAFE.getLong(slot + 8);
+                removeOld(slot);
+                size--;
+            }
+        }
+        insert(word, ref);
+        if (++size - oldSize > resizeThreshold) {
+            grow();
+        }
+        return old;
+    }
+
+    @Override
+    long remove(int key) {
+        migrate();
+        final long keyWord = keyWord(key);
+        long slot = find(address, mask, key, keyWord);
+        if (slot != 0) {
+            final long old = UNSAFE.getLong(slot + 8);
+            shiftBack(address, mask, (int) ((slot - address) / SLOT_SIZE));
+            size--;
+            return old;
+        }
+        if (oldAddress != 0) {
+            slot = find(oldAddress, oldMask, key, keyWord);
+            if (slot != 0) {
+                final long old = UNSAFE.getLong(slot + 8);
+                removeOld(slot);
+                size--;
+                return old;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    int slotCount() {
+        return oldAddress != 0 ? (mask + 1) << 1 : mask + 1;
+    }
+
+    @Override
+    int slotOf(int key) {
+        final long keyWord = keyWord(key);
+        long slot = find(address, mask, key, keyWord);
+        if (slot != 0) {
+            return (int) ((slot - address) / SLOT_SIZE);
+        }
+        if (oldAddress != 0) {
+            slot = find(oldAddress, oldMask, key, keyWord);
+            if (slot != 0) {
+                return mask + 1 + (int) ((slot - oldAddress) / SLOT_SIZE);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    boolean isUsed(int slot) {
+        final long a = slotAddress(slot);
+        return a != 0 && UNSAFE.getLong(a) != 0;
+    }
+
+    @Override
+    int keyAt(int slot) {
+        return (int) UNSAFE.getLong(slotAddress(slot));
+    }
+
+    @Override
+    long refAt(int slot) {
+        return UNSAFE.getLong(slotAddress(slot) + 8);
+    }
+
+    @Override
+    int metaAt(int slot) {
+        return (int) (UNSAFE.getLong(slotAddress(slot)) >>> META_SHIFT);
+    }
+
+    @Override
+    void metaAt(int slot, int meta) {
+        final long a = slotAddress(slot);
+        UNSAFE.putLong(a, withMeta(UNSAFE.getLong(a), meta));
+    }
+
+    @Override
+    void clear() {
+        freeOld();
+        UNSAFE.setMemory(address, (long) (mask + 1) * SLOT_SIZE, (byte) 0);
+        size = 0;
+    }
+
+    @Override
+    void destroy() {
+        freeOld();
+        if (address != 0) {
+            UNSAFE.freeMemory(address);
+            address = 0;
+        }
+    }
+
+    /**
+     * @return the bytes of native memory taken by the tables
+     */
+    long capacityBytes() {
+        return (long) (mask + 1) * SLOT_SIZE + (oldAddress != 0 ? (long) (oldMask + 1) * SLOT_SIZE : 0);
+    }
+
+    boolean isGrowing() {
+        return oldAddress != 0;
+    }
+
+    // Address of the slot of the key in the table, 0 if it isn't there
+    private static long find(long table, int mask, int key, long keyWord) {
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            final long a = table + (long) slot * SLOT_SIZE;
+            final long word = UNSAFE.getLong(a);
+            if ((word & KEY_MASK) == keyWord) {
+                return a;
+            }
+            if (word == 0) {
+                return 0;
+            }
+        }
+    }
+
+    // Into the new table, the key must not be in it
+    private void insert(long word, long ref) {
+        int slot = slot((int) word, mask);
+        long a = address + (long) slot * SLOT_SIZE;
+        while (UNSAFE.getLong(a) != 0) {
+            slot = (slot + 1) & mask;
+            a = address + (long) slot * SLOT_SIZE;
+        }
+        UNSAFE.putLong(a, word);
+        UNSAFE.putLong(a + 8, ref);
+    }
+
+    private long slotAddress(int slot) {
+        if (slot <= mask) {
+            return address + (long) slot * SLOT_SIZE;
+        }
+        final int oldSlot = slot - mask - 1;
+        return oldAddress != 0 && oldSlot <= oldMask ? oldAddress + (long) oldSlot * SLOT_SIZE : 0;
+    }
+
+    private void grow() {
+        if (mask + 1 == MAX_CAPACITY) {
+            return;
+        }
+        // Doesn't happen with the migration keeping up, but the old table must be empty first
+        while (oldAddress != 0) {
+            migrate();
+        }
+        oldAddress = address;
+        oldMask = mask;
+        oldSize = size;
+        migrationSlot = 0;
+        allocate((mask + 1) << 1);
+    }
+
+    // Moves the entries of up to MIGRATION_STEP slots of the old table to the new one. Removing an
+    // entry shifts later ones back, maybe into slots already passed, so the scan wraps around
+    // until the old table is empty.
+    private void migrate() {
+        if (oldAddress == 0) {
+            return;
+        }
+        for (int i = 0; i < MIGRATION_STEP && oldSize > 0; i++) {
+            final long a = oldAddress + (long) migrationSlot * SLOT_SIZE;
+            final long word = UNSAFE.getLong(a);
+            if (word != 0) {
+                insert(word, UNSAFE.getLong(a + 8));
+                // Shifting back may fill the slot again, it is looked at once more
+                removeOld(a);
+            } else {
+                migrationSlot = (migrationSlot + 1) & oldMask;
+            }
+        }
+        if (oldSize == 0) {
+            freeOld();
+        }
+    }
+
+    private void removeOld(long slotAddress) {
+        shiftBack(oldAddress, oldMask, (int) ((slotAddress - oldAddress) / SLOT_SIZE));
+        oldSize--;
+    }
+
+    private void freeOld() {
+        if (oldAddress != 0) {
+            UNSAFE.freeMemory(oldAddress);
+            oldAddress = 0;
+            oldSize = 0;
+        }
+    }
+
+    // Same as the one of HeapIntSlabIndex
+    private static void shiftBack(long table, int mask, int free) {
+        for (int slot = (free + 1) & mask; ; slot = (slot + 1) & mask) {
+            final long a = table + (long) slot * SLOT_SIZE;
+            final long word = UNSAFE.getLong(a);
+            if (word == 0) {
+                break;
+            }
+            final int home = slot((int) word, mask);
+            if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                final long f = table + (long) free * SLOT_SIZE;
+                UNSAFE.putLong(f, word);
+                UNSAFE.putLong(f + 8, UNSAFE.getLong(a + 8));
+                free = slot;
+            }
+        }
+        final long f = table + (long) free * SLOT_SIZE;
+        UNSAFE.putLong(f, 0L);
+        UNSAFE.putLong(f + 8, 0L);
+    }
+
+    private void allocate(int capacity) {
+        final long bytes = (long) capacity * SLOT_SIZE;
+        address = UNSAFE.allocateMemory(bytes);
+        UNSAFE.setMemory(address, bytes, (byte) 0);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+}
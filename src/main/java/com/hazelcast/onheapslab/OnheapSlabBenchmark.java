@@ -23,21 +23,35 @@ import com.hazelcast.nio.serialization.DataSerializableFactory;
 import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 import com.hazelcast.nio.serialization.SerializationService;
 import com.hazelcast.nio.serialization.SerializationServiceBuilder;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
 
+import javax.management.ObjectName;
+import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 @State(Scope.Benchmark)
 @Fork(jvmArgsPrepend = {"-Xmx25G", "-Xms15G", "-XX:+UseTLAB", "-XX:+AlwaysPreTouch"})
@@ -48,40 +62,88 @@ public class OnheapSlabBenchmark {
     public static final int DEFAULT_NO_OF_SEGMENTS = 6;
     public static final int DEFAULT_CAPACITY_PER_SEGMENT = 1024 * 1024 * 1024;
 
+    private static final int PAYLOAD_POOL_SIZE = 64 * 1024;
+
     private final Random random = new Random();
 
     private SerializationService serializationService;
 
-    @Param(value = {"SLAB", "OFFHEAP", "JDK"})
+    // PRIMITIVE is an IntSlabMap, no boxed keys and no on-heap index objects.
+    // Its segments are on the heap unless run with "-DprimitiveOffheap=true".
+    // MAPPED is an IntSlabMap whose segments are memory-mapped files in "-DmappedDirectory",
+    // a new temporary directory that is deleted afterwards by default.
+    // CONCURRENT is a ConcurrentIntSlabMap with a stripe per segment, CONCURRENT_ARENA the same
+    // with allocation arenas of the writers. Their segments are where the ones of PRIMITIVE are.
+    @Param(value = {"SLAB", "OFFHEAP", "JDK", "PRIMITIVE", "MAPPED", "CONCURRENT", "CONCURRENT_ARENA"})
     private String type;
 
     private Map<Integer, byte[]> map;
+    private IntSlabMap intMap;
+    private ConcurrentIntSlabMap concurrentMap;
+    private SlabObjectDataOutput slabOutput;
+    private SlabObjectDataInput slabInput;
+    private final SlabValueView view = new SlabValueView();
+    private File temporaryDirectory;
+    private ObjectName statsName;
+    // Only set by OnheapSlabCompressionBenchmark
+    private SlabCompressor compressor;
+    // Entities copy their bytes from a random offset of the pool, all zeros if there is none
+    private byte[] payloadPool;
 
     int opsPerInvocation;
 
     @Setup(Level.Trial)
-    public void benchmarkSetup(BenchmarkParams params) {
+    public void benchmarkSetup(Operations operations) {
         serializationService = new SerializationServiceBuilder()
                 .addDataSerializableFactory(1000, new EntityDataSerializableFactory())
                 .setAllowUnsafe(true).setUseNativeByteOrder(true).build();
-        map = createMap();
-        if (params != null) {
-            opsPerInvocation = params.getOpsPerInvocation();
+        opsPerInvocation = operations.perInvocation;
+        if ("PRIMITIVE".equals(type) || "MAPPED".equals(type)) {
+            intMap = "MAPPED".equals(type) ? createMappedMap() : createIntMap();
+            slabOutput = new SlabObjectDataOutput(serializationService);
+            slabInput = new SlabObjectDataInput(serializationService);
+            statsName = SlabMapStats.register(intMap, type);
+        } else if ("CONCURRENT".equals(type) || "CONCURRENT_ARENA".equals(type)) {
+            concurrentMap = new ConcurrentIntSlabMap(Boolean.getBoolean("primitiveOffheap"),
+                    "CONCURRENT_ARENA".equals(type), opsPerInvocation + 100, getNoOfSegmets(), getCapacityOfSegment());
         } else {
-            opsPerInvocation = DEFAULT_OPERATIONS_PER_INVOCATION;
+            map = createMap();
         }
     }
 
     @TearDown(Level.Trial)
     public void benchmarkTeardown() {
-        if (map instanceof SlapMap) {
-            ((SlapMap) map).destroy();
+        Map<Integer, byte[]> store = map instanceof CompressingMap ? ((CompressingMap) map).getDelegate() : map;
+        if (store instanceof SlapMap) {
+            ((SlapMap) store).destroy();
+        }
+        if (intMap != null) {
+            SlabMapStats.unregister(statsName);
+            intMap.destroy();
+        }
+        if (concurrentMap != null) {
+            concurrentMap.destroy();
+        }
+        if (temporaryDirectory != null) {
+            for (File file : temporaryDirectory.listFiles()) {
+                file.delete();
+            }
+            temporaryDirectory.delete();
         }
     }
 
     @TearDown(Level.Iteration)
     public void teardown() {
-        map.clear();
+        if (intMap != null) {
+            intMap.clear();
+        } else if (concurrentMap != null) {
+            concurrentMap.clear();
+        } else {
+            map.clear();
+        }
+        if (compressor != null) {
+            compressor.resetStatistics();
+        }
     }
 
     public Map<Integer, byte[]> createMap() {
@@ -98,6 +160,26 @@ public class OnheapSlabBenchmark {
         return map;
     }
 
+    public IntSlabMap createIntMap() {
+        return new IntSlabMap(Boolean.getBoolean("primitiveOffheap"), opsPerInvocation + 100,
+                getNoOfSegmets(), getCapacityOfSegment());
+    }
+
+    public IntSlabMap createMappedMap() {
+        try {
+            String directory = System.getProperty("mappedDirectory");
+            if (directory == null) {
+                temporaryDirectory = File.createTempFile("onheapslab", "");
+                temporaryDirectory.delete();
+                directory = temporaryDirectory.getPath();
+            }
+            return IntSlabMap.mapped(new File(directory), opsPerInvocation + 100,
+                    getNoOfSegmets(), getCapacityOfSegment());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private int getNoOfSegmets() {
         return Integer.getInteger("noOfSegments", DEFAULT_NO_OF_SEGMENTS);
     }
@@ -107,7 +189,10 @@ public class OnheapSlabBenchmark {
     }
 
     @Benchmark
-    public long testInternal() {
+    public long testInternal(MemoryCounters counters) {
+        if (intMap != null || concurrentMap != null) {
+            return counters.update(this, testInternalPrimitive());
+        }
         long h = 0;
         for (int i = 0; i < opsPerInvocation; i++) {
             byte[] entity = buildEntity();
@@ -115,24 +200,374 @@ public class OnheapSlabBenchmark {
             byte[] e = map.get(i);
             h += e.length;
         }
+        return counters.update(this, h);
+    }
+
+    private long testInternalPrimitive() {
+        long h = 0;
+        for (int i = 0; i < opsPerInvocation; i++) {
+            byte[] entity = buildEntity();
+            h += putGet(i, entity);
+        }
         return h;
     }
 
-    public static void main(String[] args) {
+    /**
+     * Same as {@link #testInternal(MemoryCounters)} with several writers putting and getting keys
+     * of their own, the rows show how the writes scale. CONCURRENT and CONCURRENT_ARENA are
+     * thread-safe, the other types put and get holding the lock of the benchmark.
+     *
+     * Every iteration is a single invocation per writer. The writers split the operations of
+     * testInternal between them, so the map ends up with as many entries as after testInternal
+     * whatever the number of writers. The score is the time a writer takes for its share, all
+     * writers together do the same work in every row, so falling times mean that the writes scale.
+     */
+    @Benchmark
+    @BenchmarkMode({ Mode.SingleShotTime })
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    @Threads(1)
+    public long testInternalWriters_1Thread(Writer writer) {
+        return testInternalWriters(writer);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.SingleShotTime })
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    @Threads(2)
+    public long testInternalWriters_2Threads(Writer writer) {
+        return testInternalWriters(writer);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.SingleShotTime })
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    @Threads(4)
+    public long testInternalWriters_4Threads(Writer writer) {
+        return testInternalWriters(writer);
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.SingleShotTime })
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    @Threads(Threads.MAX)
+    public long testInternalWriters_MaxThreads(Writer writer) {
+        return testInternalWriters(writer);
+    }
+
+    private long testInternalWriters(Writer writer) {
+        long h = 0;
+        for (int i = 0; i < writer.keys; i++) {
+            byte[] entity = buildEntity(writer.random);
+            int key = writer.firstKey + i;
+            if (concurrentMap != null) {
+                concurrentMap.put(key, entity);
+                h += concurrentMap.get(key).length;
+            } else {
+                synchronized (this) {
+                    h += putGet(key, entity);
+                }
+            }
+        }
+        if (concurrentMap != null) {
+            concurrentMap.releaseArenas();
+        }
+        return h;
+    }
+
+    private int putGet(int key, byte[] entity) {
+        if (intMap != null) {
+            intMap.put(key, compress(entity));
+            return decompress(intMap.get(key)).length;
+        } else if (concurrentMap != null) {
+            concurrentMap.put(key, compress(entity));
+            return decompress(concurrentMap.get(key)).length;
+        }
+        map.put(key, entity);
+        return map.get(key).length;
+    }
+
+    // testInternal serializing the entities straight into segment memory, see OnheapSlabViewBenchmark
+    long testInternalZeroCopy() throws IOException {
+        long h = 0;
+        for (int i = 0; i < opsPerInvocation; i++) {
+            intMap.put(i, newEntity(), slabOutput);
+            byte[] e = intMap.get(i);
+            h += e.length;
+        }
+        return h;
+    }
+
+    /**
+     * Reads and deserializes entities, each value is copied into a byte[] first.
+     */
+    @Benchmark
+    public long testReadOnly(Prefill prefill, MemoryCounters counters) throws IOException {
+        return counters.update(this, testReadOnly(prefill.keys));
+    }
+
+    long testReadOnly(int keys) throws IOException {
+        long h = 0;
+        for (int i = 0; i < opsPerInvocation; i++) {
+            h += readCopy(i % keys).foo.length;
+        }
+        return h;
+    }
+
+    // testReadOnly deserializing the entities straight from segment memory, see OnheapSlabViewBenchmark
+    long testReadOnlyView(int keys) throws IOException {
+        long h = 0;
+        for (int i = 0; i < opsPerInvocation; i++) {
+            h += readView(i % keys).foo.length;
+        }
+        return h;
+    }
+
+    /**
+     * One put of a new entity for every seven reads.
+     */
+    @Benchmark
+    public long testMixed(Prefill prefill, MemoryCounters counters) throws IOException {
+        return counters.update(this, testMixed(prefill.keys));
+    }
+
+    long testMixed(int keys) throws IOException {
+        long h = 0;
+        for (int i = 0; i < opsPerInvocation; i++) {
+            int key = i % keys;
+            if ((i & 7) == 0) {
+                write(key);
+            } else {
+                h += readCopy(key).foo.length;
+            }
+        }
+        return h;
+    }
+
+    // testMixed with the reads of testReadOnlyView
+    long testMixedView(int keys) throws IOException {
+        long h = 0;
+        for (int i = 0; i < opsPerInvocation; i++) {
+            int key = i % keys;
+            if ((i & 7) == 0) {
+                write(key);
+            } else {
+                h += readView(key).foo.length;
+            }
+        }
+        return h;
+    }
+
+    // Empties the map and puts a quarter as many keys as the operations of an invocation
+    int prefill() {
+        int keys = Math.max(1, opsPerInvocation / 4);
+        teardown();
+        for (int i = 0; i < keys; i++) {
+            write(i);
+        }
+        return keys;
+    }
+
+    // Stores the values compressed from now on, the Map types through a CompressingMap. The
+    // entities get the bytes of the payload, see OnheapSlabCompressionBenchmark.
+    void compressValues(String payload) {
+        payloadPool = createPayloadPool(payload);
+        compressor = new SlabCompressor();
+        if (map != null) {
+            map = new CompressingMap(map, compressor);
+        }
+    }
+
+    private void write(int key) {
+        if (intMap != null) {
+            intMap.put(key, compress(buildEntity()));
+        } else if (concurrentMap != null) {
+            concurrentMap.put(key, compress(buildEntity()));
+        } else {
+            map.put(key, buildEntity());
+        }
+    }
+
+    private Entity readCopy(int key) throws IOException {
+        byte[] bytes = intMap != null ? decompress(intMap.get(key))
+                : concurrentMap != null ? decompress(concurrentMap.get(key)) : map.get(key);
+        return serializationService.createObjectDataInput(bytes).readObject();
+    }
+
+    private Entity readView(int key) throws IOException {
+        intMap.get(key, view);
+        return slabInput.init(view).readObject();
+    }
+
+    // The Map types compress in their CompressingMap, these are for the other types
+    private byte[] compress(byte[] value) {
+        return compressor != null ? compressor.compress(value) : value;
+    }
+
+    private byte[] decompress(byte[] block) {
+        return compressor != null ? compressor.decompress(block) : block;
+    }
+
+    /**
+     * Memory of the map at the end of the last invocation of an iteration, reported by JMH next to
+     * the throughput. The slab metrics are the ones of {@link SlabMapStats} and only set for
+     * PRIMITIVE and MAPPED, the used heap is set for all types. With compression the raw and the
+     * stored bytes of the values put in the iteration and the bytes saved by the entries of the
+     * map are set, the saving estimated from the mean saving per value put.
+     *
+     * JMH divides every counter by the time of the iteration, so only the ratios of the counters
+     * mean something: liveBytes divided by allocatedBytes is the part of the allocated bytes that
+     * is live, indexEntries divided by indexSlots the load of the index, storedBytes divided by
+     * rawBytes the compression ratio and savedBytes divided by heapUsedBytes the heap saved by
+     * compression.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class MemoryCounters {
+
+        public long allocatedBytes;
+        public long liveBytes;
+        public long freeBytes;
+        public long fragmentedBytes;
+        public long indexEntries;
+        public long indexSlots;
+        public long evictions;
+        public long heapUsedBytes;
+        public long rawBytes;
+        public long storedBytes;
+        public long savedBytes;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            allocatedBytes = 0;
+            liveBytes = 0;
+            freeBytes = 0;
+            fragmentedBytes = 0;
+            indexEntries = 0;
+            indexSlots = 0;
+            evictions = 0;
+            heapUsedBytes = 0;
+            rawBytes = 0;
+            storedBytes = 0;
+            savedBytes = 0;
+        }
+
+        /**
+         * @return the result of the benchmark, to update the counters in its return statement
+         */
+        long update(OnheapSlabBenchmark benchmark, long result) {
+            final IntSlabMap map = benchmark.intMap;
+            if (map != null) {
+                allocatedBytes = map.allocatedBytes();
+                liveBytes = map.liveBytes();
+                freeBytes = map.freeBytes();
+                fragmentedBytes = map.fragmentedBytes();
+                indexEntries = map.size();
+                indexSlots = map.indexSlotCount();
+                evictions = map.evictions();
+            }
+            heapUsedBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            final SlabCompressor compressor = benchmark.compressor;
+            final long puts = compressor != null ? compressor.compressedCount() + compressor.skippedCount() : 0;
+            if (puts > 0) {
+                final int size = map != null ? map.size()
+                        : benchmark.concurrentMap != null ? benchmark.concurrentMap.size() : benchmark.map.size();
+                rawBytes = compressor.rawBytes();
+                storedBytes = compressor.storedBytes();
+                savedBytes = (long) ((compressor.rawBytes() - compressor.storedBytes()) / (double) puts * size);
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * Operations per invocation of the running benchmark. A state of its own because JMH 0.9
+     * can't generate the setup of a state that takes {@link BenchmarkParams} and is injected
+     * into another state, like the benchmark into {@link Prefill}.
+     */
+    @State(Scope.Benchmark)
+    public static class Operations {
+
+        int perInvocation = DEFAULT_OPERATIONS_PER_INVOCATION;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkParams params) {
+            perInvocation = params.getOpsPerInvocation();
+        }
+
+    }
+
+    /**
+     * Map of the read and mixed rows, filled with a quarter as many keys as the operations of an
+     * invocation before every invocation. Only those rows inject it, the others start empty.
+     */
+    @State(Scope.Thread)
+    public static class Prefill {
+
+        int keys;
+
+        @Setup(Level.Invocation)
+        public void prefill(OnheapSlabBenchmark benchmark) {
+            keys = benchmark.prefill();
+        }
+
+    }
+
+    /**
+     * A writer of the testInternalWriters rows, with keys and a random of its own. The keys of
+     * testInternal are split up between the writers, every writer puts each of its keys once.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+
+        final Random random = new Random();
+        int firstKey;
+        int keys;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            final int writers = threadParams.getThreadCount();
+            final int index = threadParams.getThreadIndex();
+            // The first writers put one key more than the others if the keys don't split up evenly
+            final int remainder = DEFAULT_OPERATIONS_PER_INVOCATION % writers;
+            keys = DEFAULT_OPERATIONS_PER_INVOCATION / writers + (index < remainder ? 1 : 0);
+            firstKey = index * (DEFAULT_OPERATIONS_PER_INVOCATION / writers) + Math.min(index, remainder);
+        }
+
+    }
+
+    // A benchmark of the type without compression, for the benchmarks that run rows of this one
+    static OnheapSlabBenchmark ofType(String type) {
         OnheapSlabBenchmark benchmark = new OnheapSlabBenchmark();
-        benchmark.type = "SLAB";
-        benchmark.benchmarkSetup(null);
+        benchmark.type = type;
+        return benchmark;
+    }
+
+    public static void main(String[] args) {
+        OnheapSlabBenchmark benchmark = ofType("SLAB");
+        benchmark.benchmarkSetup(new Operations());
         for (int i = 0; i < 100; i++) {
-            benchmark.testInternal();
+            benchmark.testInternal(new MemoryCounters());
             benchmark.teardown();
         }
         benchmark.benchmarkTeardown();
     }
 
     private byte[] buildEntity() {
+        return buildEntity(random);
+    }
+
+    private byte[] buildEntity(Random random) {
         try {
-            Entity entity = new Entity();
-            entity.foo = new byte[1000 + random.nextInt(1000)];
+            Entity entity = newEntity(random);
             BufferObjectDataOutput objectDataOutput = serializationService.createObjectDataOutput(2100);
             objectDataOutput.writeObject(entity);
             byte[] buffer = objectDataOutput.getBuffer();
@@ -145,6 +580,48 @@ public class OnheapSlabBenchmark {
         }
     }
 
+    private Entity newEntity() {
+        return newEntity(random);
+    }
+
+    private Entity newEntity(Random random) {
+        Entity entity = new Entity();
+        entity.foo = new byte[1000 + random.nextInt(1000)];
+        if (payloadPool != null) {
+            System.arraycopy(payloadPool, random.nextInt(PAYLOAD_POOL_SIZE - entity.foo.length),
+                    entity.foo, 0, entity.foo.length);
+        }
+        return entity;
+    }
+
+    private static byte[] createPayloadPool(String payload) {
+        Random random = new Random(42);
+        if ("ZEROS".equals(payload)) {
+            return null;
+        } else if ("RANDOM".equals(payload)) {
+            byte[] pool = new byte[PAYLOAD_POOL_SIZE];
+            random.nextBytes(pool);
+            return pool;
+        } else if ("COMPRESSIBLE".equals(payload)) {
+            // Text of 64 made up words, repeats about as often as field names and values of real records
+            String[] words = new String[64];
+            char[] letters = new char[10];
+            for (int i = 0; i < words.length; i++) {
+                int length = 2 + random.nextInt(letters.length - 1);
+                for (int j = 0; j < length; j++) {
+                    letters[j] = (char) ('a' + random.nextInt(26));
+                }
+                words[i] = new String(letters, 0, length);
+            }
+            StringBuilder text = new StringBuilder(PAYLOAD_POOL_SIZE + 16);
+            while (text.length() < PAYLOAD_POOL_SIZE) {
+                text.append(words[random.nextInt(words.length)]).append(random.nextInt(10) == 0 ? ". " : " ");
+            }
+            return Arrays.copyOf(text.toString().getBytes(StandardCharsets.US_ASCII), PAYLOAD_POOL_SIZE);
+        }
+        throw new RuntimeException("Unknown payload " + payload);
+    }
+
     private static final class Entity
             implements IdentifiedDataSerializable {
 
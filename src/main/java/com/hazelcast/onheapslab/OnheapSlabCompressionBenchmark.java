@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+
+/**
+ * testInternal, testReadOnly and testMixed of {@link OnheapSlabBenchmark} with the values
+ * stored compressed by a {@link SlabCompressor}, the Map types through a {@link CompressingMap}.
+ * The baselines are the rows of OnheapSlabBenchmark of the same type, whose entities are all
+ * zeros.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsPrepend = {"-Xmx25G", "-Xms15G", "-XX:+UseTLAB", "-XX:+AlwaysPreTouch"})
+@OperationsPerInvocation(OnheapSlabBenchmark.DEFAULT_OPERATIONS_PER_INVOCATION)
+public class OnheapSlabCompressionBenchmark {
+
+    @Param(value = {"SLAB", "OFFHEAP", "JDK", "PRIMITIVE", "MAPPED", "CONCURRENT", "CONCURRENT_ARENA"})
+    private String type;
+
+    // Bytes of the entities: ZEROS, RANDOM (incompressible) or COMPRESSIBLE (text of random words)
+    @Param(value = {"ZEROS", "RANDOM", "COMPRESSIBLE"})
+    private String payload;
+
+    private OnheapSlabBenchmark benchmark;
+
+    @Setup(Level.Trial)
+    public void benchmarkSetup(OnheapSlabBenchmark.Operations operations) {
+        benchmark = OnheapSlabBenchmark.ofType(type);
+        benchmark.benchmarkSetup(operations);
+        benchmark.compressValues(payload);
+    }
+
+    @TearDown(Level.Trial)
+    public void benchmarkTeardown() {
+        benchmark.benchmarkTeardown();
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown() {
+        benchmark.teardown();
+    }
+
+    @Benchmark
+    public long testInternal(OnheapSlabBenchmark.MemoryCounters counters) {
+        return benchmark.testInternal(counters);
+    }
+
+    @Benchmark
+    public long testReadOnly(Prefill prefill, OnheapSlabBenchmark.MemoryCounters counters) throws IOException {
+        return counters.update(benchmark, benchmark.testReadOnly(prefill.keys));
+    }
+
+    @Benchmark
+    public long testMixed(Prefill prefill, OnheapSlabBenchmark.MemoryCounters counters) throws IOException {
+        return counters.update(benchmark, benchmark.testMixed(prefill.keys));
+    }
+
+    /**
+     * Map of the read and mixed rows, the same as {@link OnheapSlabBenchmark.Prefill}.
+     */
+    @State(Scope.Thread)
+    public static class Prefill {
+
+        int keys;
+
+        @Setup(Level.Invocation)
+        public void prefill(OnheapSlabCompressionBenchmark benchmark) {
+            keys = benchmark.benchmark.prefill();
+        }
+
+    }
+
+}
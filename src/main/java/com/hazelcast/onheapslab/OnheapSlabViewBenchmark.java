@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+
+/**
+ * The rows of {@link OnheapSlabBenchmark} that work on segment memory directly, only PRIMITIVE
+ * and MAPPED can do that and only without compression. testInternalZeroCopy serializes the
+ * entities straight into segment memory instead of into a temporary byte[] that is copied into
+ * it. testReadOnlyView and testMixedView deserialize the entities straight from segment memory
+ * through a view instead of from a copy. The baselines are testInternal, testReadOnly and
+ * testMixed of OnheapSlabBenchmark of the same type.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsPrepend = {"-Xmx25G", "-Xms15G", "-XX:+UseTLAB", "-XX:+AlwaysPreTouch"})
+@OperationsPerInvocation(OnheapSlabBenchmark.DEFAULT_OPERATIONS_PER_INVOCATION)
+public class OnheapSlabViewBenchmark {
+
+    @Param(value = {"PRIMITIVE", "MAPPED"})
+    private String type;
+
+    private OnheapSlabBenchmark benchmark;
+
+    @Setup(Level.Trial)
+    public void benchmarkSetup(OnheapSlabBenchmark.Operations operations) {
+        benchmark = OnheapSlabBenchmark.ofType(type);
+        benchmark.benchmarkSetup(operations);
+    }
+
+    @TearDown(Level.Trial)
+    public void benchmarkTeardown() {
+        benchmark.benchmarkTeardown();
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown() {
+        benchmark.teardown();
+    }
+
+    @Benchmark
+    public long testInternalZeroCopy(OnheapSlabBenchmark.MemoryCounters counters) throws IOException {
+        return counters.update(benchmark, benchmark.testInternalZeroCopy());
+    }
+
+    @Benchmark
+    public long testReadOnlyView(Prefill prefill, OnheapSlabBenchmark.MemoryCounters counters) throws IOException {
+        return counters.update(benchmark, benchmark.testReadOnlyView(prefill.keys));
+    }
+
+    @Benchmark
+    public long testMixedView(Prefill prefill, OnheapSlabBenchmark.MemoryCounters counters) throws IOException {
+        return counters.update(benchmark, benchmark.testMixedView(prefill.keys));
+    }
+
+    /**
+     * Map of the read and mixed rows, the same as {@link OnheapSlabBenchmark.Prefill}.
+     */
+    @State(Scope.Thread)
+    public static class Prefill {
+
+        int keys;
+
+        @Setup(Level.Invocation)
+        public void prefill(OnheapSlabViewBenchmark benchmark) {
+            keys = benchmark.benchmark.prefill();
+        }
+
+    }
+
+}
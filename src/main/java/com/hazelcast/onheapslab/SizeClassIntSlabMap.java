@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+/**
+ * {@link IntSlabMap} for values of widely varying sizes. Values are stored in chunks of size
+ * classes, see {@link SlabSizeClassAllocator}, instead of being bump allocated. The chunk of a
+ * replaced or removed value is reused right away by the next value of its size class, there is
+ * no garbage to compact. A value replaced by one of the same size class is overwritten in place.
+ *
+ * Values larger than {@value SlabSizeClassAllocator#MAX_CHUNK_SIZE} bytes are stored one by one
+ * outside the segments. A put fails with {@link IllegalStateException} if the size class of the
+ * value has no free chunk left and there is no page left for it. Not thread-safe.
+ */
+public class SizeClassIntSlabMap {
+
+    private final SlabSizeClassAllocator allocator;
+    private final IntSlabIndex index;
+
+    public SizeClassIntSlabMap(boolean offheap, int capacity, int noOfSegments, int capacityOfSegment) {
+        this.allocator = new SlabSizeClassAllocator(offheap, noOfSegments, capacityOfSegment);
+        this.index = new HeapIntSlabIndex(capacity);
+    }
+
+    public void put(int key, byte[] value) {
+        final long old = index.get(key);
+        if (old != IntSlabIndex.NOT_FOUND && allocator.overwrite(old, value)) {
+            return;
+        }
+        final long ref = allocator.allocate(key, value.length);
+        if (ref == IntSlabIndex.NOT_FOUND) {
+            throw new IllegalStateException("No page left for a value of " + value.length + " bytes");
+        }
+        allocator.segment(ref).write(SlabSizeClassAllocator.offset(ref), value);
+        if (old != IntSlabIndex.NOT_FOUND) {
+            allocator.free(old);
+        }
+        index.put(key, ref);
+    }
+
+    /**
+     * @return a copy of the value, or <code>null</code> if there is no value for the key
+     */
+    public byte[] get(int key) {
+        final long ref = index.get(key);
+        if (ref == IntSlabIndex.NOT_FOUND) {
+            return null;
+        }
+        return allocator.segment(ref).read(SlabSizeClassAllocator.offset(ref));
+    }
+
+    /**
+     * Positions the view on the stored value of the key instead of copying it.
+     *
+     * @return whether there is a value for the key, the view is left as it was if not
+     */
+    public boolean get(int key, SlabValueView view) {
+        final long ref = index.get(key);
+        if (ref == IntSlabIndex.NOT_FOUND) {
+            return false;
+        }
+        final SlabSegment segment = allocator.segment(ref);
+        final int offset = SlabSizeClassAllocator.offset(ref);
+        view.init(segment.base(), segment.valueAddress(offset), segment.length(offset));
+        return true;
+    }
+
+    public boolean containsKey(int key) {
+        return index.get(key) != IntSlabIndex.NOT_FOUND;
+    }
+
+    /**
+     * @return whether there was a value for the key
+     */
+    public boolean remove(int key) {
+        final long ref = index.remove(key);
+        if (ref == IntSlabIndex.NOT_FOUND) {
+            return false;
+        }
+        allocator.free(ref);
+        return true;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public boolean isEmpty() {
+        return index.size() == 0;
+    }
+
+    /**
+     * @return the bytes of the pages given to size classes and of the values stored outside
+     * the segments
+     */
+    public long usedBytes() {
+        return allocator.usedBytes();
+    }
+
+    /**
+     * @return the bytes of the stored values, without headers and unused chunk bytes
+     */
+    public long valueBytes() {
+        return allocator.valueBytes();
+    }
+
+    public long capacityBytes() {
+        return allocator.capacityBytes();
+    }
+
+    public void clear() {
+        index.clear();
+        allocator.clear();
+    }
+
+    public void destroy() {
+        allocator.destroy();
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts and gets of batches of random keys on a {@link ConcurrentIntSlabMap}, with
+ * {@link ConcurrentIntSlabMap#putAll(int[], byte[][], int)} and
+ * {@link ConcurrentIntSlabMap#getAll(int[], byte[][], int)} and with a loop over the entries
+ * like the one of {@link OnheapSlabBenchmark#testInternal(OnheapSlabBenchmark.MemoryCounters)}.
+ * The loops run over the same batches, so they don't change with the batch size.
+ *
+ * Every key keeps the size of its value, so updates overwrite the stored values in place.
+ * Arenas never overwrite in place, the segments would fill up with replaced values.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsPrepend = {"-Xmx8G", "-Xms8G", "-XX:+UseTLAB"})
+@BenchmarkMode({ Mode.Throughput })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@OperationsPerInvocation(SlabBulkBenchmark.OPS_PER_INV)
+public class SlabBulkBenchmark {
+
+    public static final int OPS_PER_INV = 10000;
+    public static final int DEFAULT_NO_OF_SEGMENTS = 16;
+
+    // SLAB and OFFHEAP are ConcurrentIntSlabMaps with segments on and off the heap
+    @Param(value = {"SLAB", "OFFHEAP"})
+    private String type;
+
+    @Param(value = {"100000"})
+    private String keys;
+
+    // Divides OPS_PER_INV
+    @Param(value = {"10", "100", "1000", "10000"})
+    private String batchSize;
+
+    private final Random random = new Random();
+
+    private int keyCount;
+    private int batch;
+    private byte[][] values;
+    private ConcurrentIntSlabMap map;
+
+    private int[] batchKeys;
+    private byte[][] batchValues;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keyCount = Integer.parseInt(keys);
+        batch = Integer.parseInt(batchSize);
+        if (OPS_PER_INV % batch != 0) {
+            throw new IllegalArgumentException("Batch size " + batch + " doesn't divide " + OPS_PER_INV);
+        }
+        // Values of 1000 to 2000 bytes like the entities of OnheapSlabBenchmark, one per key
+        Random random = new Random(42);
+        values = new byte[keyCount][];
+        long totalSize = 0;
+        for (int i = 0; i < keyCount; i++) {
+            values[i] = new byte[1000 + random.nextInt(1000)];
+            random.nextBytes(values[i]);
+            totalSize += SlabSegment.recordSize(values[i].length);
+        }
+        final int noOfSegments = Integer.getInteger("noOfSegments", DEFAULT_NO_OF_SEGMENTS);
+        // Twice the average share of a stripe, keys are not spread perfectly evenly
+        final long capacityOfSegment = Math.min(Integer.MAX_VALUE - SlabSegment.ALIGNMENT,
+                2 * totalSize / noOfSegments + 1024 * 1024);
+        if ("SLAB".equals(type) || "OFFHEAP".equals(type)) {
+            map = new ConcurrentIntSlabMap("OFFHEAP".equals(type), keyCount, noOfSegments, (int) capacityOfSegment);
+        } else {
+            throw new RuntimeException("Unknown map type");
+        }
+        for (int i = 0; i < keyCount; i++) {
+            map.put(i, values[i]);
+        }
+        batchKeys = new int[batch];
+        batchValues = new byte[batch][];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        map.destroy();
+    }
+
+    @Benchmark
+    public void putLoop() {
+        for (int b = 0; b < OPS_PER_INV; b += batch) {
+            nextBatch();
+            for (int i = 0; i < batch; i++) {
+                map.put(batchKeys[i], batchValues[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void putAll() {
+        for (int b = 0; b < OPS_PER_INV; b += batch) {
+            nextBatch();
+            map.putAll(batchKeys, batchValues, batch);
+        }
+    }
+
+    @Benchmark
+    public long getLoop() {
+        long total = 0;
+        for (int b = 0; b < OPS_PER_INV; b += batch) {
+            nextBatch();
+            for (int i = 0; i < batch; i++) {
+                total += map.get(batchKeys[i]).length;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long getAll() {
+        long total = 0;
+        for (int b = 0; b < OPS_PER_INV; b += batch) {
+            nextBatch();
+            map.getAll(batchKeys, batchValues, batch);
+            for (int i = 0; i < batch; i++) {
+                total += batchValues[i].length;
+            }
+        }
+        return total;
+    }
+
+    // Random keys with their values, the gets overwrite the values
+    private void nextBatch() {
+        for (int i = 0; i < batch; i++) {
+            final int key = random.nextInt(keyCount);
+            batchKeys[i] = key;
+            batchValues[i] = values[key];
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overwrites, removes and reads random keys of an {@link IntSlabMap} whose segments hold twice
+ * the data set. Overwrites change the size of the values, so the segments fill up with garbage.
+ *
+ * With <code>compaction=true</code> the map compacts incrementally while it is written, without
+ * it the map runs out of segments and is cleared and filled again, which the benchmark counts.
+ * Keys that are read but were removed are put again, so the data set keeps its size.
+ * The bytes of the segments are reported by {@link ChurnCounters}.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsPrepend = {"-Xmx4G", "-Xms4G", "-XX:+UseTLAB"})
+@OperationsPerInvocation(SlabChurnBenchmark.OPS_PER_INV)
+public class SlabChurnBenchmark {
+
+    public static final int OPS_PER_INV = 100;
+    public static final int DEFAULT_NO_OF_SEGMENTS = 16;
+
+    private static final int VALUE_COUNT = 1024;
+
+    @Param(value = {"true", "false"})
+    private String compaction;
+
+    @Param(value = {"SLAB", "OFFHEAP"})
+    private String type;
+
+    @Param(value = {"100000"})
+    private String keys;
+
+    @Param(value = {"40"})
+    private String overwritePercent;
+
+    @Param(value = {"10"})
+    private String removePercent;
+
+    private final Random rand = new Random();
+
+    private int keyCount;
+    private int overwriteThreshold;
+    private int removeThreshold;
+    private byte[][] values;
+    private IntSlabMap map;
+
+    private int exhausted;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keyCount = Integer.parseInt(keys);
+        overwriteThreshold = Integer.parseInt(overwritePercent);
+        removeThreshold = overwriteThreshold + Integer.parseInt(removePercent);
+        // Values of 1000 to 2000 bytes like the entities of OnheapSlabBenchmark
+        Random random = new Random(42);
+        values = new byte[VALUE_COUNT][];
+        long totalSize = 0;
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            values[i] = new byte[1000 + random.nextInt(1000)];
+            random.nextBytes(values[i]);
+            totalSize += SlabSegment.recordSize(values[i].length);
+        }
+        totalSize = totalSize / VALUE_COUNT * keyCount;
+
+        int noOfSegments = Integer.getInteger("noOfSegments", DEFAULT_NO_OF_SEGMENTS);
+        long capacityOfSegment = Math.min(Integer.MAX_VALUE - SlabSegment.ALIGNMENT,
+                2 * totalSize / noOfSegments + 1024 * 1024);
+        map = new IntSlabMap("OFFHEAP".equals(type), keyCount, noOfSegments, (int) capacityOfSegment);
+        map.setAutoCompaction(Boolean.parseBoolean(compaction));
+        fill();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        map.destroy();
+    }
+
+    /**
+     * exhausted counts how often the map ran out of segments in an iteration. The others are the
+     * bytes of the segments at the end of the iteration. JMH divides every counter by the time of
+     * the iteration, so only the ratios of the byte counters mean something: garbageBytes divided
+     * by capacityBytes is the part of the capacity lost to garbage.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class ChurnCounters {
+        public long exhausted;
+        public long liveBytes;
+        public long garbageBytes;
+        public long capacityBytes;
+
+        private SlabChurnBenchmark benchmark;
+        private int startExhausted;
+
+        @Setup(Level.Iteration)
+        public void start(SlabChurnBenchmark benchmark) {
+            this.benchmark = benchmark;
+            exhausted = 0;
+            liveBytes = 0;
+            garbageBytes = 0;
+            capacityBytes = 0;
+            startExhausted = benchmark.exhausted;
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            final IntSlabMap map = benchmark.map;
+            exhausted = benchmark.exhausted - startExhausted;
+            liveBytes = map.liveBytes();
+            garbageBytes = map.garbageBytes();
+            capacityBytes = map.capacityBytes();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long churn(ChurnCounters counters) {
+        long total = 0;
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            final int key = rand.nextInt(keyCount);
+            final int op = rand.nextInt(100);
+            if (op < overwriteThreshold) {
+                put(key);
+            } else if (op < removeThreshold) {
+                map.remove(key);
+            } else {
+                final byte[] value = map.get(key);
+                if (value != null) {
+                    total += value.length;
+                } else {
+                    put(key);
+                }
+            }
+        }
+        return total;
+    }
+
+    private void put(int key) {
+        final byte[] value = values[rand.nextInt(VALUE_COUNT)];
+        try {
+            map.put(key, value);
+        } catch (IllegalStateException e) {
+            // Out of segments, start over with a full data set
+            exhausted++;
+            map.clear();
+            fill();
+            map.put(key, value);
+        }
+    }
+
+    private void fill() {
+        for (int i = 0; i < keyCount; i++) {
+            map.put(i, values[i % VALUE_COUNT]);
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+/**
+ * Turns values into the blocks stored in a slab map and back, compressed by {@link SlabLz} when
+ * that pays off. A stored block starts with a flag byte, a compressed block follows it with the
+ * length of the value as a big-endian int and the compressed bytes, a raw block with the value.
+ *
+ * Values shorter than the threshold are stored raw, compressing them saves too little for the
+ * time it takes. Of longer values a sample from the middle is compressed first, if it shrinks by
+ * less than {@value #MIN_SAVING_PERCENT}% the value is stored raw without compressing the rest.
+ *
+ * Keeps the bytes of the values and of the blocks it made, reset by {@link #resetStatistics()}.
+ * Not thread-safe.
+ */
+public class SlabCompressor {
+
+    public static final int DEFAULT_THRESHOLD = 256;
+    public static final int DEFAULT_SAMPLE_SIZE = 512;
+    public static final int MIN_SAVING_PERCENT = 10;
+
+    private static final byte RAW = 0;
+    private static final byte COMPRESSED = 1;
+    private static final int COMPRESSED_HEADER_SIZE = 5;
+
+    private final SlabLz lz = new SlabLz();
+    private final int threshold;
+    private final int sampleSize;
+    private byte[] buffer = new byte[SlabLz.maxCompressedLength(2048) + COMPRESSED_HEADER_SIZE];
+
+    private long rawBytes;
+    private long storedBytes;
+    private long compressedCount;
+    private long skippedCount;
+
+    public SlabCompressor() {
+        this(DEFAULT_THRESHOLD, DEFAULT_SAMPLE_SIZE);
+    }
+
+    public SlabCompressor(int threshold, int sampleSize) {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("Sample size must be positive: " + sampleSize);
+        }
+        this.threshold = threshold;
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * @return the block to store for the value
+     */
+    public byte[] compress(byte[] value) {
+        final int length = value.length;
+        byte[] block = null;
+        if (length >= threshold && sampleCompresses(value)) {
+            final int maxLength = SlabLz.maxCompressedLength(length) + COMPRESSED_HEADER_SIZE;
+            if (buffer.length < maxLength) {
+                buffer = new byte[maxLength];
+            }
+            final int compressedLength = lz.compress(value, 0, length, buffer, COMPRESSED_HEADER_SIZE);
+            if (compressedLength + COMPRESSED_HEADER_SIZE < length + 1) {
+                block = new byte[compressedLength + COMPRESSED_HEADER_SIZE];
+                block[0] = COMPRESSED;
+                block[1] = (byte) (length >>> 24);
+                block[2] = (byte) (length >>> 16);
+                block[3] = (byte) (length >>> 8);
+                block[4] = (byte) length;
+                System.arraycopy(buffer, COMPRESSED_HEADER_SIZE, block, COMPRESSED_HEADER_SIZE, compressedLength);
+                compressedCount++;
+            }
+        }
+        if (block == null) {
+            block = new byte[length + 1];
+            block[0] = RAW;
+            System.arraycopy(value, 0, block, 1, length);
+            skippedCount++;
+        }
+        rawBytes += length;
+        storedBytes += block.length;
+        return block;
+    }
+
+    /**
+     * @return the value of a block made by {@link #compress(byte[])}, <code>null</code> for <code>null</code>
+     * @throws IllegalArgumentException if the block is corrupt
+     */
+    public byte[] decompress(byte[] block) {
+        if (block == null) {
+            return null;
+        }
+        if (block[0] == RAW) {
+            final byte[] value = new byte[block.length - 1];
+            System.arraycopy(block, 1, value, 0, value.length);
+            return value;
+        }
+        if (block[0] != COMPRESSED || block.length < COMPRESSED_HEADER_SIZE) {
+            throw new IllegalArgumentException("Not a compressed block, flag " + block[0]);
+        }
+        final int length = (block[1] & 0xFF) << 24 | (block[2] & 0xFF) << 16 | (block[3] & 0xFF) << 8 | (block[4] & 0xFF);
+        final byte[] value = new byte[length];
+        SlabLz.decompress(block, COMPRESSED_HEADER_SIZE, block.length - COMPRESSED_HEADER_SIZE, value, 0, length);
+        return value;
+    }
+
+    /**
+     * @return the bytes of the values passed to {@link #compress(byte[])}
+     */
+    public long rawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * @return the bytes of the blocks returned by {@link #compress(byte[])}
+     */
+    public long storedBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * @return stored bytes per raw byte, 1 if nothing was compressed yet
+     */
+    public double ratio() {
+        return rawBytes == 0 ? 1 : storedBytes / (double) rawBytes;
+    }
+
+    public long compressedCount() {
+        return compressedCount;
+    }
+
+    /**
+     * @return the number of values stored raw, below the threshold or not compressible enough
+     */
+    public long skippedCount() {
+        return skippedCount;
+    }
+
+    public void resetStatistics() {
+        rawBytes = 0;
+        storedBytes = 0;
+        compressedCount = 0;
+        skippedCount = 0;
+    }
+
+    private boolean sampleCompresses(byte[] value) {
+        if (value.length <= sampleSize) {
+            return true;
+        }
+        final int maxLength = SlabLz.maxCompressedLength(sampleSize);
+        if (buffer.length < maxLength) {
+            buffer = new byte[maxLength];
+        }
+        final int compressedLength = lz.compress(value, (value.length - sampleSize) / 2, sampleSize, buffer, 0);
+        return compressedLength * 100L <= sampleSize * (100L - MIN_SAVING_PERCENT);
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+/**
+ * Cursor over the live records of an {@link IntSlabMap} in memory order, segment after segment
+ * and record after record within a segment. The key, offset and length of the current record
+ * are read from its header and {@link #value()} is a view of the stored value, nothing is
+ * allocated per record.
+ *
+ * {@link IntSlabMap#cursor()} goes over all segments, {@link IntSlabMap#cursor(int)} over one.
+ * A cursor is only valid as long as the map isn't written to, segments that writers allocate
+ * arenas from can't be scanned at all. Not thread-safe, see
+ * {@link IntSlabMap#parallelScan(java.util.concurrent.ForkJoinPool, Scan)} for scanning
+ * the segments in parallel.
+ */
+public final class SlabCursor {
+
+    /**
+     * Scan of the records of a cursor, the results of the scans of all segments are summed up.
+     */
+    public interface Scan {
+
+        long scan(SlabCursor cursor);
+
+    }
+
+    private final SlabSegment[] segments;
+    private final int endSegment;
+    private final SlabValueView view = new SlabValueView();
+
+    private int segment;
+    private int offset = -1;
+    private int nextOffset;
+
+    SlabCursor(SlabSegment[] segments, int fromSegment, int toSegment) {
+        this.segments = segments;
+        this.segment = fromSegment;
+        this.endSegment = toSegment;
+        for (int i = fromSegment; i < toSegment; i++) {
+            segments[i].checkWalkable();
+        }
+    }
+
+    /**
+     * Moves to the next live record.
+     *
+     * @return whether there is one, the cursor is done if not
+     */
+    public boolean next() {
+        while (segment < endSegment) {
+            final SlabSegment current = segments[segment];
+            final int used = current.used();
+            while (nextOffset < used) {
+                final int record = nextOffset;
+                nextOffset += SlabSegment.recordSize(current.length(record));
+                if (current.isLive(record)) {
+                    offset = record;
+                    return true;
+                }
+            }
+            segment++;
+            nextOffset = 0;
+        }
+        offset = -1;
+        return false;
+    }
+
+    public int key() {
+        final int record = checkRecord();
+        return segments[segment].key(record);
+    }
+
+    // Segment of the current record
+    public int segment() {
+        checkRecord();
+        return segment;
+    }
+
+    // Offset of the current record in its segment
+    public int offset() {
+        return checkRecord();
+    }
+
+    // Length of the value of the current record
+    public int length() {
+        final int record = checkRecord();
+        return segments[segment].length(record);
+    }
+
+    /**
+     * @return the view of the value of the current record, the same view for all records
+     */
+    public SlabValueView value() {
+        final int record = checkRecord();
+        final SlabSegment current = segments[segment];
+        view.init(current.base(), current.valueAddress(record), current.length(record));
+        return view;
+    }
+
+    private int checkRecord() {
+        if (offset == -1) {
+            throw new IllegalStateException("Cursor is not at a record");
+        }
+        return offset;
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uses an {@link IntSlabMap} with eviction as a cache in front of a data set that is larger than
+ * the segments. Every operation gets a key, a miss puts the value of the key. Keys are drawn from
+ * a Zipf distribution, so some keys are much more popular than others.
+ *
+ * Throughput is per get. The hits, misses and evictions are reported by {@link CacheCounters},
+ * hits divided by the throughput is the hit rate.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsPrepend = {"-Xmx4G", "-Xms4G", "-XX:+UseTLAB"})
+@OperationsPerInvocation(SlabEvictionBenchmark.OPS_PER_INV)
+public class SlabEvictionBenchmark {
+
+    public static final int OPS_PER_INV = 100;
+    public static final int DEFAULT_NO_OF_SEGMENTS = 16;
+
+    private static final int VALUE_COUNT = 1024;
+    private static final int KEY_SAMPLES = 1 << 20;
+
+    @Param(value = {"CLOCK", "SAMPLED_LRU", "APPROX_LFU"})
+    private String policy;
+
+    @Param(value = {"SLAB", "OFFHEAP"})
+    private String type;
+
+    @Param(value = {"1000000"})
+    private String keys;
+
+    // Capacity of the segments in percent of the size of the data set
+    @Param(value = {"25"})
+    private String capacityPercent;
+
+    // Exponent of the Zipf distribution, the higher the more skewed
+    @Param(value = {"0.99"})
+    private String skew;
+
+    private byte[][] values;
+    // Keys drawn in advance, so drawing them doesn't show in the results
+    private int[] keySamples;
+    private int next;
+    private IntSlabMap map;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final int keyCount = Integer.parseInt(keys);
+        Random random = new Random(42);
+        values = new byte[VALUE_COUNT][];
+        long totalSize = 0;
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            values[i] = new byte[1000 + random.nextInt(1000)];
+            random.nextBytes(values[i]);
+            totalSize += SlabSegment.recordSize(values[i].length);
+        }
+        totalSize = totalSize / VALUE_COUNT * keyCount;
+        keySamples = zipfKeys(random, keyCount, Double.parseDouble(skew));
+
+        int noOfSegments = Integer.getInteger("noOfSegments", DEFAULT_NO_OF_SEGMENTS);
+        long capacityOfSegment = Math.min(Integer.MAX_VALUE - SlabSegment.ALIGNMENT,
+                totalSize * Integer.parseInt(capacityPercent) / 100 / noOfSegments);
+        map = new IntSlabMap("OFFHEAP".equals(type), keyCount, noOfSegments, (int) capacityOfSegment);
+        map.setEvictionPolicy(SlabEvictionPolicy.valueOf(policy));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        map.destroy();
+    }
+
+    /**
+     * Gets that hit and missed and records evicted in an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class CacheCounters {
+        public long hits;
+        public long misses;
+        public long evictions;
+
+        private IntSlabMap map;
+        private long startEvictions;
+
+        @Setup(Level.Iteration)
+        public void start(SlabEvictionBenchmark benchmark) {
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+            map = benchmark.map;
+            startEvictions = map.evictions();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            evictions = map.evictions() - startEvictions;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long getOrLoad(CacheCounters counters) {
+        final int[] keySamples = this.keySamples;
+        long total = 0;
+        int n = next;
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            final int key = keySamples[n];
+            n = (n + 1) & (KEY_SAMPLES - 1);
+            final byte[] value = map.get(key);
+            if (value != null) {
+                counters.hits++;
+                total += value.length;
+            } else {
+                counters.misses++;
+                map.put(key, values[key & (VALUE_COUNT - 1)]);
+            }
+        }
+        next = n;
+        return total;
+    }
+
+    // Key of rank r has a probability proportional to 1 / r^skew
+    private static int[] zipfKeys(Random random, int keyCount, double skew) {
+        final double[] cumulative = new double[keyCount];
+        double sum = 0;
+        for (int i = 0; i < keyCount; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+        final int[] samples = new int[KEY_SAMPLES];
+        for (int i = 0; i < KEY_SAMPLES; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            rank = Math.min(keyCount - 1, rank < 0 ? -rank - 1 : rank);
+            // Popular keys are spread over the index
+            samples[i] = rank * 0x9E3779B1;
+        }
+        return samples;
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+/**
+ * Which entries an {@link IntSlabMap} evicts when it is full, see
+ * {@link IntSlabMap#setEvictionPolicy(SlabEvictionPolicy)}. The state of every policy is
+ * kept in the spare bits of the index slots, there is no object per entry.
+ */
+public enum SlabEvictionPolicy {
+
+    /**
+     * Second chance. One bit per entry is set when it is accessed, a hand goes round the index
+     * slots clearing the bits and evicts the first entry whose bit is already clear.
+     */
+    CLOCK {
+        @Override
+        SlabEvictor newEvictor() {
+            return new SlabEvictor.Clock();
+        }
+    },
+
+    /**
+     * Least recently used of a few sampled entries, by a 24 bit access clock per entry.
+     */
+    SAMPLED_LRU {
+        @Override
+        SlabEvictor newEvictor() {
+            return new SlabEvictor.SampledLru();
+        }
+    },
+
+    /**
+     * Least frequently used of a few sampled entries, by an 8 bit logarithmic access counter
+     * per entry. Sampled entries that are not evicted count one access less, so entries that
+     * were popular once age out.
+     */
+    APPROX_LFU {
+        @Override
+        SlabEvictor newEvictor() {
+            return new SlabEvictor.ApproxLfu();
+        }
+    };
+
+    abstract SlabEvictor newEvictor();
+
+}
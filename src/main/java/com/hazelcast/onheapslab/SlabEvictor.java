@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+/**
+ * State of a {@link SlabEvictionPolicy} for one map. The per-entry state is an int of
+ * {@link IntSlabIndex#META_BITS} bits kept in the index slot of the entry.
+ */
+abstract class SlabEvictor {
+
+    // Entries looked at by the sampling policies for every eviction
+    static final int SAMPLES = 5;
+
+    private final int[] samples = new int[SAMPLES];
+    private int seed = (int) System.nanoTime() | 1;
+
+    abstract int initialMeta();
+
+    abstract int onAccess(int meta);
+
+    /**
+     * @return the slot of the entry to evict, the index must not be empty
+     */
+    abstract int victim(IntSlabIndex index);
+
+    // Xorshift, there is no need for java.util.Random here
+    final int nextRandom() {
+        int x = seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        seed = x;
+        return x;
+    }
+
+    // Fills "samples" with used slots following a random one, returns how many there are
+    final int sample(IntSlabIndex index) {
+        final int slots = index.slotCount();
+        int slot = nextRandom() & (slots - 1);
+        int count = 0;
+        for (int i = 0; i < slots && count < SAMPLES; i++, slot = (slot + 1) & (slots - 1)) {
+            if (index.isUsed(slot)) {
+                samples[count++] = slot;
+            }
+        }
+        return count;
+    }
+
+    final int sampleAt(int i) {
+        return samples[i];
+    }
+
+    static final class Clock extends SlabEvictor {
+
+        private static final int REFERENCED = 1;
+
+        private int hand;
+
+        // New entries get a chance, the hand could be right at their slot
+        @Override
+        int initialMeta() {
+            return REFERENCED;
+        }
+
+        @Override
+        int onAccess(int meta) {
+            return meta | REFERENCED;
+        }
+
+        @Override
+        int victim(IntSlabIndex index) {
+            final int mask = index.slotCount() - 1;
+            for (;;) {
+                final int slot = hand & mask;
+                hand = slot + 1;
+                if (index.isUsed(slot)) {
+                    final int meta = index.metaAt(slot);
+                    if ((meta & REFERENCED) == 0) {
+                        return slot;
+                    }
+                    index.metaAt(slot, meta & ~REFERENCED);
+                }
+            }
+        }
+
+    }
+
+    static final class SampledLru extends SlabEvictor {
+
+        // Counts accesses, wraps after 2^24 of them
+        private int clock;
+
+        @Override
+        int initialMeta() {
+            return ++clock & IntSlabIndex.META_MASK;
+        }
+
+        @Override
+        int onAccess(int meta) {
+            return ++clock & IntSlabIndex.META_MASK;
+        }
+
+        @Override
+        int victim(IntSlabIndex index) {
+            final int count = sample(index);
+            int victim = sampleAt(0);
+            int maxAge = -1;
+            for (int i = 0; i < count; i++) {
+                final int slot = sampleAt(i);
+                final int age = (clock - index.metaAt(slot)) & IntSlabIndex.META_MASK;
+                if (age > maxAge) {
+                    victim = slot;
+                    maxAge = age;
+                }
+            }
+            return victim;
+        }
+
+    }
+
+    static final class ApproxLfu extends SlabEvictor {
+
+        private static final int INITIAL = 5;
+        private static final int MAX = 255;
+        // The higher, the more accesses it takes to increment a high counter
+        private static final int LOG_FACTOR = 10;
+
+        @Override
+        int initialMeta() {
+            return INITIAL;
+        }
+
+        @Override
+        int onAccess(int meta) {
+            if (meta >= MAX) {
+                return meta;
+            }
+            // Incremented with a probability of 1 / ((meta - INITIAL) * LOG_FACTOR + 1)
+            final int base = Math.max(0, meta - INITIAL);
+            final double random = (nextRandom() >>> 8) * 0x1.0p-24;
+            return random * (base * LOG_FACTOR + 1) < 1.0 ? meta + 1 : meta;
+        }
+
+        @Override
+        int victim(IntSlabIndex index) {
+            final int count = sample(index);
+            int victim = sampleAt(0);
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                final int slot = sampleAt(i);
+                final int meta = index.metaAt(slot);
+                if (meta < min) {
+                    victim = slot;
+                    min = meta;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                final int slot = sampleAt(i);
+                final int meta = index.metaAt(slot);
+                if (slot != victim && meta > 0) {
+                    index.metaAt(slot, meta - 1);
+                }
+            }
+            return victim;
+        }
+
+    }
+
+}
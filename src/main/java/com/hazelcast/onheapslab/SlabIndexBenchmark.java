@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap taken and GC time spent by the key index of slab stores with many small entries:
+ * <ul>
+ * <li>SLAB, OFFHEAP: {@link SlapMap} with its segments on the heap or in native memory</li>
+ * <li>PRIMITIVE: {@link IntSlabMap} with its segments in native memory and its index on the heap</li>
+ * <li>OFFHEAP_INDEX: {@link IntSlabMap} with its segments and its index in native memory</li>
+ * </ul>
+ * The index of PRIMITIVE and OFFHEAP_INDEX starts small, so that growing it is part of filling.
+ *
+ * fill puts all entries into a new map, get gets random keys of the full map. The GC
+ * collections and time are reported by {@link GcCounters}.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsPrepend = {"-Xmx24G", "-Xms24G", "-XX:+UseTLAB"})
+public class SlabIndexBenchmark {
+
+    public static final int OPS_PER_INV = 100;
+    public static final int DEFAULT_NO_OF_SEGMENTS = 16;
+
+    @Param(value = {"SLAB", "OFFHEAP", "PRIMITIVE", "OFFHEAP_INDEX"})
+    private String type;
+
+    @Param(value = {"10000000", "100000000"})
+    private String entries;
+
+    @Param(value = {"32"})
+    private String valueSize;
+
+    private final Random random = new Random();
+
+    private int entryCount;
+    private byte[] value;
+    private Map<Integer, byte[]> map;
+    private IntSlabMap intMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entryCount = Integer.parseInt(entries);
+        value = new byte[Integer.parseInt(valueSize)];
+        random.nextBytes(value);
+        createMap();
+        putAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        destroyMap();
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int fill(Refill refill) {
+        return putAll();
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @OperationsPerInvocation(OPS_PER_INV)
+    public long get(GcCounters counters) {
+        long total = 0;
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            final int key = random.nextInt(entryCount);
+            final byte[] value = intMap != null ? intMap.get(key) : map.get(key);
+            total += value.length;
+        }
+        return total;
+    }
+
+    private int putAll() {
+        if (intMap != null) {
+            for (int i = 0; i < entryCount; i++) {
+                intMap.put(i, value);
+            }
+            return intMap.size();
+        }
+        for (int i = 0; i < entryCount; i++) {
+            map.put(i, value);
+        }
+        return map.size();
+    }
+
+    private void createMap() {
+        final int noOfSegments = Integer.getInteger("noOfSegments", DEFAULT_NO_OF_SEGMENTS);
+        final long capacityOfSegment = Math.min(Integer.MAX_VALUE - SlabSegment.ALIGNMENT,
+                (long) entryCount * SlabSegment.recordSize(value.length) * 2 / noOfSegments);
+        if ("SLAB".equals(type) || "OFFHEAP".equals(type)) {
+            map = new SlapMap("OFFHEAP".equals(type), entryCount, noOfSegments, (int) capacityOfSegment);
+        } else if ("PRIMITIVE".equals(type) || "OFFHEAP_INDEX".equals(type)) {
+            intMap = new IntSlabMap(true, "OFFHEAP_INDEX".equals(type), 1024, noOfSegments, (int) capacityOfSegment);
+        } else {
+            throw new RuntimeException("Unknown map type");
+        }
+    }
+
+    private void destroyMap() {
+        if (map instanceof SlapMap) {
+            ((SlapMap) map).destroy();
+        }
+        if (intMap != null) {
+            intMap.destroy();
+        }
+        map = null;
+        intMap = null;
+    }
+
+    /**
+     * GC collections and time of the measured invocations. fill also adds the heap used by its
+     * full map after a full GC for every invocation, so that in throughput mode every counter
+     * divided by the score is the value per fill, e.g. heapUsedBytes / score is the heap used
+     * by a full map. The full GCs are not counted.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class GcCounters {
+
+        public long gcCount;
+        public long gcTimeMs;
+        public long heapUsedBytes;
+
+        private long collections;
+        private long collectionTime;
+
+        @Setup(Level.Iteration)
+        public void startIteration() {
+            gcCount = 0;
+            gcTimeMs = 0;
+            heapUsedBytes = 0;
+            System.gc();
+            start();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stopIteration() {
+            stop();
+        }
+
+        // Starts counting from now on, the collections since the last start or stop are dropped
+        void start() {
+            collections = 0;
+            collectionTime = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                collections += gc.getCollectionCount();
+                collectionTime += gc.getCollectionTime();
+            }
+        }
+
+        // Counts the collections since the last start or stop
+        void stop() {
+            final long started = collections;
+            final long startedTime = collectionTime;
+            start();
+            gcCount += collections - started;
+            gcTimeMs += collectionTime - startedTime;
+        }
+
+    }
+
+    /**
+     * Empty map for every invocation of fill. The old map is collected before the invocation,
+     * so that the GCs of the invocation are the ones of filling.
+     */
+    @State(Scope.Thread)
+    public static class Refill {
+
+        private SlabIndexBenchmark benchmark;
+        private GcCounters counters;
+
+        @Setup(Level.Invocation)
+        public void refill(SlabIndexBenchmark benchmark, GcCounters counters) {
+            this.benchmark = benchmark;
+            this.counters = counters;
+            benchmark.destroyMap();
+            benchmark.createMap();
+            System.gc();
+            counters.start();
+        }
+
+        @TearDown(Level.Invocation)
+        public void measureHeap() {
+            counters.stop();
+            System.gc();
+            counters.heapUsedBytes += ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            counters.start();
+        }
+
+    }
+
+}
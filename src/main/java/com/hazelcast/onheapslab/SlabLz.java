@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import java.util.Arrays;
+
+/**
+ * Pure Java LZ77 block codec in the sequence format of LZ4: a token with the literal length and
+ * the match length, the literals, a 2 byte little-endian offset and the rest of the match length.
+ * Matches are found through a hash table of 4 byte sequences, there is no entropy coding, so it is
+ * fast rather than tight.
+ *
+ * A block holds no lengths of its own, the caller keeps the original length. The hash table is
+ * reused between calls, so an instance is not thread-safe.
+ */
+final class SlabLz {
+
+    private static final int MIN_MATCH = 4;
+    // LZ4 rules: the last 5 bytes are always literals and the last match starts 12 bytes before the end
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MIN_LENGTH = MF_LIMIT + 1;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_LOG = 12;
+    // Misses in a row before the search takes bigger steps over incompressible data
+    private static final int SKIP_SHIFT = 6;
+    private static final int RUN_MASK = 15;
+
+    // Positions plus the base of the call that added them, so older entries are below the base
+    // and the table needs no clearing between calls
+    private final int[] table = new int[1 << HASH_LOG];
+    private int base = 1;
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * @return the length of the block written to <code>dst</code>, which needs room for
+     * {@link #maxCompressedLength(int)} bytes
+     */
+    int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        final int srcEnd = srcOff + srcLen;
+        int anchor = srcOff;
+        int op = dstOff;
+        if (srcLen >= MIN_LENGTH) {
+            final int[] table = this.table;
+            if (base > Integer.MAX_VALUE - srcLen) {
+                Arrays.fill(table, 0);
+                base = 1;
+            }
+            final int shift = base - srcOff;
+            base += srcLen;
+            final int matchLimit = srcEnd - LAST_LITERALS;
+            final int mfLimit = srcEnd - MF_LIMIT;
+            int ip = srcOff;
+            while (ip < mfLimit) {
+                final int sequence = readInt(src, ip);
+                final int h = hash(sequence);
+                int ref = table[h] - shift;
+                table[h] = ip + shift;
+                if (ref < srcOff || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    ip += 1 + ((ip - anchor) >>> SKIP_SHIFT);
+                    continue;
+                }
+                while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLen = MIN_MATCH;
+                while (ip + matchLen < matchLimit && src[ip + matchLen] == src[ref + matchLen]) {
+                    matchLen++;
+                }
+                op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLen, dst, op);
+                ip += matchLen;
+                anchor = ip;
+            }
+        }
+        final int literalLen = srcEnd - anchor;
+        dst[op++] = (byte) (Math.min(literalLen, RUN_MASK) << 4);
+        if (literalLen >= RUN_MASK) {
+            op = writeLength(literalLen - RUN_MASK, dst, op);
+        }
+        System.arraycopy(src, anchor, dst, op, literalLen);
+        return op + literalLen - dstOff;
+    }
+
+    /**
+     * Decompresses a block into exactly <code>dstLen</code> bytes.
+     *
+     * @throws IllegalArgumentException if the block is corrupt or doesn't decompress to dstLen bytes
+     */
+    static void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) {
+        final int srcEnd = srcOff + srcLen;
+        final int dstEnd = dstOff + dstLen;
+        int ip = srcOff;
+        int op = dstOff;
+        try {
+            for (;;) {
+                final int token = src[ip++] & 0xFF;
+                int literalLen = token >>> 4;
+                if (literalLen == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literalLen += b;
+                    } while (b == 255);
+                }
+                if (literalLen > srcEnd - ip || literalLen > dstEnd - op) {
+                    throw new IllegalArgumentException("Corrupt block, literals out of bounds at " + ip);
+                }
+                System.arraycopy(src, ip, dst, op, literalLen);
+                ip += literalLen;
+                op += literalLen;
+                if (ip == srcEnd) {
+                    break;
+                }
+                final int offset = (src[ip++] & 0xFF) | (src[ip++] & 0xFF) << 8;
+                int matchLen = token & RUN_MASK;
+                if (matchLen == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLen += b;
+                    } while (b == 255);
+                }
+                matchLen += MIN_MATCH;
+                final int ref = op - offset;
+                if (offset == 0 || ref < dstOff || matchLen > dstEnd - op) {
+                    throw new IllegalArgumentException("Corrupt block, match out of bounds at " + ip);
+                }
+                // A match closer than its length repeats the last "offset" bytes, copied in chunks
+                // that double as the repeated bytes grow
+                final int matchEnd = op + matchLen;
+                while (op < matchEnd) {
+                    final int n = Math.min(op - ref, matchEnd - op);
+                    System.arraycopy(dst, ref, dst, op, n);
+                    op += n;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Corrupt block, truncated at " + ip);
+        }
+        if (op != dstEnd) {
+            throw new IllegalArgumentException("Block decompresses to " + (op - dstOff) + " bytes, not " + dstLen);
+        }
+    }
+
+    private static int writeSequence(byte[] src, int literalOff, int literalLen, int offset, int matchLen,
+                                     byte[] dst, int op) {
+        final int tokenPos = op++;
+        final int extraMatchLen = matchLen - MIN_MATCH;
+        if (literalLen >= RUN_MASK) {
+            op = writeLength(literalLen - RUN_MASK, dst, op);
+        }
+        System.arraycopy(src, literalOff, dst, op, literalLen);
+        op += literalLen;
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        if (extraMatchLen >= RUN_MASK) {
+            op = writeLength(extraMatchLen - RUN_MASK, dst, op);
+        }
+        dst[tokenPos] = (byte) (Math.min(literalLen, RUN_MASK) << 4 | Math.min(extraMatchLen, RUN_MASK));
+        return op;
+    }
+
+    private static int writeLength(int length, byte[] dst, int op) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | b[i + 3] << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Exposes the memory metrics of an {@link IntSlabMap} as an MBean named
+ * <code>com.hazelcast.onheapslab:type=IntSlabMap,name=&lt;name&gt;</code>.
+ *
+ * Bytes of a segment are either live, free or fragmented. Fragmented bytes are garbage
+ * and the ends of full segments, they can only be used again after compaction.
+ * The map is not thread-safe, so the metrics are read racily and are only approximate
+ * while the map is written.
+ */
+public class SlabMapStats implements SlabMapStatsMBean {
+
+    private final IntSlabMap map;
+
+    public SlabMapStats(IntSlabMap map) {
+        this.map = map;
+    }
+
+    /**
+     * Registers the metrics of the map with the platform MBean server.
+     *
+     * @return the name of the MBean, to unregister it
+     */
+    public static ObjectName register(IntSlabMap map, String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.hazelcast.onheapslab:type=IntSlabMap,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new SlabMapStats(map), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the MBean of " + name, e);
+        }
+    }
+
+    public static void unregister(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister " + objectName, e);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return map.size();
+    }
+
+    @Override
+    public long getCapacityBytes() {
+        return map.capacityBytes();
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return map.allocatedBytes();
+    }
+
+    @Override
+    public long getLiveBytes() {
+        return map.liveBytes();
+    }
+
+    @Override
+    public long getFreeBytes() {
+        return map.freeBytes();
+    }
+
+    @Override
+    public long getFragmentedBytes() {
+        return map.fragmentedBytes();
+    }
+
+    @Override
+    public double getIndexLoadFactor() {
+        return map.indexLoadFactor();
+    }
+
+    @Override
+    public long getEvictions() {
+        return map.evictions();
+    }
+
+    @Override
+    public int getFreeSegments() {
+        return map.freeSegments();
+    }
+
+    @Override
+    public long[] getSegmentAllocatedBytes() {
+        final long[] values = new long[map.segmentCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = map.allocatedBytes(i);
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getSegmentLiveBytes() {
+        final long[] values = new long[map.segmentCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = map.liveBytes(i);
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getSegmentFreeBytes() {
+        final long[] values = new long[map.segmentCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = map.freeBytes(i);
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getSegmentFragmentedBytes() {
+        final long[] values = new long[map.segmentCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = map.fragmentedBytes(i);
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getSegmentEvictions() {
+        final long[] values = new long[map.segmentCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = map.evictions(i);
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+/**
+ * Memory metrics of an {@link IntSlabMap}, see {@link SlabMapStats}. The
+ * <code>Segment*</code> attributes have one element per segment.
+ */
+public interface SlabMapStatsMBean {
+
+    int getSize();
+
+    long getCapacityBytes();
+
+    long getAllocatedBytes();
+
+    long getLiveBytes();
+
+    long getFreeBytes();
+
+    long getFragmentedBytes();
+
+    double getIndexLoadFactor();
+
+    long getEvictions();
+
+    int getFreeSegments();
+
+    long[] getSegmentAllocatedBytes();
+
+    long[] getSegmentLiveBytes();
+
+    long[] getSegmentFreeBytes();
+
+    long[] getSegmentFragmentedBytes();
+
+    long[] getSegmentEvictions();
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.UTFEncoderDecoder;
+import com.hazelcast.nio.UnsafeHelper;
+import com.hazelcast.nio.serialization.SerializationService;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+/**
+ * {@link ObjectDataInput} that reads a value in place through a {@link SlabValueView},
+ * the counterpart of {@link SlabObjectDataOutput}. The byte order is the one of the
+ * inputs of the serialization service.
+ *
+ * Reusable, {@link #init(SlabValueView)} starts reading another value. Not thread-safe.
+ */
+public class SlabObjectDataInput implements ObjectDataInput {
+
+    private static final sun.misc.Unsafe UNSAFE = UnsafeHelper.UNSAFE;
+    private static final boolean NATIVE_BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+    private final SerializationService serializationService;
+    private final ByteOrder byteOrder;
+    private final boolean swap;
+    private final byte[] utfBuffer = new byte[1024];
+
+    private Object base;
+    private long address;
+    private int length;
+    private int pos;
+
+    public SlabObjectDataInput(SerializationService serializationService) {
+        this.serializationService = serializationService;
+        this.byteOrder = serializationService.createObjectDataInput(new byte[0]).getByteOrder();
+        this.swap = (byteOrder == ByteOrder.BIG_ENDIAN) != NATIVE_BIG_ENDIAN;
+    }
+
+    /**
+     * Starts reading the value the view is positioned on. The view can be reused
+     * right away, the input keeps its own position.
+     */
+    public SlabObjectDataInput init(SlabValueView view) {
+        this.base = view.base();
+        this.address = view.address();
+        this.length = view.length();
+        this.pos = 0;
+        return this;
+    }
+
+    public int position() {
+        return pos;
+    }
+
+    public int available() {
+        return length - pos;
+    }
+
+    // Address to read "count" bytes from
+    private long take(int count) throws EOFException {
+        final int p = pos;
+        if (count > length - p) {
+            throw new EOFException("Cannot read " + count + " bytes, only " + (length - p) + " left");
+        }
+        pos = p + count;
+        return address + p;
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - (len + off)) | (off + len)) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        UNSAFE.copyMemory(base, take(len), b, UnsafeHelper.BYTE_ARRAY_BASE_OFFSET + off, len);
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        final int skipped = Math.max(0, Math.min(n, length - pos));
+        pos += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        return UNSAFE.getByte(base, take(1));
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        final short v = UNSAFE.getShort(base, take(2));
+        return swap ? Short.reverseBytes(v) : v;
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        final char v = UNSAFE.getChar(base, take(2));
+        return swap ? Character.reverseBytes(v) : v;
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        final int v = UNSAFE.getInt(base, take(4));
+        return swap ? Integer.reverseBytes(v) : v;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        final long v = UNSAFE.getLong(base, take(8));
+        return swap ? Long.reverseBytes(v) : v;
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Reads a line as {@link java.io.DataInput#readLine()} specifies it: every byte is a char,
+     * the line ends at "\n", "\r", "\r\n" or the end of the value.
+     *
+     * @return the line without its terminator, null at the end of the value
+     */
+    @Deprecated
+    @Override
+    public String readLine() throws IOException {
+        if (pos == length) {
+            return null;
+        }
+        final StringBuilder line = new StringBuilder();
+        while (pos < length) {
+            final int b = UNSAFE.getByte(base, address + pos++) & 0xFF;
+            if (b == '\n') {
+                break;
+            }
+            if (b == '\r') {
+                if (pos < length && UNSAFE.getByte(base, address + pos) == '\n') {
+                    pos++;
+                }
+                break;
+            }
+            line.append((char) b);
+        }
+        return line.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return UTFEncoderDecoder.readUTF(this, utfBuffer);
+    }
+
+    @Override
+    public char[] readCharArray() throws IOException {
+        final char[] values = new char[Math.max(0, readInt())];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readChar();
+        }
+        return values;
+    }
+
+    @Override
+    public int[] readIntArray() throws IOException {
+        final int[] values = new int[Math.max(0, readInt())];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readInt();
+        }
+        return values;
+    }
+
+    @Override
+    public long[] readLongArray() throws IOException {
+        final long[] values = new long[Math.max(0, readInt())];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readLong();
+        }
+        return values;
+    }
+
+    @Override
+    public double[] readDoubleArray() throws IOException {
+        final double[] values = new double[Math.max(0, readInt())];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readDouble();
+        }
+        return values;
+    }
+
+    @Override
+    public float[] readFloatArray() throws IOException {
+        final float[] values = new float[Math.max(0, readInt())];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readFloat();
+        }
+        return values;
+    }
+
+    @Override
+    public short[] readShortArray() throws IOException {
+        final short[] values = new short[Math.max(0, readInt())];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readShort();
+        }
+        return values;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T readObject() throws IOException {
+        return (T) serializationService.readObject(this);
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return serializationService.getClassLoader();
+    }
+
+    @Override
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.UTFEncoderDecoder;
+import com.hazelcast.nio.UnsafeHelper;
+import com.hazelcast.nio.serialization.SerializationService;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+/**
+ * {@link ObjectDataOutput} that writes into the free space of a {@link SlabSegment},
+ * so a value is serialized straight into the place it is stored at.
+ *
+ * Writes past the end of the given region are dropped and only counted, {@link #isOverflow()}
+ * tells the caller to start over in a segment with more room. Failing silently instead of
+ * throwing keeps the serialization service from wrapping and reporting the overflow as an error.
+ * The byte order is the one of the outputs of the serialization service, so the stored
+ * bytes are the same as the ones of a <code>BufferObjectDataOutput</code>.
+ *
+ * Reusable, {@link IntSlabMap#put(int, Object, SlabObjectDataOutput)} points it to a new region
+ * for every value. Not thread-safe.
+ */
+public class SlabObjectDataOutput implements ObjectDataOutput {
+
+    private static final sun.misc.Unsafe UNSAFE = UnsafeHelper.UNSAFE;
+    private static final boolean NATIVE_BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+    private final SerializationService serializationService;
+    private final ByteOrder byteOrder;
+    private final boolean swap;
+    private final byte[] utfBuffer = new byte[1024];
+
+    private Object base;
+    private long address;
+    private int limit;
+    private int pos;
+
+    public SlabObjectDataOutput(SerializationService serializationService) {
+        this.serializationService = serializationService;
+        this.byteOrder = serializationService.createObjectDataOutput(1).getByteOrder();
+        this.swap = (byteOrder == ByteOrder.BIG_ENDIAN) != NATIVE_BIG_ENDIAN;
+    }
+
+    void init(Object base, long address, int limit) {
+        this.base = base;
+        this.address = address;
+        this.limit = limit;
+        this.pos = 0;
+    }
+
+    /**
+     * @return number of bytes written, including the dropped ones on overflow
+     */
+    public int position() {
+        return pos;
+    }
+
+    public boolean isOverflow() {
+        return pos > limit;
+    }
+
+    // Address to write "count" bytes at, or -1 if they don't fit
+    private long claim(int count) {
+        final int p = pos;
+        pos = p + count;
+        return pos <= limit ? address + p : -1L;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        final long a = claim(1);
+        if (a != -1L) {
+            UNSAFE.putByte(base, a, (byte) b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - (len + off)) | (off + len)) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        final long a = claim(len);
+        if (a != -1L) {
+            UNSAFE.copyMemory(b, UnsafeHelper.BYTE_ARRAY_BASE_OFFSET + off, base, a, len);
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean v) throws IOException {
+        write(v ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(int v) throws IOException {
+        write(v);
+    }
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        final long a = claim(2);
+        if (a != -1L) {
+            UNSAFE.putShort(base, a, swap ? Short.reverseBytes((short) v) : (short) v);
+        }
+    }
+
+    @Override
+    public void writeChar(int v) throws IOException {
+        final long a = claim(2);
+        if (a != -1L) {
+            UNSAFE.putChar(base, a, swap ? Character.reverseBytes((char) v) : (char) v);
+        }
+    }
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        final long a = claim(4);
+        if (a != -1L) {
+            UNSAFE.putInt(base, a, swap ? Integer.reverseBytes(v) : v);
+        }
+    }
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        final long a = claim(8);
+        if (a != -1L) {
+            UNSAFE.putLong(base, a, swap ? Long.reverseBytes(v) : v);
+        }
+    }
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+    @Override
+    public void writeBytes(String s) throws IOException {
+        final int len = s.length();
+        for (int i = 0; i < len; i++) {
+            write(s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeChars(String s) throws IOException {
+        final int len = s.length();
+        for (int i = 0; i < len; i++) {
+            writeChar(s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeUTF(String str) throws IOException {
+        UTFEncoderDecoder.writeUTF(this, str, utfBuffer);
+    }
+
+    @Override
+    public void writeCharArray(char[] chars) throws IOException {
+        final int len = chars != null ? chars.length : 0;
+        writeInt(len);
+        for (int i = 0; i < len; i++) {
+            writeChar(chars[i]);
+        }
+    }
+
+    @Override
+    public void writeIntArray(int[] ints) throws IOException {
+        final int len = ints != null ? ints.length : 0;
+        writeInt(len);
+        for (int i = 0; i < len; i++) {
+            writeInt(ints[i]);
+        }
+    }
+
+    @Override
+    public void writeLongArray(long[] longs) throws IOException {
+        final int len = longs != null ? longs.length : 0;
+        writeInt(len);
+        for (int i = 0; i < len; i++) {
+            writeLong(longs[i]);
+        }
+    }
+
+    @Override
+    public void writeDoubleArray(double[] doubles) throws IOException {
+        final int len = doubles != null ? doubles.length : 0;
+        writeInt(len);
+        for (int i = 0; i < len; i++) {
+            writeDouble(doubles[i]);
+        }
+    }
+
+    @Override
+    public void writeFloatArray(float[] floats) throws IOException {
+        final int len = floats != null ? floats.length : 0;
+        writeInt(len);
+        for (int i = 0; i < len; i++) {
+            writeFloat(floats[i]);
+        }
+    }
+
+    @Override
+    public void writeShortArray(short[] shorts) throws IOException {
+        final int len = shorts != null ? shorts.length : 0;
+        writeInt(len);
+        for (int i = 0; i < len; i++) {
+            writeShort(shorts[i]);
+        }
+    }
+
+    @Override
+    public void writeObject(Object object) throws IOException {
+        serializationService.writeObject(this, object);
+    }
+
+    /**
+     * @return a copy of the bytes written into the current region
+     */
+    @Override
+    public byte[] toByteArray() {
+        final byte[] bytes = new byte[Math.min(pos, limit)];
+        UNSAFE.copyMemory(base, address, bytes, UnsafeHelper.BYTE_ARRAY_BASE_OFFSET, bytes.length);
+        return bytes;
+    }
+
+    @Override
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+}
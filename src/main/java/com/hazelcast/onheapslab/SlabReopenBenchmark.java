@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long a restarted JVM takes to open a populated {@link IntSlabMap#mapped mapped}
+ * store again, compared to loading the same entries into a new store.
+ *
+ * The store is written once per trial into "-DmappedDirectory", a temporary directory by default.
+ * The files stay in the page cache, so reopen measures rebuilding the index from the record
+ * headers, not reading from disk. reopenAndReadAll also reads every value once after opening.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsPrepend = {"-Xmx8G", "-Xms8G", "-XX:+UseTLAB"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SlabReopenBenchmark {
+
+    public static final int DEFAULT_NO_OF_SEGMENTS = 16;
+
+    private static final int VALUE_COUNT = 1024;
+
+    // Values of 1000 to 2000 bytes, 1M entries are about 1.5 GB
+    @Param(value = {"1000000"})
+    private String entries;
+
+    private int entryCount;
+    private int noOfSegments;
+    private int capacityOfSegment;
+    private byte[][] values;
+    private File directory;
+    private boolean temporary;
+
+    private IntSlabMap map;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        entryCount = Integer.parseInt(entries);
+        Random random = new Random(42);
+        values = new byte[VALUE_COUNT][];
+        long totalSize = 0;
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            values[i] = new byte[1000 + random.nextInt(1000)];
+            random.nextBytes(values[i]);
+            totalSize += SlabSegment.recordSize(values[i].length);
+        }
+        totalSize = totalSize / VALUE_COUNT * entryCount;
+        noOfSegments = Integer.getInteger("noOfSegments", DEFAULT_NO_OF_SEGMENTS);
+        capacityOfSegment = (int) Math.min(Integer.MAX_VALUE - SlabSegment.FILE_HEADER_SIZE,
+                totalSize * 5 / 4 / noOfSegments + 1024 * 1024);
+
+        String path = System.getProperty("mappedDirectory");
+        temporary = path == null;
+        if (temporary) {
+            directory = File.createTempFile("slabreopen", "");
+            directory.delete();
+        } else {
+            directory = new File(path);
+        }
+        deleteFiles();
+        IntSlabMap populated = IntSlabMap.mapped(directory, entryCount, noOfSegments, capacityOfSegment);
+        fill(populated);
+        populated.destroy();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deleteFiles();
+        if (temporary) {
+            directory.delete();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        if (map != null) {
+            map.destroy();
+            map = null;
+        }
+    }
+
+    @Benchmark
+    public int reopen() throws IOException {
+        map = IntSlabMap.mapped(directory, entryCount, noOfSegments, capacityOfSegment);
+        return map.size();
+    }
+
+    @Benchmark
+    public long reopenAndReadAll() throws IOException {
+        map = IntSlabMap.mapped(directory, entryCount, noOfSegments, capacityOfSegment);
+        final SlabValueView view = new SlabValueView();
+        long total = 0;
+        for (int i = 0; i < entryCount; i++) {
+            map.get(i, view);
+            total += view.getByte(view.length() - 1);
+        }
+        return total;
+    }
+
+    /**
+     * Cold restart without the files, the entries are loaded into a new off-heap store. They are
+     * copied from memory here, a real reload also has to fetch them, so this is a lower bound.
+     */
+    @Benchmark
+    public int reload() {
+        map = new IntSlabMap(true, entryCount, noOfSegments, capacityOfSegment);
+        fill(map);
+        return map.size();
+    }
+
+    private void fill(IntSlabMap target) {
+        for (int i = 0; i < entryCount; i++) {
+            target.put(i, values[i % VALUE_COUNT]);
+        }
+    }
+
+    private void deleteFiles() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".slab")) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import com.hazelcast.nio.UnsafeHelper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full scans that read every byte of every value:
+ * <ul>
+ * <li>SLAB, OFFHEAP: {@link IntSlabMap} with its segments on the heap or in native memory,
+ * scanned with a {@link SlabCursor}</li>
+ * <li>JDK: <code>HashMap&lt;Integer, byte[]&gt;</code>, scanned over its entry set</li>
+ * </ul>
+ * scan goes over all entries in one thread, parallelScan over the segments in a
+ * <code>ForkJoinPool</code> with a thread per core. JDK has no parallel scan, its parallelScan
+ * is the one of scan. The bytes of values scanned per second are reported by {@link ScanCounters}.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsPrepend = {"-Xmx8G", "-Xms8G", "-XX:+UseTLAB"})
+@BenchmarkMode({ Mode.Throughput })
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SlabScanBenchmark {
+
+    public static final int DEFAULT_NO_OF_SEGMENTS = 16;
+
+    private static final sun.misc.Unsafe UNSAFE = UnsafeHelper.UNSAFE;
+
+    @Param(value = {"SLAB", "OFFHEAP", "JDK"})
+    private String type;
+
+    @Param(value = {"1000000"})
+    private String entries;
+
+    private Map<Integer, byte[]> map;
+    private IntSlabMap intMap;
+    private ForkJoinPool pool;
+
+    private long valueBytes;
+
+    private final SlabCursor.Scan checksum = new SlabCursor.Scan() {
+        @Override
+        public long scan(SlabCursor cursor) {
+            long h = 0;
+            while (cursor.next()) {
+                final SlabValueView value = cursor.value();
+                h += cursor.key() + checksum(value.base(), value.address(), value.length());
+            }
+            return h;
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final int entryCount = Integer.parseInt(entries);
+        // Values of 1000 to 2000 bytes like the entities of OnheapSlabBenchmark
+        final Random random = new Random(42);
+        final byte[][] values = new byte[entryCount][];
+        long totalSize = 0;
+        for (int i = 0; i < entryCount; i++) {
+            values[i] = new byte[1000 + random.nextInt(1000)];
+            random.nextBytes(values[i]);
+            valueBytes += values[i].length;
+            totalSize += SlabSegment.recordSize(values[i].length);
+        }
+        final int noOfSegments = Integer.getInteger("noOfSegments", DEFAULT_NO_OF_SEGMENTS);
+        if ("SLAB".equals(type) || "OFFHEAP".equals(type)) {
+            // Every segment but the last one is filled up
+            final long capacityOfSegment = Math.min(Integer.MAX_VALUE - SlabSegment.ALIGNMENT,
+                    totalSize / Math.max(1, noOfSegments - 1) + 1024 * 1024);
+            intMap = new IntSlabMap("OFFHEAP".equals(type), entryCount, noOfSegments, (int) capacityOfSegment);
+            for (int i = 0; i < entryCount; i++) {
+                intMap.put(i, values[i]);
+            }
+        } else if ("JDK".equals(type)) {
+            map = new HashMap<Integer, byte[]>(entryCount * 2);
+            for (int i = 0; i < entryCount; i++) {
+                map.put(i, values[i]);
+            }
+        } else {
+            throw new RuntimeException("Unknown map type");
+        }
+        pool = new ForkJoinPool();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+        if (intMap != null) {
+            intMap.destroy();
+        }
+    }
+
+    @Benchmark
+    public long scan(ScanCounters counters) {
+        counters.valueBytes += valueBytes;
+        if (intMap != null) {
+            return checksum.scan(intMap.cursor());
+        }
+        return scanJdk();
+    }
+
+    @Benchmark
+    public long parallelScan(ScanCounters counters) {
+        counters.valueBytes += valueBytes;
+        if (intMap != null) {
+            return intMap.parallelScan(pool, checksum);
+        }
+        return scanJdk();
+    }
+
+    private long scanJdk() {
+        long h = 0;
+        for (Map.Entry<Integer, byte[]> entry : map.entrySet()) {
+            final byte[] value = entry.getValue();
+            h += entry.getKey() + checksum(value, UnsafeHelper.BYTE_ARRAY_BASE_OFFSET, value.length);
+        }
+        return h;
+    }
+
+    // Same word by word read of a value for all types
+    private static long checksum(Object base, long address, int length) {
+        long h = 0;
+        int i = 0;
+        for (; i <= length - 8; i += 8) {
+            h += UNSAFE.getLong(base, address + i);
+        }
+        for (; i < length; i++) {
+            h += UNSAFE.getByte(base, address + i);
+        }
+        return h;
+    }
+
+    /**
+     * Bytes of values scanned, per second in throughput mode.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class ScanCounters {
+
+        public long valueBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            valueBytes = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,522 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import com.hazelcast.nio.UnsafeHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fixed-size block of memory, either a <code>byte[]</code> on the heap, native memory or
+ * a memory-mapped file, that records are bump allocated from.
+ *
+ * A record is an 8 byte header, the int key and the int length of the value, followed by
+ * the value bytes, padded to 8 bytes. Records are never freed one by one, a replaced or
+ * removed record is only marked as dead and counted as garbage, so the segment can be scanned
+ * from the start by following the record lengths. Compaction copies the live records into
+ * another segment and then clears the whole segment.
+ *
+ * A mapped segment starts with a file header that keeps the allocation position and the
+ * sequence number of the segment up to date, so a segment file can be opened again and its
+ * records found by scanning the record headers. The memory is in native byte order.
+ * The stored position only moves past a record once its value is written, see {@link #publish()}.
+ */
+final class SlabSegment {
+
+    static final int HEADER_SIZE = 8;
+    static final int ALIGNMENT = 8;
+
+    private static final int KEY_OFFSET = 0;
+    private static final int LENGTH_OFFSET = 4;
+    // Set in the length of dead records
+    private static final int DEAD_BIT = 0x80000000;
+
+    // File header of mapped segments: magic, capacity, position and sequence
+    static final int FILE_HEADER_SIZE = 32;
+    private static final int MAGIC = 0x534C4142;
+    private static final int FILE_MAGIC_OFFSET = 0;
+    private static final int FILE_CAPACITY_OFFSET = 4;
+    private static final int FILE_POSITION_OFFSET = 8;
+    private static final int FILE_SEQUENCE_OFFSET = 16;
+
+    private static final sun.misc.Unsafe UNSAFE = UnsafeHelper.UNSAFE;
+    private static final long BUFFER_ADDRESS_OFFSET = bufferAddressOffset();
+    private static final long POSITION_OFFSET = fieldOffset("position");
+    private static final long OPEN_CLAIMS_OFFSET = fieldOffset("openClaims");
+
+    private final byte[] array;
+    // Base offset of the array, or address of the native memory
+    private final long baseAddress;
+    private final int capacity;
+    // Only set for mapped segments, keeps the file mapped
+    private final MappedByteBuffer mappedBuffer;
+    private final long fileHeaderAddress;
+
+    private int position;
+    private long garbage;
+    private long sequence;
+    private boolean destroyed;
+    // Open for claims, see openForClaims()
+    private volatile boolean claimable;
+    // Claims not closed yet, the records of open arenas below the position aren't written yet
+    private volatile int openClaims;
+
+    SlabSegment(boolean offheap, int capacity) {
+        if (!UnsafeHelper.UNSAFE_AVAILABLE) {
+            throw new IllegalStateException("Slab segments need sun.misc.Unsafe");
+        }
+        if (offheap) {
+            this.array = null;
+            this.baseAddress = UNSAFE.allocateMemory(capacity);
+        } else {
+            this.array = new byte[capacity];
+            this.baseAddress = UnsafeHelper.BYTE_ARRAY_BASE_OFFSET;
+        }
+        this.capacity = capacity;
+        this.mappedBuffer = null;
+        this.fileHeaderAddress = 0;
+    }
+
+    private SlabSegment(MappedByteBuffer mappedBuffer, int capacity) {
+        this.array = null;
+        this.fileHeaderAddress = UNSAFE.getLong(mappedBuffer, BUFFER_ADDRESS_OFFSET);
+        this.baseAddress = fileHeaderAddress + FILE_HEADER_SIZE;
+        this.capacity = capacity;
+        this.mappedBuffer = mappedBuffer;
+    }
+
+    /**
+     * Maps a segment file, the file is created if it doesn't exist. The records of an existing
+     * file are kept, garbage is counted again from the dead records.
+     *
+     * @throws IOException if the file can't be mapped, or isn't a segment of the same capacity
+     */
+    static SlabSegment mapped(File file, int capacity) throws IOException {
+        if (!UnsafeHelper.UNSAFE_AVAILABLE || BUFFER_ADDRESS_OFFSET == -1) {
+            throw new IllegalStateException("Mapped slab segments need sun.misc.Unsafe");
+        }
+        if (capacity > Integer.MAX_VALUE - FILE_HEADER_SIZE) {
+            throw new IllegalArgumentException("Capacity of a mapped segment is too large: " + capacity);
+        }
+        final boolean exists = file.length() > 0;
+        final MappedByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (exists && raf.length() != FILE_HEADER_SIZE + capacity) {
+                throw new IOException(file + " is not a slab segment of " + capacity + " bytes");
+            }
+            raf.setLength(FILE_HEADER_SIZE + capacity);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER_SIZE + capacity);
+        } finally {
+            // The mapping stays valid after the file is closed
+            raf.close();
+        }
+        final SlabSegment segment = new SlabSegment(buffer, capacity);
+        if (exists) {
+            segment.recover(file);
+        } else {
+            UNSAFE.putInt(segment.fileHeaderAddress + FILE_MAGIC_OFFSET, MAGIC);
+            UNSAFE.putInt(segment.fileHeaderAddress + FILE_CAPACITY_OFFSET, capacity);
+            segment.publish();
+        }
+        return segment;
+    }
+
+    // Reads the file header and counts the garbage of a mapped segment
+    private void recover(File file) throws IOException {
+        final int storedPosition = UNSAFE.getInt(fileHeaderAddress + FILE_POSITION_OFFSET);
+        if (UNSAFE.getInt(fileHeaderAddress + FILE_MAGIC_OFFSET) != MAGIC
+                || UNSAFE.getInt(fileHeaderAddress + FILE_CAPACITY_OFFSET) != capacity
+                || storedPosition < 0 || storedPosition > capacity) {
+            throw new IOException(file + " is not a slab segment of " + capacity + " bytes");
+        }
+        sequence = UNSAFE.getLong(fileHeaderAddress + FILE_SEQUENCE_OFFSET);
+        int offset = 0;
+        while (offset < storedPosition) {
+            final int length = lengthRacy(offset);
+            if (length < 0) {
+                throw new IOException(file + " has a broken record at offset " + offset);
+            }
+            if (!isLive(offset)) {
+                garbage += recordSize(length);
+            }
+            offset += recordSize(length);
+        }
+        position = storedPosition;
+    }
+
+    /**
+     * Writes the changes of a mapped segment to its file.
+     */
+    void force() {
+        if (mappedBuffer != null && !destroyed) {
+            mappedBuffer.force();
+        }
+    }
+
+    static int recordSize(int length) {
+        return (HEADER_SIZE + length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * Reserves a record for a value of <code>length</code> bytes and writes its header.
+     * Call {@link #publish()} once the value is written.
+     *
+     * @return offset of the record, or -1 if the segment has no room left for it
+     */
+    int allocate(int key, int length) {
+        final int size = recordSize(length);
+        final int offset;
+        if (claimable) {
+            // Arenas claim from the segment at the same time
+            offset = claim(size, size);
+            if (offset == -1) {
+                return -1;
+            }
+            closeClaim();
+        } else {
+            if (size > capacity - position) {
+                return -1;
+            }
+            offset = position;
+            position += size;
+        }
+        header(offset, key, length);
+        return offset;
+    }
+
+    /**
+     * Stores the position in the file header of a mapped segment, nothing to do for other
+     * segments. The store is ordered after the writes of the values before it, so a reopened
+     * segment never has a record whose value wasn't written.
+     */
+    void publish() {
+        if (mappedBuffer != null) {
+            UNSAFE.putOrderedInt(null, fileHeaderAddress + FILE_POSITION_OFFSET, position);
+        }
+    }
+
+    /**
+     * Reserves <code>size</code> bytes without writing anything, for callers that lay out
+     * records themselves. The size has to be a multiple of {@link #ALIGNMENT}.
+     *
+     * @return offset of the reserved bytes, or -1 if the segment has no room left for them
+     */
+    int reserve(int size) {
+        if (size > capacity - position) {
+            return -1;
+        }
+        final int offset = position;
+        position += size;
+        publish();
+        return offset;
+    }
+
+    /**
+     * Reserves <code>maxSize</code> bytes, or as many as are left if that is at least
+     * <code>minSize</code>, for arenas of threads sharing the segment. Both sizes have to be
+     * multiples of {@link #ALIGNMENT}. Only a segment open for claims can be claimed from, its
+     * position is not stored in the file of a mapped segment. Needs {@link #supportsClaims()}.
+     *
+     * The claimed bytes count as used as soon as they are claimed, long before the records in
+     * there are written. Scanning the records of the segment is not possible until it is sealed
+     * and all claims are closed, see {@link #checkWalkable()}.
+     *
+     * @return the offset of the claimed bytes, they end at the smaller of offset + maxSize and
+     * the capacity; -1 if there are less than minSize bytes left or the segment isn't open
+     */
+    int claim(int minSize, int maxSize) {
+        // Counted before the check, so whoever seals the segment either sees the claim or the claim
+        // sees the seal
+        addOpenClaims(1);
+        while (claimable) {
+            final int position = UNSAFE.getIntVolatile(this, POSITION_OFFSET);
+            final int size = Math.min(maxSize, capacity - position);
+            if (size < minSize) {
+                break;
+            }
+            if (UNSAFE.compareAndSwapInt(this, POSITION_OFFSET, position, position + size)) {
+                return position;
+            }
+        }
+        addOpenClaims(-1);
+        return -1;
+    }
+
+    /**
+     * Closes a claim once all records in it are written, or given back with {@link #unclaim}.
+     */
+    void closeClaim() {
+        addOpenClaims(-1);
+    }
+
+    // Forgets the claims of arenas that are never closed, nothing may claim concurrently
+    void dropClaims() {
+        openClaims = 0;
+    }
+
+    // Lets arenas claim from the empty segment
+    void openForClaims() {
+        claimable = true;
+    }
+
+    /**
+     * Stops claims from the segment, the bytes left at its end become a dead record. The
+     * capacity has to be a multiple of {@link #ALIGNMENT}.
+     */
+    void seal() {
+        claimable = false;
+        for (;;) {
+            final int position = UNSAFE.getIntVolatile(this, POSITION_OFFSET);
+            if (UNSAFE.compareAndSwapInt(this, POSITION_OFFSET, position, capacity)) {
+                if (position < capacity) {
+                    header(position, 0, capacity - position - HEADER_SIZE);
+                    markDead(position);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gives the unused end of a claim back, which only works if nothing was claimed after it.
+     *
+     * @return whether the bytes from offset to end are free again
+     */
+    boolean unclaim(int offset, int end) {
+        return UNSAFE.compareAndSwapInt(this, POSITION_OFFSET, end, offset);
+    }
+
+    static boolean supportsClaims() {
+        return POSITION_OFFSET != -1;
+    }
+
+    /**
+     * Fails for a segment open for claims or with claims not closed yet. Scans follow the record
+     * lengths up to the position, the unwritten records of open arenas would look like live
+     * records of key 0.
+     */
+    void checkWalkable() {
+        if (!isWalkable()) {
+            throw new IllegalStateException("Segment is allocated from by arenas, its records can't be scanned");
+        }
+    }
+
+    boolean isWalkable() {
+        return !claimable && openClaims == 0;
+    }
+
+    void header(int offset, int key, int length) {
+        UNSAFE.putInt(array, baseAddress + offset + KEY_OFFSET, key);
+        UNSAFE.putInt(array, baseAddress + offset + LENGTH_OFFSET, length);
+    }
+
+    // Link of a free record to the next one, kept in the first 8 bytes of its value
+    long link(int offset) {
+        return UNSAFE.getLong(array, baseAddress + offset + HEADER_SIZE);
+    }
+
+    void link(int offset, long next) {
+        UNSAFE.putLong(array, baseAddress + offset + HEADER_SIZE, next);
+    }
+
+    // Largest value a record allocated next could hold
+    int maxValueLength() {
+        return Math.max(-1, ((capacity - position) & -ALIGNMENT) - HEADER_SIZE);
+    }
+
+    // Offset of the record allocated next, its value can be written before allocating it
+    int nextOffset() {
+        return position;
+    }
+
+    // Base object for Unsafe accesses, null for native memory
+    Object base() {
+        return array;
+    }
+
+    // Address of a value for Unsafe accesses relative to base()
+    long valueAddress(int offset) {
+        return baseAddress + offset + HEADER_SIZE;
+    }
+
+    void write(int offset, byte[] value) {
+        UNSAFE.copyMemory(value, UnsafeHelper.BYTE_ARRAY_BASE_OFFSET,
+                array, baseAddress + offset + HEADER_SIZE, value.length);
+    }
+
+    // Copies the value of a record into a record of the same length allocated in the target
+    void copyValue(int offset, SlabSegment target, int targetOffset) {
+        UNSAFE.copyMemory(array, baseAddress + offset + HEADER_SIZE,
+                target.array, target.baseAddress + targetOffset + HEADER_SIZE, length(offset));
+    }
+
+    // Length of a value read while a writer may be changing the segment,
+    // -1 if the header can't be valid. Only meaningful if no write happened meanwhile.
+    int lengthRacy(int offset) {
+        if (offset < 0 || offset > capacity - HEADER_SIZE) {
+            return -1;
+        }
+        final int length = length(offset);
+        return length <= capacity - HEADER_SIZE - offset ? length : -1;
+    }
+
+    // Replaces the value of a live record in place, the record size has to stay the same
+    void overwrite(int offset, byte[] value) {
+        UNSAFE.putInt(array, baseAddress + offset + LENGTH_OFFSET, value.length);
+        write(offset, value);
+    }
+
+    byte[] read(int offset) {
+        final byte[] value = new byte[length(offset)];
+        read(offset, value);
+        return value;
+    }
+
+    // Copies the first "value.length" bytes of the value
+    void read(int offset, byte[] value) {
+        UNSAFE.copyMemory(array, baseAddress + offset + HEADER_SIZE,
+                value, UnsafeHelper.BYTE_ARRAY_BASE_OFFSET, value.length);
+    }
+
+    int key(int offset) {
+        return UNSAFE.getInt(array, baseAddress + offset + KEY_OFFSET);
+    }
+
+    int length(int offset) {
+        return UNSAFE.getInt(array, baseAddress + offset + LENGTH_OFFSET) & ~DEAD_BIT;
+    }
+
+    boolean isLive(int offset) {
+        return (UNSAFE.getInt(array, baseAddress + offset + LENGTH_OFFSET) & DEAD_BIT) == 0;
+    }
+
+    void markDead(int offset) {
+        final long lengthAddress = baseAddress + offset + LENGTH_OFFSET;
+        final int length = UNSAFE.getInt(array, lengthAddress);
+        UNSAFE.putInt(array, lengthAddress, length | DEAD_BIT);
+        garbage += recordSize(length);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    // Bytes allocated so far, live and dead records, and the open arenas of a segment with claims
+    int used() {
+        return position;
+    }
+
+    int remaining() {
+        return capacity - position;
+    }
+
+    long garbage() {
+        return garbage;
+    }
+
+    // Order in which the segments were taken into use, the records of a segment with a higher
+    // sequence are newer than the ones of a segment with a lower sequence
+    long sequence() {
+        return sequence;
+    }
+
+    void sequence(long sequence) {
+        this.sequence = sequence;
+        if (mappedBuffer != null) {
+            UNSAFE.putLong(fileHeaderAddress + FILE_SEQUENCE_OFFSET, sequence);
+        }
+    }
+
+    // Keeps the open claims, a claim that fails on the sealed segment is counted for a moment
+    void clear() {
+        position = 0;
+        claimable = false;
+        garbage = 0;
+        publish();
+    }
+
+    /**
+     * Frees the memory of the segment. A mapped segment is written to its file and unmapped
+     * instead. The segment must not be used afterwards.
+     */
+    void destroy() {
+        if (!destroyed) {
+            if (mappedBuffer != null) {
+                mappedBuffer.force();
+                unmap(mappedBuffer);
+            } else if (array == null) {
+                UNSAFE.freeMemory(baseAddress);
+            }
+        }
+        destroyed = true;
+    }
+
+    // Unmaps the file right away instead of once the buffer is garbage collected
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            try {
+                // Java 9+
+                final Method invokeCleaner = UNSAFE.getClass().getMethod("invokeCleaner", ByteBuffer.class);
+                invokeCleaner.invoke(UNSAFE, buffer);
+            } catch (NoSuchMethodException e) {
+                // Java 7 and 8
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // Left to the garbage collector
+        }
+    }
+
+    private void addOpenClaims(int delta) {
+        for (;;) {
+            final int claims = openClaims;
+            if (UNSAFE.compareAndSwapInt(this, OPEN_CLAIMS_OFFSET, claims, claims + delta)) {
+                return;
+            }
+        }
+    }
+
+    private static long fieldOffset(String name) {
+        try {
+            return UnsafeHelper.UNSAFE_AVAILABLE
+                    ? UNSAFE.objectFieldOffset(SlabSegment.class.getDeclaredField(name)) : -1;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long bufferAddressOffset() {
+        try {
+            return UnsafeHelper.UNSAFE_AVAILABLE
+                    ? UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address")) : -1;
+        } catch (NoSuchFieldException e) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import java.util.Arrays;
+
+/**
+ * Allocates records of {@link SlabSegment}s in chunks of fixed size classes, so freed chunks
+ * can be reused by records of other lengths of the same class.
+ *
+ * Segments are cut into pages of {@value #PAGE_SIZE} bytes. A page is given to a size class
+ * when the class runs out of chunks and stays with it. Every class grows by
+ * {@value #GROWTH_FACTOR} from {@value #MIN_CHUNK_SIZE} bytes up to {@value #MAX_CHUNK_SIZE}
+ * bytes, freed chunks are linked into a free list of their class through their value bytes.
+ * A record that doesn't fit into the largest chunk gets a segment of its own outside the
+ * segments of the pages.
+ *
+ * References are the ones of {@link IntSlabIndex}, with {@link #HUGE} set for records
+ * in their own segment. Not thread-safe.
+ */
+final class SlabSizeClassAllocator {
+
+    static final int PAGE_SIZE = 1 << 20;
+    static final int MIN_CHUNK_SIZE = 64;
+    // At least 8 chunks per page, so the rest of a page that no chunk fits into stays small
+    static final int MAX_CHUNK_SIZE = PAGE_SIZE / 8;
+    static final float GROWTH_FACTOR = 1.25F;
+
+    static final long HUGE = 1L << 62;
+
+    private static final int[] CHUNK_SIZES = chunkSizes();
+
+    private final boolean offheap;
+    private final SlabSegment[] segments;
+    private int currentSegment;
+
+    // Per size class: head of the free list and the next chunk of the current page
+    private final long[] freeChunks = new long[CHUNK_SIZES.length];
+    private final long[] nextChunk = new long[CHUNK_SIZES.length];
+    private final int[] pageRemaining = new int[CHUNK_SIZES.length];
+
+    // Records that don't fit into a chunk, and a stack of the free slots of the array
+    private SlabSegment[] hugeRecords = new SlabSegment[16];
+    private int[] freeHugeSlots = new int[16];
+    private int freeHugeCount;
+    private int hugeCount;
+
+    private long pageBytes;
+    private long hugeBytes;
+    private long valueBytes;
+
+    SlabSizeClassAllocator(boolean offheap, int noOfSegments, int capacityOfSegment) {
+        if (capacityOfSegment < PAGE_SIZE) {
+            throw new IllegalArgumentException("Capacity of segment " + capacityOfSegment
+                    + " is less than a page of " + PAGE_SIZE + " bytes");
+        }
+        this.offheap = offheap;
+        this.segments = new SlabSegment[noOfSegments];
+        for (int i = 0; i < noOfSegments; i++) {
+            segments[i] = new SlabSegment(offheap, capacityOfSegment);
+        }
+        resetClasses();
+    }
+
+    static int chunkSize(int sizeClass) {
+        return CHUNK_SIZES[sizeClass];
+    }
+
+    static int sizeClassCount() {
+        return CHUNK_SIZES.length;
+    }
+
+    /**
+     * @return the smallest size class for a record of the size, -1 if it is too large for any
+     */
+    static int sizeClass(int recordSize) {
+        if (recordSize > MAX_CHUNK_SIZE) {
+            return -1;
+        }
+        final int i = Arrays.binarySearch(CHUNK_SIZES, recordSize);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    /**
+     * Allocates a record for a value of <code>length</code> bytes and writes its header.
+     *
+     * @return reference of the record, or {@link IntSlabIndex#NOT_FOUND} if there is no page left
+     * for its size class
+     */
+    long allocate(int key, int length) {
+        final int sizeClass = sizeClass(SlabSegment.recordSize(length));
+        if (sizeClass == -1) {
+            return allocateHuge(key, length);
+        }
+        long ref = freeChunks[sizeClass];
+        if (ref != IntSlabIndex.NOT_FOUND) {
+            freeChunks[sizeClass] = segment(ref).link(IntSlabIndex.offset(ref));
+        } else {
+            final int chunkSize = CHUNK_SIZES[sizeClass];
+            if (pageRemaining[sizeClass] < chunkSize) {
+                final long page = allocatePage();
+                if (page == IntSlabIndex.NOT_FOUND) {
+                    return IntSlabIndex.NOT_FOUND;
+                }
+                nextChunk[sizeClass] = page;
+                pageRemaining[sizeClass] = PAGE_SIZE;
+            }
+            ref = nextChunk[sizeClass];
+            nextChunk[sizeClass] = ref + chunkSize;
+            pageRemaining[sizeClass] -= chunkSize;
+        }
+        segment(ref).header(IntSlabIndex.offset(ref), key, length);
+        valueBytes += length;
+        return ref;
+    }
+
+    void free(long ref) {
+        final SlabSegment segment = segment(ref);
+        final int offset = offset(ref);
+        final int length = segment.length(offset);
+        valueBytes -= length;
+        if ((ref & HUGE) != 0) {
+            final int slot = (int) ref;
+            hugeBytes -= segment.capacity();
+            segment.destroy();
+            hugeRecords[slot] = null;
+            freeHugeSlots[freeHugeCount++] = slot;
+            return;
+        }
+        final int sizeClass = sizeClass(SlabSegment.recordSize(length));
+        segment.link(offset, freeChunks[sizeClass]);
+        freeChunks[sizeClass] = ref;
+    }
+
+    /**
+     * Replaces the value of the record in place if the new value belongs to the same size class.
+     *
+     * @return whether the value was replaced
+     */
+    boolean overwrite(long ref, byte[] value) {
+        final SlabSegment segment = segment(ref);
+        final int offset = offset(ref);
+        final int length = segment.length(offset);
+        final int sizeClass = sizeClass(SlabSegment.recordSize(value.length));
+        if (sizeClass == -1 || (ref & HUGE) != 0
+                || sizeClass != sizeClass(SlabSegment.recordSize(length))) {
+            return false;
+        }
+        segment.overwrite(offset, value);
+        valueBytes += value.length - length;
+        return true;
+    }
+
+    SlabSegment segment(long ref) {
+        return (ref & HUGE) != 0 ? hugeRecords[(int) ref] : segments[IntSlabIndex.segment(ref)];
+    }
+
+    static int offset(long ref) {
+        return (ref & HUGE) != 0 ? 0 : IntSlabIndex.offset(ref);
+    }
+
+    /**
+     * @return the bytes of the pages given to size classes and of the huge records
+     */
+    long usedBytes() {
+        return pageBytes + hugeBytes;
+    }
+
+    long hugeBytes() {
+        return hugeBytes;
+    }
+
+    int hugeCount() {
+        return hugeCount - freeHugeCount;
+    }
+
+    /**
+     * @return the bytes of the values of the allocated records
+     */
+    long valueBytes() {
+        return valueBytes;
+    }
+
+    long capacityBytes() {
+        long capacity = 0;
+        for (SlabSegment segment : segments) {
+            capacity += segment.capacity();
+        }
+        return capacity;
+    }
+
+    void clear() {
+        for (SlabSegment segment : segments) {
+            segment.clear();
+        }
+        destroyHugeRecords();
+        resetClasses();
+    }
+
+    void destroy() {
+        for (SlabSegment segment : segments) {
+            segment.destroy();
+        }
+        destroyHugeRecords();
+    }
+
+    private long allocatePage() {
+        while (currentSegment < segments.length) {
+            final int offset = segments[currentSegment].reserve(PAGE_SIZE);
+            if (offset != -1) {
+                pageBytes += PAGE_SIZE;
+                return IntSlabIndex.ref(currentSegment, offset);
+            }
+            currentSegment++;
+        }
+        return IntSlabIndex.NOT_FOUND;
+    }
+
+    private long allocateHuge(int key, int length) {
+        final SlabSegment segment = new SlabSegment(offheap, SlabSegment.recordSize(length));
+        segment.allocate(key, length);
+        final int slot;
+        if (freeHugeCount > 0) {
+            slot = freeHugeSlots[--freeHugeCount];
+        } else {
+            if (hugeCount == hugeRecords.length) {
+                hugeRecords = Arrays.copyOf(hugeRecords, hugeCount << 1);
+                freeHugeSlots = Arrays.copyOf(freeHugeSlots, hugeCount << 1);
+            }
+            slot = hugeCount++;
+        }
+        hugeRecords[slot] = segment;
+        hugeBytes += segment.capacity();
+        valueBytes += length;
+        return HUGE | slot;
+    }
+
+    private void destroyHugeRecords() {
+        for (int i = 0; i < hugeCount; i++) {
+            if (hugeRecords[i] != null) {
+                hugeRecords[i].destroy();
+                hugeRecords[i] = null;
+            }
+        }
+        hugeCount = 0;
+        freeHugeCount = 0;
+        hugeBytes = 0;
+    }
+
+    private void resetClasses() {
+        Arrays.fill(freeChunks, IntSlabIndex.NOT_FOUND);
+        Arrays.fill(pageRemaining, 0);
+        currentSegment = 0;
+        pageBytes = 0;
+        valueBytes = 0;
+    }
+
+    private static int[] chunkSizes() {
+        int[] sizes = new int[64];
+        int count = 0;
+        int size = MIN_CHUNK_SIZE;
+        while (size < MAX_CHUNK_SIZE) {
+            sizes[count++] = size;
+            size = Math.max(size + SlabSegment.ALIGNMENT,
+                    ((int) (size * GROWTH_FACTOR) + SlabSegment.ALIGNMENT - 1) & -SlabSegment.ALIGNMENT);
+        }
+        sizes[count++] = MAX_CHUNK_SIZE;
+        return Arrays.copyOf(sizes, count);
+    }
+
+}
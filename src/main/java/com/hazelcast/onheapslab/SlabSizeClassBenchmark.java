@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets and replaces values of varying sizes in a {@link SizeClassIntSlabMap} (SIZE_CLASS) and in an
+ * {@link IntSlabMap} that bump allocates and compacts (BUMP). The sizes of the values span 50 bytes
+ * to 200 KB and are drawn from the given distribution:
+ * <ul>
+ * <li>UNIFORM: uniform over the whole span</li>
+ * <li>BIMODAL: 90% uniform from 50 to 500 bytes, 10% uniform from 50 to 200 KB</li>
+ * <li>LOG_NORMAL: log-normal with a median of 1 KB and a sigma of 1.5, cut to the span</li>
+ * </ul>
+ * The memory used by the map per byte of stored values is reported by {@link FootprintCounters}.
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsPrepend = {"-Xmx6G", "-Xms6G", "-XX:+UseTLAB"})
+@OperationsPerInvocation(SlabSizeClassBenchmark.OPS_PER_INV)
+public class SlabSizeClassBenchmark {
+
+    public static final int OPS_PER_INV = 100;
+    public static final int DEFAULT_NO_OF_SEGMENTS = 16;
+
+    private static final int VALUE_COUNT = 512;
+    private static final int MIN_SIZE = 50;
+    private static final int MAX_SIZE = 200 * 1024;
+
+    @Param(value = {"SIZE_CLASS", "BUMP"})
+    private String type;
+
+    @Param(value = {"UNIFORM", "BIMODAL", "LOG_NORMAL"})
+    private String distribution;
+
+    // Megabytes of values stored, the number of keys follows from the mean value size
+    @Param(value = {"512"})
+    private String dataSize;
+
+    @Param(value = {"20"})
+    private String writePercent;
+
+    private final Random rand = new Random();
+
+    private int keyCount;
+    private int writeThreshold;
+    private byte[][] values;
+    private int[] lengths;
+    private long valueBytes;
+    private SizeClassIntSlabMap sizeClassMap;
+    private IntSlabMap bumpMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        writeThreshold = Integer.parseInt(writePercent);
+        Random random = new Random(42);
+        byte[] randomBytes = new byte[MAX_SIZE];
+        random.nextBytes(randomBytes);
+        values = new byte[VALUE_COUNT][];
+        long totalSize = 0;
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            values[i] = new byte[valueSize(random)];
+            System.arraycopy(randomBytes, 0, values[i], 0, values[i].length);
+            totalSize += values[i].length;
+        }
+        final long dataBytes = Long.parseLong(dataSize) * 1024 * 1024;
+        keyCount = (int) Math.max(1, dataBytes * VALUE_COUNT / totalSize);
+
+        // Three times the values, the compaction of BUMP needs room
+        int noOfSegments = Integer.getInteger("noOfSegments", DEFAULT_NO_OF_SEGMENTS);
+        int capacityOfSegment = (int) Math.min(Integer.MAX_VALUE - SlabSegment.ALIGNMENT,
+                Math.max(3 * dataBytes / noOfSegments, 2 * SlabSizeClassAllocator.PAGE_SIZE));
+        if ("SIZE_CLASS".equals(type)) {
+            sizeClassMap = new SizeClassIntSlabMap(false, keyCount, noOfSegments, capacityOfSegment);
+        } else if ("BUMP".equals(type)) {
+            bumpMap = new IntSlabMap(false, keyCount, noOfSegments, capacityOfSegment);
+            bumpMap.setAutoCompaction(true);
+        } else {
+            throw new RuntimeException("Unknown map type");
+        }
+        lengths = new int[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            put(i, random.nextInt(VALUE_COUNT));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (sizeClassMap != null) {
+            sizeClassMap.destroy();
+        } else {
+            bumpMap.destroy();
+        }
+    }
+
+    /**
+     * Bytes used by the map and bytes of the values stored at the end of an iteration, the pages
+     * given to size classes for SIZE_CLASS and the allocated segment bytes for BUMP. JMH divides
+     * both by the time of the iteration, usedBytes divided by valueBytes is the memory used per
+     * byte of values.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class FootprintCounters {
+        public long usedBytes;
+        public long valueBytes;
+
+        private SlabSizeClassBenchmark benchmark;
+
+        @Setup(Level.Iteration)
+        public void start(SlabSizeClassBenchmark benchmark) {
+            this.benchmark = benchmark;
+            usedBytes = 0;
+            valueBytes = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            usedBytes = benchmark.sizeClassMap != null ? benchmark.sizeClassMap.usedBytes()
+                    : benchmark.bumpMap.liveBytes() + benchmark.bumpMap.garbageBytes();
+            valueBytes = benchmark.valueBytes;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput })
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long getPut(FootprintCounters counters) {
+        long total = 0;
+        for (int i = 0; i < OPS_PER_INV; i++) {
+            final int key = rand.nextInt(keyCount);
+            if (rand.nextInt(100) < writeThreshold) {
+                put(key, rand.nextInt(VALUE_COUNT));
+            } else {
+                final byte[] value = sizeClassMap != null ? sizeClassMap.get(key) : bumpMap.get(key);
+                total += value.length;
+            }
+        }
+        return total;
+    }
+
+    private void put(int key, int valueIndex) {
+        final byte[] value = values[valueIndex];
+        if (sizeClassMap != null) {
+            sizeClassMap.put(key, value);
+        } else {
+            bumpMap.put(key, value);
+        }
+        valueBytes += value.length - lengths[key];
+        lengths[key] = value.length;
+    }
+
+    private int valueSize(Random random) {
+        if ("UNIFORM".equals(distribution)) {
+            return MIN_SIZE + random.nextInt(MAX_SIZE - MIN_SIZE + 1);
+        } else if ("BIMODAL".equals(distribution)) {
+            return random.nextInt(10) < 9
+                    ? MIN_SIZE + random.nextInt(451) : 50 * 1024 + random.nextInt(MAX_SIZE - 50 * 1024 + 1);
+        } else if ("LOG_NORMAL".equals(distribution)) {
+            final double size = Math.exp(Math.log(1024) + 1.5 * random.nextGaussian());
+            return (int) Math.max(MIN_SIZE, Math.min(MAX_SIZE, size));
+        }
+        throw new RuntimeException("Unknown distribution " + distribution);
+    }
+
+}
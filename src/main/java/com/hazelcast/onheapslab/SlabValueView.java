@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2008-2013, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hazelcast.onheapslab;
+
+import com.hazelcast.nio.UnsafeHelper;
+
+/**
+ * Reusable flyweight over a value stored in a {@link SlabSegment}, nothing is copied.
+ *
+ * {@link IntSlabMap#get(int, SlabValueView)} points it to a value. It stays valid until
+ * the key is written or removed, or the map is compacted or cleared, the view has to be
+ * copied before if the value is needed longer. Not thread-safe.
+ */
+public final class SlabValueView {
+
+    private static final sun.misc.Unsafe UNSAFE = UnsafeHelper.UNSAFE;
+
+    private Object base;
+    private long address;
+    private int length;
+
+    void init(Object base, long address, int length) {
+        this.base = base;
+        this.address = address;
+        this.length = length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte getByte(int index) {
+        checkIndex(index, 1);
+        return UNSAFE.getByte(base, address + index);
+    }
+
+    public void copyTo(int index, byte[] dst, int dstOffset, int count) {
+        checkIndex(index, count);
+        if (dstOffset < 0 || count > dst.length - dstOffset) {
+            throw new IndexOutOfBoundsException("dstOffset: " + dstOffset + ", count: " + count);
+        }
+        UNSAFE.copyMemory(base, address + index, dst, UnsafeHelper.BYTE_ARRAY_BASE_OFFSET + dstOffset, count);
+    }
+
+    public byte[] toByteArray() {
+        final byte[] bytes = new byte[length];
+        copyTo(0, bytes, 0, length);
+        return bytes;
+    }
+
+    Object base() {
+        return base;
+    }
+
+    long address() {
+        return address;
+    }
+
+    private void checkIndex(int index, int count) {
+        if (index < 0 || count < 0 || count > length - index) {
+            throw new IndexOutOfBoundsException("index: " + index + ", count: " + count + ", length: " + length);
+        }
+    }
+
+}